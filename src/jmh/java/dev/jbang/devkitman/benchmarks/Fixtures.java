@@ -0,0 +1,211 @@
+package dev.jbang.devkitman.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+
+import dev.jbang.devkitman.util.FileUtils;
+
+/**
+ * Generates the synthetic, fully offline data used by the benchmarks: fake JDK
+ * homes, catalogs in the java-metadata format and JDK-like tar.gz archives.
+ * Everything is generated from a fixed seed so runs are comparable.
+ */
+public class Fixtures {
+	static final String[] DISTROS = { "temurin", "zulu", "corretto", "liberica", "microsoft", "graalvm" };
+	static final String[] RELEASE_TYPES = { "ga", "ea" };
+	static final String[] IMAGE_TYPES = { "jdk", "jre" };
+	static final String[] ARCHS = { "x86_64", "aarch64" };
+	static final String[] OSES = { "linux", "macosx", "windows" };
+
+	private Fixtures() {
+	}
+
+	/**
+	 * Returns <code>count</code> different Java version strings, in a mix of the
+	 * formats found in real catalogs (legacy, JEP 322, EA builds)
+	 */
+	public static List<String> versions(int count) {
+		Random rnd = new Random(42);
+		List<String> versions = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			int major = 8 + rnd.nextInt(18);
+			int update = rnd.nextInt(30);
+			int build = 1 + rnd.nextInt(40);
+			switch (rnd.nextInt(4)) {
+			case 0:
+				versions.add(major == 8 ? "1.8.0_" + update + "-b" + build : major + ".0." + update);
+				break;
+			case 1:
+				versions.add(major + ".0." + update + "+" + build);
+				break;
+			case 2:
+				versions.add(major + "-ea+" + build);
+				break;
+			default:
+				versions.add(major + ".0." + update + "." + rnd.nextInt(3) + "+" + build + "-LTS");
+				break;
+			}
+		}
+		return versions;
+	}
+
+	/**
+	 * Creates <code>count</code> fake JDK homes in the given folder, using the
+	 * same naming scheme as the JBang provider (<code>version-distro-jbang</code>)
+	 *
+	 * @return The paths to the JDK homes
+	 */
+	public static List<Path> createJdkHomes(Path root, int count) throws IOException {
+		List<Path> homes = new ArrayList<>(count);
+		List<String> versions = versions(count);
+		for (int i = 0; i < count; i++) {
+			String version = versions.get(i);
+			Path home = root.resolve(version + "-" + DISTROS[i % DISTROS.length] + "-jbang");
+			createJdkHome(home, version);
+			homes.add(home);
+		}
+		return homes;
+	}
+
+	/**
+	 * Creates a fake JDK home with executable <code>java</code> and
+	 * <code>javac</code> commands and a <code>release</code> file
+	 */
+	public static Path createJdkHome(Path home, String version) throws IOException {
+		Path bin = home.resolve("bin");
+		Files.createDirectories(bin);
+		for (String cmd : new String[] { "java", "javac", "jar", "jshell", "keytool" }) {
+			Path p = bin.resolve(cmd);
+			Files.write(p, "dummy".getBytes(StandardCharsets.UTF_8));
+			p.toFile().setExecutable(true, true);
+		}
+		String release = "IMPLEMENTOR=\"Fixtures\"\n"
+				+ "JAVA_RUNTIME_VERSION=\"" + version + "\"\n"
+				+ "JAVA_VERSION=\"" + version + "\"\n"
+				+ "OS_ARCH=\"x86_64\"\n"
+				+ "OS_NAME=\"Linux\"\n"
+				+ "MODULES=\"java.base java.compiler java.datatransfer java.desktop java.logging\"\n";
+		Files.write(home.resolve("release"), release.getBytes(StandardCharsets.UTF_8));
+		return home;
+	}
+
+	/**
+	 * Writes a catalog in the format of the java-metadata project's
+	 * <code>all.json</code> files, containing <code>count</code> entries spread
+	 * over all vendors, release types, image types, OSes and architectures
+	 */
+	public static Path createMetadataCatalog(Path file, int count) throws IOException {
+		List<String> versions = versions(count);
+		try (Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			w.write("[\n");
+			for (int i = 0; i < count; i++) {
+				String version = versions.get(i);
+				String vendor = DISTROS[i % DISTROS.length];
+				String os = OSES[(i / 2) % OSES.length];
+				String arch = ARCHS[i % ARCHS.length];
+				String filename = "OpenJDK-" + vendor + "-" + version + "-" + os + "-" + arch + ".tar.gz";
+				String url = "https://example.com/" + vendor + "/" + filename;
+				String hash = String.format("%064x", (long) version.hashCode() * 31 + i);
+				if (i > 0) {
+					w.write(",\n");
+				}
+				w.write("{\"vendor\":\"" + vendor + "\","
+						+ "\"filename\":\"" + filename + "\","
+						+ "\"release_type\":\"" + RELEASE_TYPES[i % 7 == 0 ? 1 : 0] + "\","
+						+ "\"version\":\"" + version + "\","
+						+ "\"java_version\":\"" + version + "\","
+						+ "\"jvm_impl\":\"hotspot\","
+						+ "\"os\":\"" + os + "\","
+						+ "\"architecture\":\"" + arch + "\","
+						+ "\"file_type\":\"tar.gz\","
+						+ "\"image_type\":\"" + IMAGE_TYPES[(i / 3) % IMAGE_TYPES.length] + "\","
+						+ "\"features\":[],"
+						+ "\"url\":\"" + url + "\","
+						+ "\"md5\":\"" + hash.substring(0, 32) + "\","
+						+ "\"md5_file\":\"" + filename + ".md5\","
+						+ "\"sha1\":\"" + hash.substring(0, 40) + "\","
+						+ "\"sha1_file\":\"" + filename + ".sha1\","
+						+ "\"sha256\":\"" + hash + "\","
+						+ "\"sha256_file\":\"" + filename + ".sha256\","
+						+ "\"sha512\":\"" + hash + hash + "\","
+						+ "\"sha512_file\":\"" + filename + ".sha512\","
+						+ "\"size\":" + (180_000_000 + i) + "}");
+			}
+			w.write("\n]\n");
+		}
+		return file;
+	}
+
+	/**
+	 * Writes a tar.gz archive that looks like a JDK distribution: a single root
+	 * folder with a <code>bin</code> folder of executables and a
+	 * <code>lib</code> folder with <code>files</code> files of
+	 * <code>fileSize</code> bytes spread over several sub folders
+	 */
+	public static Path createJdkArchive(Path file, int files, int fileSize) throws IOException {
+		Random rnd = new Random(42);
+		byte[] data = new byte[fileSize];
+		Files.createDirectories(file.toAbsolutePath().getParent());
+		try (OutputStream os = Files.newOutputStream(file);
+				TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(os))) {
+			tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+			addDir(tar, "jdk-17.0.9+9/");
+			addDir(tar, "jdk-17.0.9+9/bin/");
+			for (String cmd : new String[] { "java", "javac", "jar" }) {
+				rnd.nextBytes(data);
+				addFile(tar, "jdk-17.0.9+9/bin/" + cmd, data, 0755);
+			}
+			addDir(tar, "jdk-17.0.9+9/lib/");
+			for (int i = 0; i < files; i++) {
+				String dir = "jdk-17.0.9+9/lib/pkg" + (i % 16) + "/";
+				if (i < 16) {
+					addDir(tar, dir);
+				}
+				// Only half random so the archive compresses a bit, like a real one
+				rnd.nextBytes(data);
+				for (int j = 0; j < data.length; j += 2) {
+					data[j] = 0;
+				}
+				addFile(tar, dir + "file" + i + ".bin", data, 0644);
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * Deletes the given folder and everything in it, if it exists
+	 */
+	public static void delete(Path path) {
+		if (Files.exists(path)) {
+			FileUtils.deletePath(path);
+		}
+	}
+
+	private static void addDir(TarArchiveOutputStream tar, String name) throws IOException {
+		TarArchiveEntry entry = new TarArchiveEntry(name);
+		entry.setMode(TarArchiveEntry.DEFAULT_DIR_MODE);
+		tar.putArchiveEntry(entry);
+		tar.closeArchiveEntry();
+	}
+
+	private static void addFile(TarArchiveOutputStream tar, String name, byte[] data, int mode)
+			throws IOException {
+		TarArchiveEntry entry = new TarArchiveEntry(name);
+		entry.setSize(data.length);
+		entry.setMode(0100000 | mode);
+		tar.putArchiveEntry(entry);
+		tar.write(data);
+		tar.closeArchiveEntry();
+	}
+}
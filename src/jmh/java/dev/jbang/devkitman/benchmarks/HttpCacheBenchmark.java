@@ -0,0 +1,111 @@
+package dev.jbang.devkitman.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheStorage;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.client5.http.impl.cache.HeapResource;
+import org.apache.hc.client5.http.impl.cache.HttpCacheEntryFactory;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.message.BasicHttpRequest;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.openjdk.jmh.annotations.*;
+
+import dev.jbang.devkitman.util.DiskHttpCacheStorage;
+import dev.jbang.devkitman.util.FileHttpCacheStorage;
+import dev.jbang.devkitman.util.MemoryHttpCacheStorage;
+
+/**
+ * Reading and writing entries of the on-disk HTTP cache, using bodies the size
+ * of a typical (compressed) catalog response. The read benchmarks are also run
+ * with several threads to show the effect of contention. The deprecated
+ * <code>FileHttpCacheStorage</code> is included for comparison, as is the disk
+ * storage without the memory cache in front of it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HttpCacheBenchmark {
+	@Param({ "100" })
+	int entries;
+
+	@Param({ "65536" })
+	int bodySize;
+
+	@Param({ "memory", "disk", "file" })
+	String storageType;
+
+	Path tmp;
+	HttpCacheStorage storage;
+	HttpCacheEntry entry;
+	final AtomicInteger counter = new AtomicInteger();
+
+	@Setup
+	@SuppressWarnings("deprecation")
+	public void setup() throws IOException {
+		tmp = Files.createTempDirectory("devkitman-jmh");
+		Path cacheDir = tmp.resolve("http-cache");
+		if (storageType.equals("file")) {
+			storage = new FileHttpCacheStorage(cacheDir);
+		} else if (storageType.equals("memory")) {
+			storage = new MemoryHttpCacheStorage(new DiskHttpCacheStorage(cacheDir),
+					MemoryHttpCacheStorage.DEFAULT_MAX_BYTES);
+		} else {
+			storage = new DiskHttpCacheStorage(cacheDir);
+		}
+		byte[] body = new byte[bodySize];
+		new Random(42).nextBytes(body);
+		BasicHttpResponse response = new BasicHttpResponse(200, "OK");
+		response.addHeader("Content-Type", "application/json");
+		response.addHeader("Cache-Control", "max-age=3600");
+		response.addHeader("ETag", "\"0123456789abcdef\"");
+		Instant now = Instant.now();
+		entry = HttpCacheEntryFactory.INSTANCE.create(now, now,
+				new HttpHost("https", "example.com", 443),
+				new BasicHttpRequest("GET", "/catalog"),
+				response,
+				new HeapResource(body));
+		for (int i = 0; i < entries; i++) {
+			storage.putEntry(key(i), entry);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		Fixtures.delete(tmp);
+	}
+
+	@Benchmark
+	public HttpCacheEntry get() throws ResourceIOException {
+		return storage.getEntry(key(counter.getAndIncrement() % entries));
+	}
+
+	@Benchmark
+	@Threads(4)
+	public HttpCacheEntry getContended() throws ResourceIOException {
+		return storage.getEntry(key(counter.getAndIncrement() % entries));
+	}
+
+	@Benchmark
+	public void put() throws ResourceIOException {
+		storage.putEntry(key(counter.getAndIncrement() % entries), entry);
+	}
+
+	@Benchmark
+	public Map<String, HttpCacheEntry> getEntries() throws ResourceIOException {
+		return storage.getEntries(Arrays.asList(key(0), key(entries / 2), key(entries - 1)));
+	}
+
+	private static String key(int i) {
+		return "{https://example.com:443/catalog/" + i + "}";
+	}
+}
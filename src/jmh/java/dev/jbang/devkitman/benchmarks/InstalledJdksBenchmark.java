@@ -0,0 +1,90 @@
+package dev.jbang.devkitman.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.*;
+
+import dev.jbang.devkitman.Jdk;
+import dev.jbang.devkitman.JdkManager;
+import dev.jbang.devkitman.jdkproviders.JBangJdkProvider;
+import dev.jbang.devkitman.jdkproviders.JdkInventory;
+import dev.jbang.devkitman.util.JavaUtils;
+import dev.jbang.devkitman.util.JdkHomeProbe;
+
+/**
+ * Resolving installed JDKs: listing a provider's folder with and without an
+ * inventory, looking up a JDK through the <code>JdkManager</code> and probing a
+ * single JDK home.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InstalledJdksBenchmark {
+	@Param({ "10", "50" })
+	int jdks;
+
+	Path tmp;
+	List<Path> homes;
+	JBangJdkProvider scanning;
+	JBangJdkProvider inventoried;
+	JdkManager manager;
+	String versionToFind;
+
+	@Setup
+	public void setup() throws IOException {
+		tmp = Files.createTempDirectory("devkitman-jmh");
+		Path root = tmp.resolve("jdks");
+		homes = Fixtures.createJdkHomes(root, jdks);
+		// The inventory doesn't trust folders that were modified right before it
+		// was written, so make them look old
+		FileTime past = FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1));
+		for (Path home : homes) {
+			Files.setLastModifiedTime(home, past);
+		}
+		Files.setLastModifiedTime(root, past);
+
+		scanning = new JBangJdkProvider(root);
+		inventoried = new JBangJdkProvider(root);
+		inventoried.inventory(new JdkInventory(tmp.resolve("jdk-inventory.json")));
+		manager = JdkManager.builder().providers(new JBangJdkProvider(root)).build();
+		// Prime the inventory
+		inventoried.listInstalled().count();
+		versionToFind = String.valueOf(new JdkHomeProbe(homes.get(homes.size() - 1)).javaVersion()
+			.map(JavaUtils::parseJavaVersion)
+			.orElse(17));
+	}
+
+	@TearDown
+	public void tearDown() {
+		Fixtures.delete(tmp);
+	}
+
+	@Benchmark
+	public List<Jdk.InstalledJdk> listInstalledScan() {
+		return scanning.listInstalled().collect(Collectors.toList());
+	}
+
+	@Benchmark
+	public List<Jdk.InstalledJdk> listInstalledInventory() {
+		return inventoried.listInstalled().collect(Collectors.toList());
+	}
+
+	@Benchmark
+	public Jdk getJdk() {
+		return manager.getJdk(versionToFind);
+	}
+
+	@Benchmark
+	public Set<String> probeJdkHome() {
+		JdkHomeProbe probe = new JdkHomeProbe(homes.get(0));
+		probe.javaVersion();
+		return probe.tags();
+	}
+}
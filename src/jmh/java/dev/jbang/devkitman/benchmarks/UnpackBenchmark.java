@@ -0,0 +1,114 @@
+package dev.jbang.devkitman.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.openjdk.jmh.annotations.*;
+
+import dev.jbang.devkitman.util.UnpackUtils;
+
+/**
+ * Extracting a JDK-like tar.gz archive, the way JDKs get installed. The
+ * <code>baseline</code> benchmark does the same thing the straightforward way
+ * (creating parent folders, copying and setting permissions for every file)
+ * so the difference shows what the optimized extractor gains. Set the
+ * <code>jdkArchive</code> parameter to the path of a real JDK tarball to use
+ * that instead of the generated archive (a real JDK has about 800 files).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class UnpackBenchmark {
+	@Param({ "500", "800" })
+	int files;
+
+	@Param({ "16384" })
+	int fileSize;
+
+	@Param({ "" })
+	String jdkArchive;
+
+	Path tmp;
+	Path archive;
+	Path out;
+
+	@Setup
+	public void setup() throws IOException {
+		tmp = Files.createTempDirectory("devkitman-jmh");
+		if (jdkArchive.isEmpty()) {
+			archive = Fixtures.createJdkArchive(tmp.resolve("jdk.tar.gz"), files, fileSize);
+		} else {
+			archive = Paths.get(jdkArchive);
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void prepareOutput() {
+		out = tmp.resolve("out");
+		Fixtures.delete(out);
+	}
+
+	@TearDown
+	public void tearDown() {
+		Fixtures.delete(tmp);
+	}
+
+	@Benchmark
+	public Path untargz() throws IOException {
+		UnpackUtils.untargz(archive, out, true, null);
+		return out;
+	}
+
+	@Benchmark
+	public Path baseline() throws IOException {
+		try (TarArchiveInputStream tar = new TarArchiveInputStream(
+				new GzipCompressorInputStream(Files.newInputStream(archive)))) {
+			TarArchiveEntry tarEntry;
+			while ((tarEntry = tar.getNextEntry()) != null) {
+				Path entry = Paths.get(tarEntry.getName()).normalize();
+				if (entry.getNameCount() == 1) {
+					continue;
+				}
+				entry = out.resolve(entry.subpath(1, entry.getNameCount())).normalize();
+				if (!entry.startsWith(out)) {
+					throw new IOException("Entry is outside of the target dir: " + tarEntry.getName());
+				}
+				if (tarEntry.isDirectory()) {
+					Files.createDirectories(entry);
+				} else if (tarEntry.isSymbolicLink()) {
+					Files.createDirectories(entry.getParent());
+					if (!Files.exists(entry)) {
+						Files.createSymbolicLink(entry, Paths.get(tarEntry.getLinkName()));
+					}
+				} else {
+					Files.createDirectories(entry.getParent());
+					Files.copy(tar, entry, StandardCopyOption.REPLACE_EXISTING);
+					Files.setPosixFilePermissions(entry, permissions(tarEntry.getMode()));
+				}
+			}
+		}
+		return out;
+	}
+
+	private static Set<PosixFilePermission> permissions(int mode) {
+		Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+		PosixFilePermission[] all = PosixFilePermission.values();
+		// The enum is ordered from OWNER_READ (0400) down to OTHERS_EXECUTE (0001)
+		for (int i = 0; i < all.length; i++) {
+			if ((mode & (0400 >> i)) != 0) {
+				permissions.add(all[i]);
+			}
+		}
+		return permissions;
+	}
+}
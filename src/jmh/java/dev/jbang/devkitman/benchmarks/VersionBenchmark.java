@@ -0,0 +1,59 @@
+package dev.jbang.devkitman.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import dev.jbang.devkitman.util.JavaVersion;
+import dev.jbang.devkitman.util.VersionComparator;
+
+/**
+ * Sorting a catalog-sized list of versions, comparing the string based
+ * <code>VersionComparator</code> with pre-parsed <code>JavaVersion</code>
+ * objects (both with and without the cost of parsing them).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VersionBenchmark {
+	@Param({ "2000" })
+	int entries;
+
+	List<String> versions;
+	List<JavaVersion> parsed;
+
+	@Setup
+	public void setup() {
+		versions = Fixtures.versions(entries);
+		parsed = new ArrayList<>(versions.size());
+		for (String v : versions) {
+			parsed.add(JavaVersion.parse(v));
+		}
+	}
+
+	@Benchmark
+	public List<String> sortWithVersionComparator() {
+		List<String> vs = new ArrayList<>(versions);
+		vs.sort(VersionComparator.INSTANCE);
+		return vs;
+	}
+
+	@Benchmark
+	public List<JavaVersion> sortParsed() {
+		List<JavaVersion> vs = new ArrayList<>(parsed);
+		vs.sort(null);
+		return vs;
+	}
+
+	@Benchmark
+	public List<JavaVersion> parseAndSort() {
+		List<JavaVersion> vs = new ArrayList<>(versions.size());
+		for (String v : versions) {
+			vs.add(JavaVersion.parse(v));
+		}
+		vs.sort(null);
+		return vs;
+	}
+}
@@ -0,0 +1,123 @@
+package dev.jbang.devkitman.jdkinstallers;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.Strictness;
+
+import dev.jbang.devkitman.benchmarks.Fixtures;
+
+/**
+ * Parsing a java-metadata catalog, comparing Gson's reflective parsing of the
+ * whole document followed by filtering, with the streaming parser used by the
+ * installer that filters while parsing. Both select the GA JDKs of one major
+ * version, like a version lookup does. Besides the time per operation the
+ * heap's peak usage per iteration is reported as <code>peakHeapBytes</code>,
+ * run with <code>-prof gc</code> to also see the allocations per operation.
+ * <p>
+ * By default a synthetic catalog is generated. To measure a recorded one, for
+ * example a downloaded <code>ga/linux/x86_64/jdk/hotspot/temurin.json</code>,
+ * run with <code>-PjmhMetadataCatalog=&lt;path&gt;</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MetadataParseBenchmark {
+	static final String CATALOG_PROPERTY = "devkitman.jmh.metadataCatalog";
+
+	@Param({ "5000" })
+	int entries;
+
+	@Param({ "21" })
+	int version;
+
+	Path tmp;
+	Path catalog;
+	Gson gson;
+
+	@Setup
+	public void setup() throws IOException {
+		tmp = Files.createTempDirectory("devkitman-jmh");
+		String recorded = System.getProperty(CATALOG_PROPERTY);
+		if (recorded != null && !recorded.isEmpty()) {
+			catalog = Paths.get(recorded);
+		} else {
+			catalog = Fixtures.createMetadataCatalog(tmp.resolve("all.json"), entries);
+		}
+		gson = new GsonBuilder().setStrictness(Strictness.LENIENT).create();
+	}
+
+	@TearDown
+	public void tearDown() {
+		Fixtures.delete(tmp);
+	}
+
+	MetadataJdkInstaller.MetadataFilter filter() {
+		return new MetadataJdkInstaller.MetadataFilter("ga", "jdk", version, false);
+	}
+
+	@Benchmark
+	public List<MetadataJdkInstaller.MetadataResult> gsonThenFilter(HeapCounters heap) throws IOException {
+		try (Reader reader = Files.newBufferedReader(catalog, StandardCharsets.UTF_8)) {
+			MetadataJdkInstaller.MetadataResult[] all = gson.fromJson(reader,
+					MetadataJdkInstaller.MetadataResult[].class);
+			return Arrays.stream(all).filter(filter()).collect(Collectors.toList());
+		}
+	}
+
+	@Benchmark
+	public List<MetadataJdkInstaller.MetadataResult> streamingFilter(HeapCounters heap) throws IOException {
+		try (Reader reader = Files.newBufferedReader(catalog, StandardCharsets.UTF_8)) {
+			return MetadataJdkInstaller.readMetadata(reader, filter());
+		}
+	}
+
+	/**
+	 * Reports the highest heap usage seen during an iteration. The peaks of the
+	 * heap pools are reset (after a GC) before each iteration, so the number is
+	 * the live data of the benchmark plus whatever garbage the collector let
+	 * accumulate, comparable between the two benchmarks on the same JVM settings.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class HeapCounters {
+		public long peakHeapBytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			System.gc();
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+				if (pool.getType() == MemoryType.HEAP) {
+					pool.resetPeakUsage();
+				}
+			}
+			peakHeapBytes = 0;
+		}
+
+		@TearDown(Level.Iteration)
+		public void record() {
+			long peak = 0;
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+				if (pool.getType() == MemoryType.HEAP) {
+					peak += pool.getPeakUsage().getUsed();
+				}
+			}
+			peakHeapBytes = peak;
+		}
+	}
+}
@@ -2,7 +2,6 @@ package dev.jbang.devkitman;
 
 import static dev.jbang.devkitman.util.FileUtils.realPath;
 
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.function.Predicate;
@@ -13,6 +12,8 @@ import org.jspecify.annotations.Nullable;
 import dev.jbang.devkitman.jdkproviders.ExternalJdkProvider;
 import dev.jbang.devkitman.util.FileUtils;
 import dev.jbang.devkitman.util.JavaUtils;
+import dev.jbang.devkitman.util.JavaVersion;
+import dev.jbang.devkitman.util.JdkHomeProbe;
 
 public interface Jdk extends Comparable<Jdk> {
 	/**
@@ -44,7 +45,15 @@ public interface Jdk extends Comparable<Jdk> {
 	 * Returns the major version of the JDK
 	 */
 	default int majorVersion() {
-		return JavaUtils.parseJavaVersion(version());
+		return javaVersion().major();
+	}
+
+	/**
+	 * Returns the JDK's parsed version
+	 */
+	@NonNull
+	default JavaVersion javaVersion() {
+		return JavaVersion.parse(version());
 	}
 
 	/**
@@ -180,32 +189,7 @@ public interface Jdk extends Comparable<Jdk> {
 				if (home == null) {
 					return Collections.emptySet();
 				}
-				Set<String> tags = new HashSet<>();
-				if (JavaUtils.hasJavacCmd(home)) {
-					tags.add(Jdk.Default.Tags.Jdk.name());
-				} else if (JavaUtils.hasJavaCmd(home)) {
-					tags.add(Jdk.Default.Tags.Jre.name());
-				}
-				Optional<String> version = JavaUtils.resolveJavaVersionStringFromPath(home);
-				if (version.isPresent()) {
-					if (version.get().matches(".*\\b(ea|EA)\\b.*")) {
-						tags.add(Jdk.Default.Tags.Ea.name());
-					} else {
-						tags.add(Jdk.Default.Tags.Ga.name());
-					}
-				}
-				Optional<String> graalVersion = JavaUtils.readGraalVMVersionStringFromReleaseFile(home);
-				if (graalVersion.isPresent()) {
-					tags.add(Jdk.Default.Tags.Graalvm.name());
-					if (JavaUtils.hasNativeImageCmd(home)) {
-						tags.add(Jdk.Default.Tags.Native.name());
-					}
-				}
-				Path javafxProps = home.resolve("lib").resolve("javafx.properties");
-				if (Files.exists(javafxProps)) {
-					tags.add(Jdk.Default.Tags.Javafx.name());
-				}
-				return tags;
+				return new JdkHomeProbe(home).tags();
 			}
 		}
 
@@ -268,9 +252,11 @@ public interface Jdk extends Comparable<Jdk> {
 		protected final String version;
 		@NonNull
 		protected final Set<String> tags;
+		@NonNull
+		protected final transient JavaVersion javaVersion;
 
 		public enum Tags {
-			Jre, Jdk, Graalvm, Native, Javafx, Ea, Ga
+			Jre, Jdk, Graalvm, Native, Javafx, Ea, Ga, Runtime
 		}
 
 		Default(
@@ -281,6 +267,7 @@ public interface Jdk extends Comparable<Jdk> {
 			this.provider = provider;
 			this.id = id;
 			this.version = version;
+			this.javaVersion = JavaVersion.parse(version);
 			TreeSet<String> ts = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
 			if (tags != null) {
 				ts.addAll(tags);
@@ -312,6 +299,17 @@ public interface Jdk extends Comparable<Jdk> {
 			return tags;
 		}
 
+		@Override
+		@NonNull
+		public JavaVersion javaVersion() {
+			return javaVersion;
+		}
+
+		@Override
+		public int majorVersion() {
+			return javaVersion.major();
+		}
+
 		@Override
 		public boolean equals(Object o) {
 			if (this == o)
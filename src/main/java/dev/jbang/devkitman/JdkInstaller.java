@@ -1,17 +1,21 @@
 package dev.jbang.devkitman;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.stream.Stream;
 
 import org.jspecify.annotations.NonNull;
 import org.jspecify.annotations.Nullable;
 
+import dev.jbang.devkitman.util.JdkProfile;
+
 /**
  * This interface must be implemented by installers that are able to install
  * JDKs on the user's system. They should be able to install and uninstall them
  * at the user's request.
  */
-public interface JdkInstaller extends JdkDistroQuery {
+public interface JdkInstaller extends JdkDistroQuery, Closeable {
 
 	/**
 	 * This method returns a set of JDKs that are available for installation.
@@ -87,4 +91,23 @@ public interface JdkInstaller extends JdkDistroQuery {
 		throw new UnsupportedOperationException(
 				"Uninstalling a JDK is not supported by " + getClass().getName());
 	}
+
+	/**
+	 * Returns the profile that determines which parts of the JDKs get installed
+	 * by this installer. By default that's everything.
+	 *
+	 * @return A JDK profile
+	 */
+	@NonNull
+	default JdkProfile profile() {
+		return JdkProfile.full;
+	}
+
+	/**
+	 * Releases any resources (like HTTP connections) held by this installer. By
+	 * default this does nothing.
+	 */
+	@Override
+	default void close() throws IOException {
+	}
 }
@@ -3,6 +3,7 @@ package dev.jbang.devkitman;
 import static dev.jbang.devkitman.util.FileUtils.deleteOnExit;
 
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -15,6 +16,12 @@ import java.util.function.BiFunction;
 import org.jspecify.annotations.NonNull;
 import org.jspecify.annotations.Nullable;
 
+import dev.jbang.devkitman.util.ArchiveCache;
+import dev.jbang.devkitman.util.CatalogSnapshot;
+import dev.jbang.devkitman.util.DiskHttpCacheStorage;
+import dev.jbang.devkitman.util.JdkProfile;
+import dev.jbang.devkitman.util.NetUtils;
+
 public class JdkInstallers {
 	private List<JdkInstallers.Discovery> discoveries;
 
@@ -155,6 +162,129 @@ public class JdkInstallers {
 				return cachePath;
 			}
 
+			/**
+			 * Returns the cache for downloaded JDK archives if one was configured using
+			 * the <code>archivecache</code> property, whose value is the maximum size of
+			 * the cache in megabytes. The archives are stored in the
+			 * <code>archives</code> folder of the cache path.
+			 *
+			 * @return An archive cache or <code>null</code>
+			 */
+			public @Nullable ArchiveCache archiveCache() {
+				String size = properties.get("archivecache");
+				if (size == null || size.isEmpty()) {
+					return null;
+				}
+				long mb;
+				try {
+					mb = Long.parseLong(size.trim());
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Invalid archive cache size: " + size);
+				}
+				return mb > 0 ? new ArchiveCache(cachePath().resolve("archives"), mb * 1024 * 1024) : null;
+			}
+
+			/**
+			 * Returns the folder where HTTP responses (like catalogs) get cached. It's a
+			 * folder of its own inside the cache path, because the HTTP cache removes
+			 * files it doesn't recognize. Older versions cached the responses in the
+			 * cache path itself, the first time the folder gets created those files are
+			 * removed.
+			 *
+			 * @return Path to the HTTP cache folder
+			 */
+			public @NonNull Path httpCachePath() {
+				Path httpCachePath = cachePath().resolve("http");
+				if (!java.nio.file.Files.isDirectory(httpCachePath)) {
+					DiskHttpCacheStorage.removeLegacyEntries(cachePath());
+					try {
+						java.nio.file.Files.createDirectories(httpCachePath);
+					} catch (java.io.IOException e) {
+						// The cache will try again when it stores its first entry
+					}
+				}
+				return httpCachePath;
+			}
+
+			/**
+			 * Returns the profile that determines which parts of the JDKs get installed,
+			 * as set using the <code>profile</code> property (e.g.
+			 * <code>jbang;profile=runtime</code>). Defaults to installing everything.
+			 *
+			 * @return A JDK profile
+			 */
+			public @NonNull JdkProfile profile() {
+				return JdkProfile.parse(properties.get("profile"));
+			}
+
+			/**
+			 * Returns the minimum time that catalog responses are served from the HTTP
+			 * cache before being revalidated with the server, as set using the
+			 * <code>cachemaxage</code> property in minutes (e.g.
+			 * <code>foojay;cachemaxage=720</code>).
+			 *
+			 * @return A duration
+			 */
+			public @NonNull Duration httpCacheMaxAge() {
+				return minutes("cachemaxage", NetUtils.DEFAULT_CACHE_MAX_AGE);
+			}
+
+			/**
+			 * Returns for how long a stale catalog response may still be served from the
+			 * HTTP cache while it is being revalidated in the background, as set using
+			 * the <code>cachestale</code> property in minutes. Defaults to 0, which
+			 * means stale responses are always revalidated before being used. Any other
+			 * value makes the HTTP client start a (non-daemon) thread for the
+			 * revalidations, which only gets stopped when the installer is closed, so
+			 * whoever uses it (normally the <code>JdkManager</code>) must close it.
+			 *
+			 * @return A duration
+			 */
+			public @NonNull Duration httpCacheStaleWhileRevalidate() {
+				return minutes("cachestale", Duration.ZERO);
+			}
+
+			/**
+			 * Returns the store for snapshots of the installers' catalogs, kept in the
+			 * <code>catalogs</code> folder of the cache path. Snapshots are only used
+			 * when the <code>catalogmaxage</code> property is set (e.g.
+			 * <code>jbang;catalogmaxage=60</code>), snapshots older than that many
+			 * minutes get refreshed in the background. Snapshots older than the
+			 * <code>catalogmaxstale</code> property in minutes are not used at all.
+			 *
+			 * @return A catalog snapshot store or <code>null</code> if disabled
+			 */
+			public @Nullable CatalogSnapshot catalogSnapshot() {
+				if (!properties.containsKey("catalogmaxage")) {
+					return null;
+				}
+				Duration maxAge = minutes("catalogmaxage", CatalogSnapshot.DEFAULT_MAX_AGE);
+				Duration maxStale = minutes("catalogmaxstale",
+						maxAge.compareTo(CatalogSnapshot.DEFAULT_MAX_STALE) > 0 ? maxAge
+								: CatalogSnapshot.DEFAULT_MAX_STALE);
+				if (maxStale.compareTo(maxAge) < 0) {
+					throw new IllegalArgumentException(
+							"The catalogmaxstale property must not be less than catalogmaxage");
+				}
+				return new CatalogSnapshot(cachePath().resolve("catalogs"), maxAge, maxStale);
+			}
+
+			private Duration minutes(String property, Duration defaultValue) {
+				String value = properties.get(property);
+				if (value == null || value.isEmpty()) {
+					return defaultValue;
+				}
+				try {
+					long minutes = Long.parseLong(value.trim());
+					if (minutes >= 0) {
+						return Duration.ofMinutes(minutes);
+					}
+				} catch (NumberFormatException e) {
+					// Handled below
+				}
+				throw new IllegalArgumentException("Invalid number of minutes for " + property + ": " + value);
+			}
+
 			public Config copy() {
 				return new Config(jdkProvider, properties, cachePath);
 			}
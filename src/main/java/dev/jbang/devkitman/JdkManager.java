@@ -1,11 +1,19 @@
 package dev.jbang.devkitman;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -16,9 +24,10 @@ import org.jspecify.annotations.Nullable;
 
 import dev.jbang.devkitman.jdkproviders.JBangJdkProvider;
 import dev.jbang.devkitman.jdkproviders.LinkedJdkProvider;
+import dev.jbang.devkitman.util.ConcurrencyUtils;
 import dev.jbang.devkitman.util.JavaUtils;
 
-public class JdkManager implements JdkDistroQuery {
+public class JdkManager implements JdkDistroQuery, Closeable {
 	public static final int DEFAULT_JAVA_VERSION = 21;
 	public final int defaultJavaVersion;
 
@@ -28,6 +37,35 @@ public class JdkManager implements JdkDistroQuery {
 
 	private final JdkProvider defaultProvider;
 
+	private final int parallelism;
+	private ExecutorService executor;
+
+	// Set for threads that are running a provider query for us, so nested
+	// queries don't wait for a slot in the (possibly exhausted) thread pool
+	private static final ThreadLocal<Boolean> inProviderQuery = new ThreadLocal<>();
+
+	private static final int MAX_CACHED_RESOLUTIONS = 256;
+
+	private final boolean cacheResolutions;
+	private final long cacheTtlNanos;
+	// The most recently used lookups, at most MAX_CACHED_RESOLUTIONS of them
+	private final Map<ResolutionKey, Resolution> resolutions = Collections
+		.synchronizedMap(new LinkedHashMap<ResolutionKey, Resolution>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ResolutionKey, Resolution> eldest) {
+				return size() > MAX_CACHED_RESOLUTIONS;
+			}
+		});
+	// Incremented on every invalidation. Each cached result records the
+	// generation in which its lookup started, so results of lookups that were
+	// running while the cache got cleared are never used
+	private final AtomicLong resolutionGeneration = new AtomicLong();
+
+	// The installs that are currently in progress, by provider and JDK id
+	private final Map<String, CompletableFuture<Jdk.InstalledJdk>> installing = new ConcurrentHashMap<>();
+	// The last successful install, by provider and JDK id
+	private final Map<String, FinishedInstall> finished = new ConcurrentHashMap<>();
+
 	/**
 	 * Creates a JDK manager that is configured exactly like the one used by JBang.
 	 */
@@ -45,6 +83,9 @@ public class JdkManager implements JdkDistroQuery {
 	public static class Builder {
 		protected final List<JdkProvider> providers = new ArrayList<>();
 		protected int defaultJavaVersion = DEFAULT_JAVA_VERSION;
+		protected int parallelism = 1;
+		protected boolean cacheResolutions = false;
+		protected @Nullable Duration cacheTtl = null;
 
 		protected Builder() {
 		}
@@ -66,18 +107,84 @@ public class JdkManager implements JdkDistroQuery {
 			return this;
 		}
 
+		/**
+		 * Sets the maximum number of providers that will be queried concurrently when
+		 * looking up or listing installed JDKs. The default is 1, which means that
+		 * providers are queried one after the other. With a higher value all
+		 * providers are queried at the same time, but the results are still returned
+		 * in the order of the providers, so the outcome is the same either way. This
+		 * requires the providers to be safe for use by multiple threads.
+		 *
+		 * @param parallelism The maximum number of concurrent provider queries
+		 * @return This builder
+		 */
+		public Builder parallelism(int parallelism) {
+			if (parallelism < 1) {
+				throw new IllegalArgumentException("Parallelism must be at least 1");
+			}
+			this.parallelism = parallelism;
+			return this;
+		}
+
+		/**
+		 * Enables caching of the results of JDK lookups. Once enabled, looking up the
+		 * same version or id with the same provider filter will return the result of
+		 * the previous lookup instead of querying all providers again. The cache gets
+		 * cleared automatically whenever JDKs are (un)installed, linked or when the
+		 * defaults are changed through this manager. Changes made outside of it (e.g.
+		 * by another process) will not be noticed until the cache is cleared using
+		 * <code>clearResolutionCache()</code>. Lookups that didn't find anything are
+		 * not cached, so a JDK that appears later will be found.
+		 * <p>
+		 * Provider filters are compared using <code>equals()</code>, which for
+		 * lambdas means they must be the same instance. Use the constants and
+		 * methods of <code>JdkProvider.Predicates</code>, or keep a filter in a
+		 * field, otherwise every lookup gets cached separately. Only the most
+		 * recently used lookups are kept.
+		 *
+		 * @return This builder
+		 */
+		public Builder cacheResolutions() {
+			this.cacheResolutions = true;
+			this.cacheTtl = null;
+			return this;
+		}
+
+		/**
+		 * Enables caching of the results of JDK lookups, just like
+		 * <code>cacheResolutions()</code>, but cached results will only be used for
+		 * the given amount of time. This makes it possible to eventually pick up on
+		 * changes made outside of this manager. Unlike without a TTL, lookups that
+		 * didn't find anything are cached too.
+		 *
+		 * @param ttl The maximum amount of time a cached result will be used
+		 * @return This builder
+		 */
+		public Builder cacheResolutions(@NonNull Duration ttl) {
+			if (ttl.isNegative() || ttl.isZero()) {
+				throw new IllegalArgumentException("Cache TTL must be positive");
+			}
+			this.cacheResolutions = true;
+			this.cacheTtl = ttl;
+			return this;
+		}
+
 		public JdkManager build() {
 			if (providers.isEmpty()) {
 				throw new IllegalStateException("No providers could be initialized. Aborting.");
 			}
-			return new JdkManager(providers, defaultJavaVersion);
+			return new JdkManager(providers, defaultJavaVersion, parallelism, cacheResolutions, cacheTtl);
 		}
 	}
 
-	private JdkManager(List<JdkProvider> providers, int defaultJavaVersion) {
+	private JdkManager(List<JdkProvider> providers, int defaultJavaVersion, int parallelism,
+			boolean cacheResolutions, @Nullable Duration cacheTtl) {
 		assert defaultJavaVersion > 0;
 		this.providers = Collections.unmodifiableList(providers);
 		this.defaultJavaVersion = defaultJavaVersion;
+		this.parallelism = parallelism;
+		this.cacheResolutions = cacheResolutions;
+		this.cacheTtlNanos = cacheTtl != null ? cacheTtl.toNanos() : -1;
 		this.defaultProvider = provider("default");
 		for (JdkProvider provider : providers) {
 			provider.manager(this);
@@ -105,6 +212,171 @@ public class JdkManager implements JdkDistroQuery {
 		return providers(JdkProvider.Predicates.name(name)).findFirst().orElse(null);
 	}
 
+	/**
+	 * Returns the first non-null result of the query for the providers that match
+	 * the filter, in provider order. Depending on the configured parallelism the
+	 * providers are either queried one by one or all at the same time, in which
+	 * case the queries of lower priority providers are cancelled as soon as a
+	 * higher priority provider has returned a result.
+	 */
+	private <T> @Nullable T firstFromProviders(@NonNull Predicate<JdkProvider> providerFilter,
+			@NonNull Function<JdkProvider, T> query) {
+		List<JdkProvider> provs = providers(providerFilter).collect(Collectors.toList());
+		if (!isParallel(provs)) {
+			return provs.stream().map(query).filter(Objects::nonNull).findFirst().orElse(null);
+		}
+		return ConcurrencyUtils.firstNonNull(executor(), providerQueries(provs, query));
+	}
+
+	/**
+	 * Returns the results of the query for all the providers that match the
+	 * filter, in provider order.
+	 */
+	private <T> @NonNull List<T> allFromProviders(@NonNull Predicate<JdkProvider> providerFilter,
+			@NonNull Function<JdkProvider, T> query) {
+		List<JdkProvider> provs = providers(providerFilter).collect(Collectors.toList());
+		if (!isParallel(provs)) {
+			return provs.stream().map(query).collect(Collectors.toList());
+		}
+		return ConcurrencyUtils.all(executor(), providerQueries(provs, query));
+	}
+
+	private boolean isParallel(List<JdkProvider> provs) {
+		return parallelism > 1 && provs.size() > 1 && inProviderQuery.get() == null;
+	}
+
+	private static <T> List<Supplier<T>> providerQueries(List<JdkProvider> provs,
+			Function<JdkProvider, T> query) {
+		List<Supplier<T>> queries = new ArrayList<>(provs.size());
+		for (JdkProvider p : provs) {
+			queries.add(() -> {
+				inProviderQuery.set(Boolean.TRUE);
+				try {
+					return query.apply(p);
+				} finally {
+					inProviderQuery.remove();
+				}
+			});
+		}
+		return queries;
+	}
+
+	private synchronized ExecutorService executor() {
+		if (executor == null) {
+			executor = ConcurrencyUtils.newBoundedExecutor("jdk-provider-query", parallelism);
+		}
+		return executor;
+	}
+
+	/**
+	 * Closes all providers, releasing the resources (like HTTP connections and
+	 * cache revalidation threads) held by them and their installers. Failing to
+	 * close a provider doesn't keep the others from being closed.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (executor != null) {
+				executor.shutdownNow();
+				executor = null;
+			}
+		}
+		for (JdkProvider provider : providers) {
+			try {
+				provider.close();
+			} catch (IOException | RuntimeException e) {
+				LOGGER.log(Level.FINE, "Couldn't close JDK provider " + provider.name(), e);
+			}
+		}
+	}
+
+	/**
+	 * Clears the results of all previous JDK lookups when caching was enabled
+	 * using <code>Builder.cacheResolutions()</code>. There is normally no need to
+	 * call this method, because the cache is cleared automatically by all
+	 * operations of this manager that make changes. It's only needed when JDKs
+	 * might have been (un)installed by other means.
+	 */
+	public void clearResolutionCache() {
+		resolutionGeneration.incrementAndGet();
+		resolutions.clear();
+	}
+
+	/**
+	 * Returns the cached result of a lookup if available, otherwise performs the
+	 * lookup and stores its result. A <code>null</code> result is only stored when
+	 * there's a TTL, because nothing would ever make it expire otherwise.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T extends Jdk> @Nullable T cached(@NonNull Lookup lookup, @NonNull String query,
+			@NonNull Predicate<JdkProvider> providerFilter, @NonNull Supplier<T> resolver) {
+		if (!cacheResolutions) {
+			return resolver.get();
+		}
+		ResolutionKey key = new ResolutionKey(lookup, query, providerFilter);
+		long generation = resolutionGeneration.get();
+		Resolution res = resolutions.get(key);
+		if (res != null && res.generation == generation
+				&& (cacheTtlNanos < 0 || System.nanoTime() - res.created < cacheTtlNanos)) {
+			return (T) res.jdk;
+		}
+		// We don't use computeIfAbsent() here because lookups can be recursive
+		T jdk = resolver.get();
+		// Even if the cache gets cleared right after this check, the entry won't
+		// be used because its generation is outdated
+		if (generation == resolutionGeneration.get() && (jdk != null || cacheTtlNanos >= 0)) {
+			resolutions.put(key, new Resolution(jdk, generation));
+		}
+		return jdk;
+	}
+
+	private enum Lookup {
+		JdkByVersion, JdkById, InstalledByVersion, InstalledById
+	}
+
+	private static class ResolutionKey {
+		private final Lookup lookup;
+		private final String query;
+		private final Predicate<JdkProvider> providerFilter;
+
+		ResolutionKey(Lookup lookup, String query, Predicate<JdkProvider> providerFilter) {
+			this.lookup = lookup;
+			this.query = query;
+			this.providerFilter = providerFilter;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o)
+				return true;
+			if (o == null || getClass() != o.getClass())
+				return false;
+			ResolutionKey that = (ResolutionKey) o;
+			// For lambdas this is an identity check
+			return lookup == that.lookup && query.equals(that.query) && providerFilter.equals(that.providerFilter);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(lookup, query, providerFilter);
+		}
+	}
+
+	private static class Resolution {
+		private final @Nullable Jdk jdk;
+		private final long generation;
+		private final long created = System.nanoTime();
+
+		Resolution(@Nullable Jdk jdk, long generation) {
+			this.jdk = jdk;
+			this.generation = generation;
+		}
+	}
+
+	private static String versionQuery(int version, boolean openVersion) {
+		return openVersion ? version + "+" : String.valueOf(version);
+	}
+
 	/**
 	 * This method is like <code>getJdk()</code> but will make sure that the JDK
 	 * being returned is actually installed. It will perform an installation if
@@ -294,6 +566,15 @@ public class JdkManager implements JdkDistroQuery {
 			int requestedVersion,
 			boolean openVersion,
 			@NonNull Predicate<JdkProvider> providerFilter) {
+		return cached(Lookup.JdkByVersion, versionQuery(requestedVersion, openVersion), providerFilter,
+				() -> resolveJdkByVersion(requestedVersion, openVersion, providerFilter));
+	}
+
+	@Nullable
+	private Jdk resolveJdkByVersion(
+			int requestedVersion,
+			boolean openVersion,
+			@NonNull Predicate<JdkProvider> providerFilter) {
 		// First we try to get the requested version (or higher if openVersion is true)
 		Jdk jdk = getInstalledJdkByVersion(requestedVersion, openVersion, providerFilter);
 		if (jdk == null) {
@@ -341,11 +622,13 @@ public class JdkManager implements JdkDistroQuery {
 	 */
 	private @Nullable Jdk getJdkById(
 			@NonNull String requestedId, @NonNull Predicate<JdkProvider> providerFilter) {
-		Jdk jdk = getInstalledJdkById(requestedId, providerFilter);
-		if (jdk == null) {
-			jdk = getAvailableJdkById(requestedId);
-		}
-		return jdk;
+		return cached(Lookup.JdkById, requestedId, providerFilter, () -> {
+			Jdk jdk = getInstalledJdkById(requestedId, providerFilter);
+			if (jdk == null) {
+				jdk = getAvailableJdkById(requestedId);
+			}
+			return jdk;
+		});
 	}
 
 	/**
@@ -397,11 +680,8 @@ public class JdkManager implements JdkDistroQuery {
 	 */
 	private Jdk.@Nullable InstalledJdk getInstalledJdkByVersion(
 			int version, boolean openVersion, @NonNull Predicate<JdkProvider> providerFilter) {
-		return providers(providerFilter)
-			.map(p -> p.getInstalledByVersion(version, openVersion))
-			.filter(Objects::nonNull)
-			.findFirst()
-			.orElse(null);
+		return cached(Lookup.InstalledByVersion, versionQuery(version, openVersion), providerFilter,
+				() -> firstFromProviders(providerFilter, p -> p.getInstalledByVersion(version, openVersion)));
 	}
 
 	/**
@@ -415,11 +695,8 @@ public class JdkManager implements JdkDistroQuery {
 	 */
 	private Jdk.@Nullable InstalledJdk getInstalledJdkById(
 			String requestedId, @NonNull Predicate<JdkProvider> providerFilter) {
-		return providers(providerFilter)
-			.map(p -> p.getInstalledById(requestedId))
-			.filter(Objects::nonNull)
-			.findFirst()
-			.orElse(null);
+		return cached(Lookup.InstalledById, requestedId, providerFilter,
+				() -> firstFromProviders(providerFilter, p -> p.getInstalledById(requestedId)));
 	}
 
 	private Jdk.@Nullable AvailableJdk getAvailableJdkByVersion(int version, boolean openVersion) {
@@ -438,7 +715,54 @@ public class JdkManager implements JdkDistroQuery {
 			.orElse(null);
 	}
 
+	/**
+	 * Installs the given JDK. If the same JDK is already being installed by another
+	 * thread, this method will wait for that install to finish and return its
+	 * result instead of installing the JDK a second time. The same goes for an
+	 * install that finished after this method was called, but before it could
+	 * claim the install for itself. A JDK that was installed earlier does get
+	 * installed again.
+	 */
 	Jdk.@NonNull InstalledJdk installJdk(Jdk.@NonNull AvailableJdk jdk) {
+		long started = System.nanoTime();
+		String key = jdk.provider().name() + ":" + jdk.id();
+		CompletableFuture<Jdk.InstalledJdk> install = new CompletableFuture<>();
+		CompletableFuture<Jdk.InstalledJdk> running = installing.putIfAbsent(key, install);
+		if (running != null) {
+			LOGGER.log(Level.FINE, "Waiting for concurrent install of JDK: {0}", jdk.id());
+			return ConcurrencyUtils.get(running);
+		}
+		try {
+			Jdk.InstalledJdk newJdk;
+			FinishedInstall done = finished.get(key);
+			if (done != null && done.finishedAt - started >= 0) {
+				LOGGER.log(Level.FINE, "JDK was installed concurrently: {0}", jdk.id());
+				newJdk = done.jdk;
+			} else {
+				newJdk = doInstallJdk(jdk);
+				finished.put(key, new FinishedInstall(newJdk));
+			}
+			install.complete(newJdk);
+			return newJdk;
+		} catch (RuntimeException | Error e) {
+			install.completeExceptionally(e);
+			throw e;
+		} finally {
+			installing.remove(key, install);
+			clearResolutionCache();
+		}
+	}
+
+	private static class FinishedInstall {
+		private final Jdk.InstalledJdk jdk;
+		private final long finishedAt = System.nanoTime();
+
+		FinishedInstall(Jdk.InstalledJdk jdk) {
+			this.jdk = jdk;
+		}
+	}
+
+	private Jdk.@NonNull InstalledJdk doInstallJdk(Jdk.@NonNull AvailableJdk jdk) {
 		Jdk.InstalledJdk newJdk = jdk.provider().install(jdk);
 
 		if (hasDefaultProvider() && !newJdk.provider().equals(defaultProvider)) {
@@ -464,6 +788,14 @@ public class JdkManager implements JdkDistroQuery {
 	}
 
 	void uninstallJdk(Jdk.@NonNull InstalledJdk jdk) {
+		try {
+			doUninstallJdk(jdk);
+		} finally {
+			clearResolutionCache();
+		}
+	}
+
+	private void doUninstallJdk(Jdk.@NonNull InstalledJdk jdk) {
 		Jdk.InstalledJdk resetDefault = null;
 		Jdk.InstalledJdk resetDefaultVer = null;
 		if (hasDefaultProvider() && !jdk.provider().equals(defaultProvider)) {
@@ -552,7 +884,11 @@ public class JdkManager implements JdkDistroQuery {
 			throw new IllegalArgumentException("Unable to create link to JDK in path: " + jdkPath);
 		}
 		LOGGER.log(Level.FINE, "Linking JDK: {0} to {1}", new Object[] { id, jdkPath });
-		linked.install(linkedJdk);
+		try {
+			linked.install(linkedJdk);
+		} finally {
+			clearResolutionCache();
+		}
 	}
 
 	/**
@@ -629,6 +965,11 @@ public class JdkManager implements JdkDistroQuery {
 	}
 
 	private Stream<Jdk.InstalledJdk> listInstalledJdks(Predicate<JdkProvider> providerFilter) {
+		if (parallelism > 1) {
+			return allFromProviders(providerFilter, p -> p.listInstalled().collect(Collectors.toList()))
+				.stream()
+				.flatMap(List::stream);
+		}
 		return providers(providerFilter).flatMap(JdkProvider::listInstalled);
 	}
 
@@ -703,7 +1044,11 @@ public class JdkManager implements JdkDistroQuery {
 					throw new IllegalArgumentException(
 							"Unable to determine Java version in given path: " + jdk.home());
 				}
-				defaultProvider.install(newDefJdk);
+				try {
+					defaultProvider.install(newDefJdk);
+				} finally {
+					clearResolutionCache();
+				}
 				LOGGER.log(Level.INFO, "Default JDK set to {0}", jdk);
 			}
 		}
@@ -730,7 +1075,11 @@ public class JdkManager implements JdkDistroQuery {
 					throw new IllegalArgumentException(
 							"Unable to determine Java version in given path: " + jdk.home());
 				}
-				defaultProvider.install(newDefJdk);
+				try {
+					defaultProvider.install(newDefJdk);
+				} finally {
+					clearResolutionCache();
+				}
 				LOGGER.log(Level.INFO, "Default JDK for version {0} set to {1}",
 						new Object[] { jdk.majorVersion(), jdk });
 			}
@@ -745,7 +1094,11 @@ public class JdkManager implements JdkDistroQuery {
 	public void removeDefaultJdk() {
 		Jdk.InstalledJdk defJdk = getDefaultJdk();
 		if (defJdk != null) {
-			defJdk.uninstall();
+			try {
+				defJdk.uninstall();
+			} finally {
+				clearResolutionCache();
+			}
 		}
 	}
 
@@ -760,7 +1113,11 @@ public class JdkManager implements JdkDistroQuery {
 	public void removeDefaultJdkForVersion(int majorVersion) {
 		Jdk.InstalledJdk defJdk = getDefaultJdkForVersion(majorVersion);
 		if (defJdk != null) {
-			defJdk.uninstall();
+			try {
+				defJdk.uninstall();
+			} finally {
+				clearResolutionCache();
+			}
 		}
 	}
 
@@ -770,8 +1127,7 @@ public class JdkManager implements JdkDistroQuery {
 			return false;
 		}
 		Path currentJdk = Paths.get(jh);
-		return providers(JdkProvider.Predicates.canUpdate)
-			.anyMatch(p -> p.getInstalledByPath(currentJdk) != null);
+		return firstFromProviders(JdkProvider.Predicates.canUpdate, p -> p.getInstalledByPath(currentJdk)) != null;
 	}
 
 	@Override
@@ -1,5 +1,7 @@
 package dev.jbang.devkitman;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.function.Predicate;
@@ -8,7 +10,7 @@ import java.util.stream.Stream;
 import org.jspecify.annotations.NonNull;
 import org.jspecify.annotations.Nullable;
 
-import dev.jbang.devkitman.util.JavaUtils;
+import dev.jbang.devkitman.util.JdkHomeProbe;
 
 /**
  * This interface must be implemented by providers that are able to give access
@@ -21,12 +23,13 @@ import dev.jbang.devkitman.util.JavaUtils;
  * specific to the implementation but should follow an important rule: they must
  * be unique across implementations.
  */
-public interface JdkProvider {
+public interface JdkProvider extends Closeable {
 
 	default Jdk.@Nullable InstalledJdk createJdk(@NonNull String id, @NonNull Path home) {
-		Optional<String> v = JavaUtils.resolveJavaVersionStringFromPath(home);
+		JdkHomeProbe probe = new JdkHomeProbe(home);
+		Optional<String> v = probe.javaVersion();
 		if (v.isPresent()) {
-			return createJdk(id, home, v.get(), null);
+			return createJdk(id, home, v.get(), probe.tags());
 		} else {
 			return null;
 		}
@@ -249,13 +252,48 @@ public interface JdkProvider {
 				"Uninstalling JDKs is not supported by " + getClass().getName());
 	}
 
+	/**
+	 * Releases any resources (like the ones held by an installer) used by this
+	 * provider. By default this does nothing.
+	 */
+	@Override
+	default void close() throws IOException {
+	}
+
 	class Predicates {
 		public static final Predicate<JdkProvider> all = provider -> true;
 		public static final Predicate<JdkProvider> canUpdate = JdkProvider::canUpdate;
 		public static final Predicate<JdkProvider> canInstall = p -> p.canUpdate() && p.hasFixedVersions();
 
+		/**
+		 * Returns a filter that accepts the provider with the given name. Filters for
+		 * the same name are equal, so they can be used as part of cache keys.
+		 */
 		public static Predicate<JdkProvider> name(String name) {
-			return provider -> provider.name().equalsIgnoreCase(name);
+			return new Name(name);
+		}
+
+		private static class Name implements Predicate<JdkProvider> {
+			private final String name;
+
+			Name(String name) {
+				this.name = name.toLowerCase(Locale.ROOT);
+			}
+
+			@Override
+			public boolean test(JdkProvider provider) {
+				return provider.name().equalsIgnoreCase(name);
+			}
+
+			@Override
+			public boolean equals(Object o) {
+				return o instanceof Name && name.equals(((Name) o).name);
+			}
+
+			@Override
+			public int hashCode() {
+				return name.hashCode();
+			}
 		}
 	}
 }
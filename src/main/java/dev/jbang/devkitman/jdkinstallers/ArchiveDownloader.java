@@ -0,0 +1,203 @@
+package dev.jbang.devkitman.jdkinstallers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+
+import dev.jbang.devkitman.util.ArchiveCache;
+import dev.jbang.devkitman.util.Checksum;
+import dev.jbang.devkitman.util.ConcurrencyUtils;
+import dev.jbang.devkitman.util.FileUtils;
+import dev.jbang.devkitman.util.JdkProfile;
+import dev.jbang.devkitman.util.RemoteAccessProvider;
+import dev.jbang.devkitman.util.StreamPipe;
+import dev.jbang.devkitman.util.UnpackUtils;
+
+/**
+ * Downloads JDK archives for the installers, taking them from the archive cache
+ * when possible. The checksum of an archive is calculated while it is being
+ * downloaded and compared to the expected checksum before the archive is
+ * returned, so a corrupt archive is never installed and no extra pass over the
+ * file is needed. The expected checksum may still be in the process of being
+ * retrieved while the download is running.
+ */
+class ArchiveDownloader {
+	private final RemoteAccessProvider remoteAccessProvider;
+	private final @Nullable ArchiveCache archiveCache;
+
+	// The number of downloaded chunks that can be waiting to be unpacked
+	private static final int PIPE_CHUNKS = 16;
+
+	private static final Logger LOGGER = Logger.getLogger(ArchiveDownloader.class.getName());
+
+	ArchiveDownloader(@NonNull RemoteAccessProvider remoteAccessProvider, @Nullable ArchiveCache archiveCache) {
+		this.remoteAccessProvider = remoteAccessProvider;
+		this.archiveCache = archiveCache;
+	}
+
+	/**
+	 * Downloads the archive for the given URL and unpacks it to the given folder.
+	 * Gzipped tar archives are unpacked while they are being downloaded, which
+	 * overlaps the network and disk I/O. The archive itself is still written to
+	 * disk as well, so it can be verified and cached. Any other type of archive
+	 * is unpacked from disk once it has been downloaded, as are archives whose
+	 * streamed unpacking failed, for example because the download had to be
+	 * restarted halfway through. Callers must not use the
+	 * unpacked files when this method throws an exception, because they might
+	 * have come from a corrupt archive.
+	 *
+	 * @param url       The URL of the archive
+	 * @param size      The expected size of the archive, or -1 if unknown
+	 * @param checksum  The expected checksum of the archive, a future that returns
+	 *                  <code>null</code> means that it is unknown
+	 * @param outputDir The folder to unpack the archive to
+	 * @param profile   The parts of the JDK to unpack
+	 * @return The path to the archive
+	 * @throws IOException If the archive could not be downloaded or unpacked or
+	 *                     if its checksum doesn't match
+	 */
+	@NonNull
+	Path downloadAndUnpack(@NonNull String url, long size, @NonNull Future<Checksum> checksum,
+			@NonNull Path outputDir, @NonNull JdkProfile profile) throws IOException {
+		Checksum expected = checksum.isDone() ? checksum(checksum) : null;
+		Path archive = cached(url, size, expected);
+		if (archive == null) {
+			StreamPipe pipe = new StreamPipe(PIPE_CHUNKS);
+			ExecutorService executor = ConcurrencyUtils.newBoundedExecutor("jdk-unpack", 1);
+			try {
+				Future<Boolean> unpacked = executor.submit(() -> {
+					try (InputStream in = pipe.input()) {
+						return UnpackUtils.unpackJdk(in, outputDir, profile);
+					}
+				});
+				CountingStream tee = new CountingStream(pipe.output());
+				try {
+					archive = fetch(url, checksum, expected, tee);
+					if (tee.count != Files.size(archive)) {
+						pipe.fail(new IOException("Only " + tee.count + " bytes of " + url + " were streamed"));
+					}
+				} finally {
+					pipe.output().close();
+					// Make sure nothing is being written to the output folder anymore
+					awaitQuietly(unpacked);
+				}
+				try {
+					if (ConcurrencyUtils.await(unpacked)) {
+						return archive;
+					}
+				} catch (InterruptedIOException e) {
+					throw e;
+				} catch (IOException e) {
+					// The archive on disk is complete and verified, so we can still use that
+					LOGGER.log(Level.FINE, "Unpacking while downloading failed, unpacking " + archive + " instead",
+							e);
+					FileUtils.deletePath(outputDir);
+				}
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+		UnpackUtils.unpackJdk(archive, outputDir, profile);
+		return archive;
+	}
+
+	@Nullable
+	private Path cached(String url, long size, @Nullable Checksum expected) {
+		if (archiveCache == null) {
+			return null;
+		}
+		return archiveCache.get(expected != null && expected.isSha256() ? expected.value() : null, url, size);
+	}
+
+	private Path fetch(String url, Future<Checksum> checksum, @Nullable Checksum expected, @Nullable OutputStream tee)
+			throws IOException {
+		String algorithm = expected != null ? expected.algorithm() : Checksum.SHA_256;
+		MessageDigest digest = Checksum.newDigest(algorithm);
+		LOGGER.log(Level.FINE, "Downloading {0}", url);
+		Path archive = tee != null ? remoteAccessProvider.downloadFromUrl(url, digest, tee)
+				: remoteAccessProvider.downloadFromUrl(url, digest);
+		String actual = Checksum.toHex(digest.digest());
+
+		if (expected == null) {
+			expected = checksum(checksum);
+		}
+		if (expected == null) {
+			LOGGER.log(Level.FINE, "No checksum available for {0}, skipping verification", url);
+		} else if (expected.algorithm().equals(algorithm)) {
+			expected.verify(actual, archive);
+		} else {
+			// The checksum turned out to use a different algorithm than we guessed
+			expected.verify(archive);
+		}
+
+		if (archiveCache != null) {
+			return archiveCache.put(Checksum.SHA_256.equals(algorithm) ? actual : null, url, archive);
+		}
+		return archive;
+	}
+
+	/**
+	 * Removes the archive for the given URL from the cache, if any
+	 */
+	void discard(@NonNull String url, @Nullable Checksum checksum) {
+		if (archiveCache != null) {
+			archiveCache.remove(checksum != null && checksum.isSha256() ? checksum.value() : null, url);
+		}
+	}
+
+	/**
+	 * Passes everything on to another stream while counting the bytes that were
+	 * written successfully
+	 */
+	private static class CountingStream extends OutputStream {
+		private final OutputStream out;
+		long count;
+
+		CountingStream(OutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+
+	private static void awaitQuietly(Future<?> future) {
+		try {
+			future.get();
+		} catch (ExecutionException e) {
+			// Will be reported by whoever is interested in the result
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static @Nullable Checksum checksum(Future<Checksum> checksum) {
+		try {
+			return ConcurrencyUtils.await(checksum);
+		} catch (IOException | RuntimeException e) {
+			LOGGER.log(Level.FINE, "Couldn't retrieve checksum", e);
+			return null;
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package dev.jbang.devkitman.jdkinstallers;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+
+import dev.jbang.devkitman.Jdk;
+
+/**
+ * An in-memory index over the parsed entries of a JDK catalog. It is built once
+ * and then lets installers look up entries by release type, vendor and major
+ * version, and the resulting <code>AvailableJdk</code> objects by id, without
+ * having to download, parse or sort the catalog again.
+ *
+ * @param <T> The type of the catalog entries
+ */
+class CatalogIndex<T> {
+	private final List<T> entries;
+	// release type -> vendor -> major version -> positions in entries
+	private final Map<String, Map<String, NavigableMap<Integer, List<Integer>>>> index = new HashMap<>();
+	private final Function<List<T>, Stream<Jdk.AvailableJdk>> processor;
+
+	private List<Jdk.AvailableJdk> available;
+	private Map<String, Jdk.AvailableJdk> availableById;
+
+	/**
+	 * Creates a new index
+	 *
+	 * @param entries      The catalog entries, in their original order
+	 * @param releaseType  Returns the release type ("ga", "ea") of an entry
+	 * @param vendor       Returns the vendor/distribution of an entry
+	 * @param majorVersion Returns the major version of an entry
+	 * @param processor    Turns the list of entries into the sorted stream of
+	 *                     available JDKs returned by <code>available()</code>
+	 */
+	CatalogIndex(@NonNull List<T> entries,
+			@NonNull Function<T, String> releaseType,
+			@NonNull Function<T, String> vendor,
+			@NonNull ToIntFunction<T> majorVersion,
+			@NonNull Function<List<T>, Stream<Jdk.AvailableJdk>> processor) {
+		this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+		this.processor = processor;
+		for (int i = 0; i < this.entries.size(); i++) {
+			T entry = this.entries.get(i);
+			index.computeIfAbsent(key(releaseType.apply(entry)), k -> new HashMap<>())
+				.computeIfAbsent(key(vendor.apply(entry)), k -> new TreeMap<>())
+				.computeIfAbsent(majorVersion.applyAsInt(entry), k -> new ArrayList<>())
+				.add(i);
+		}
+	}
+
+	/**
+	 * Returns all the entries of the catalog in their original order
+	 */
+	@NonNull
+	List<T> entries() {
+		return entries;
+	}
+
+	/**
+	 * Returns the entries matching the given criteria, in their original order.
+	 *
+	 * @param releaseType The release type to look for or <code>null</code> for any
+	 * @param vendor      The vendor to look for or <code>null</code> for any
+	 * @param version     The (minimum) major version to look for, 0 means any
+	 * @param openVersion If true all versions higher than the given one match too
+	 * @return A list of entries, possibly empty
+	 */
+	@NonNull
+	List<T> find(@Nullable String releaseType, @Nullable String vendor, int version, boolean openVersion) {
+		List<Integer> positions = new ArrayList<>();
+		for (Map<String, NavigableMap<Integer, List<Integer>>> vendors : select(index, releaseType)) {
+			for (NavigableMap<Integer, List<Integer>> versions : select(vendors, vendor)) {
+				if (openVersion) {
+					versions.tailMap(version, true).values().forEach(positions::addAll);
+				} else {
+					List<Integer> ps = versions.get(version);
+					if (ps != null) {
+						positions.addAll(ps);
+					}
+				}
+			}
+		}
+		Collections.sort(positions);
+		return positions.stream().map(entries::get).collect(Collectors.toList());
+	}
+
+	/**
+	 * Returns the available JDKs for this catalog. They are determined only once,
+	 * the first time this method is called.
+	 */
+	@NonNull
+	synchronized List<Jdk.AvailableJdk> available() {
+		if (available == null) {
+			available = Collections.unmodifiableList(processor.apply(entries).collect(Collectors.toList()));
+			availableById = new HashMap<>();
+			for (Jdk.AvailableJdk jdk : available) {
+				availableById.putIfAbsent(jdk.id(), jdk);
+			}
+		}
+		return available;
+	}
+
+	/**
+	 * Returns the available JDK with the given id or <code>null</code> if it
+	 * doesn't exist in this catalog
+	 */
+	Jdk.@Nullable AvailableJdk availableById(@NonNull String id) {
+		available();
+		return availableById.get(id);
+	}
+
+	private static <V> Collection<V> select(Map<String, V> map, @Nullable String key) {
+		if (key == null) {
+			return map.values();
+		}
+		V value = map.get(key(key));
+		return value != null ? Collections.singletonList(value) : Collections.emptyList();
+	}
+
+	private static String key(@Nullable String key) {
+		return key != null ? key.toLowerCase(Locale.ROOT) : "";
+	}
+}
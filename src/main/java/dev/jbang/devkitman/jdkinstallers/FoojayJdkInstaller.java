@@ -4,7 +4,12 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -30,6 +35,18 @@ public class FoojayJdkInstaller implements JdkInstaller {
 	protected final Function<JdkResult, String> jdkId;
 	protected RemoteAccessProvider remoteAccessProvider;
 	protected String distros = DEFAULT_DISTROS;
+	protected @Nullable ArchiveCache archiveCache;
+	protected @Nullable CatalogSnapshot catalogSnapshot;
+	protected JdkProfile profile = JdkProfile.full;
+	protected @NonNull Duration catalogMaxAge = NetUtils.DEFAULT_CACHE_MAX_AGE;
+
+	// Set when the remote access provider was created by this installer (or its
+	// discovery), in which case closing the installer closes it as well
+	private boolean ownsRemoteAccessProvider;
+	private volatile boolean closed;
+
+	private final Map<String, LoadedCatalog> catalogs = new ConcurrentHashMap<>();
+	private CatalogIndex<CatalogSnapshot.Entry> snapshotIndex;
 
 	public static final String FOOJAY_JDK_VERSIONS_URL = "https://api.foojay.io/disco/v3.0/packages?";
 	public static final String FOOJAY_JDK_DISTROS_URL = "https://api.foojay.io/disco/v3.0/distributions?include_versions=false&include_synonyms=false";
@@ -38,7 +55,17 @@ public class FoojayJdkInstaller implements JdkInstaller {
 
 	private static final Logger LOGGER = Logger.getLogger(FoojayJdkInstaller.class.getName());
 
+	/**
+	 * A catalog that is being or has been loaded, so concurrent lookups of the
+	 * same URL share a single request
+	 */
+	private static class LoadedCatalog {
+		final CompletableFuture<CatalogIndex<JdkResult>> index = new CompletableFuture<>();
+		final long loadedAt = System.nanoTime();
+	}
+
 	public static class JdkResultLinks {
+		public String pkg_info_uri;
 		public String pkg_download_redirect;
 	}
 
@@ -49,13 +76,35 @@ public class FoojayJdkInstaller implements JdkInstaller {
 		public String release_status; // ga, ea
 		public String package_type; // jdk, jre
 		public boolean javafx_bundled;
+		public long size; // size of the archive in bytes, 0 if unknown
 		public JdkResultLinks links;
+
+		private transient JavaVersion javaVersion;
+
+		/**
+		 * Returns the parsed <code>java_version</code>, it only gets parsed once
+		 */
+		public @NonNull JavaVersion javaVersion() {
+			if (javaVersion == null) {
+				javaVersion = JavaVersion.parse(java_version != null ? java_version : "");
+			}
+			return javaVersion;
+		}
 	}
 
 	public static class VersionsResponse {
 		public List<JdkResult> result;
 	}
 
+	public static class PackageInfo {
+		public String checksum;
+		public String checksum_type; // sha256, sha512, etc.
+	}
+
+	public static class PackageInfoResponse {
+		public List<PackageInfo> result;
+	}
+
 	public static class DistroResult {
 		public String name;
 		public String api_parameter;
@@ -76,14 +125,29 @@ public class FoojayJdkInstaller implements JdkInstaller {
 	}
 
 	protected @NonNull RemoteAccessProvider remoteAccessProvider() {
+		if (closed) {
+			throw new IllegalStateException("The installer has been closed");
+		}
 		if (remoteAccessProvider == null) {
 			remoteAccessProvider = RemoteAccessProvider.createDefaultRemoteAccessProvider();
+			ownsRemoteAccessProvider = true;
 		}
 		return remoteAccessProvider;
 	}
 
 	public @NonNull FoojayJdkInstaller remoteAccessProvider(@NonNull RemoteAccessProvider remoteAccessProvider) {
+		return remoteAccessProvider(remoteAccessProvider, false);
+	}
+
+	/**
+	 * Sets the remote access provider, where <code>owned</code> determines if
+	 * this installer is responsible for closing it
+	 */
+	@NonNull
+	FoojayJdkInstaller remoteAccessProvider(@NonNull RemoteAccessProvider remoteAccessProvider, boolean owned) {
 		this.remoteAccessProvider = remoteAccessProvider;
+		this.ownsRemoteAccessProvider = owned;
+		catalogs.clear();
 		return this;
 	}
 
@@ -92,21 +156,154 @@ public class FoojayJdkInstaller implements JdkInstaller {
 		return this;
 	}
 
+	/**
+	 * Sets the cache that will be used to keep downloaded JDK archives around, so
+	 * reinstalling a JDK doesn't require downloading it again
+	 *
+	 * @param archiveCache The cache to use or <code>null</code> to disable it
+	 * @return This installer
+	 */
+	public @NonNull FoojayJdkInstaller archiveCache(@Nullable ArchiveCache archiveCache) {
+		this.archiveCache = archiveCache;
+		return this;
+	}
+
+	/**
+	 * Sets the store used to keep a snapshot of the catalog on disk, so listing
+	 * the available JDKs doesn't require querying the Foojay API every time
+	 *
+	 * @param catalogSnapshot The store to use or <code>null</code> to disable it
+	 * @return This installer
+	 */
+	public @NonNull FoojayJdkInstaller catalogSnapshot(@Nullable CatalogSnapshot catalogSnapshot) {
+		synchronized (this) {
+			this.catalogSnapshot = catalogSnapshot;
+			this.snapshotIndex = null;
+		}
+		return this;
+	}
+
+	/**
+	 * Sets for how long the catalog is kept in memory. After that it is requested
+	 * again, which goes through the HTTP cache, so it only gets downloaded again
+	 * if it was changed. Normally this is the same as the max-age of the HTTP
+	 * cache.
+	 *
+	 * @param catalogMaxAge The time to keep the catalog in memory
+	 * @return This installer
+	 */
+	public @NonNull FoojayJdkInstaller catalogMaxAge(@NonNull Duration catalogMaxAge) {
+		this.catalogMaxAge = catalogMaxAge;
+		return this;
+	}
+
+	/**
+	 * Sets the profile that determines which parts of the JDKs get installed
+	 *
+	 * @param profile The profile to use
+	 * @return This installer
+	 */
+	public @NonNull FoojayJdkInstaller profile(@NonNull JdkProfile profile) {
+		this.profile = profile;
+		return this;
+	}
+
+	@Override
+	public @NonNull JdkProfile profile() {
+		return profile;
+	}
+
+	/**
+	 * Closes the remote access provider, but only if it was created by this
+	 * installer. Providers that were passed in are left to their owner. The
+	 * installer can't access any remote resources anymore after this.
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		RemoteAccessProvider rap = remoteAccessProvider;
+		if (ownsRemoteAccessProvider && rap != null) {
+			remoteAccessProvider = null;
+			ownsRemoteAccessProvider = false;
+			rap.close();
+		}
+	}
+
 	@NonNull
 	@Override
 	public Stream<Jdk.AvailableJdk> listAvailable() {
 		try {
-			VersionsResponse res = readPackagesForList();
-			return processPackages(res.result, majorVersionSort()).distinct();
+			return availableIndex().available().stream();
 		} catch (IOException e) {
 			LOGGER.log(Level.FINE, "Couldn't list available JDKs", e);
 			return Stream.empty();
 		}
 	}
 
-	private VersionsResponse readPackagesForList() throws IOException {
-		return readVersionsFromUrl(
-				getVersionsUrl(0, true, OsUtils.getOS(), OsUtils.getArch(), distros, "ga,ea"));
+	@Override
+	public Jdk.@Nullable AvailableJdk getAvailableByIdOrToken(String idOrToken) {
+		try {
+			return availableIndex().availableById(idOrToken);
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Couldn't get available JDK by id", e);
+			return null;
+		}
+	}
+
+	private CatalogIndex<JdkResult> catalogForList() throws IOException {
+		return catalog(catalogForListUrl());
+	}
+
+	private String catalogForListUrl() {
+		return getVersionsUrl(0, true, OsUtils.getOS(), OsUtils.getArch(), distros, "ga,ea");
+	}
+
+	/**
+	 * Returns the index of all available JDKs, which is built from the catalog
+	 * snapshot if one is configured. The snapshot is only read once and then kept
+	 * for the lifetime of this installer. When it was old enough to get refreshed
+	 * in the background, the index is replaced once that refresh has finished.
+	 * The refresh runs on a daemon thread, so in a short-lived process it might
+	 * not get to finish, the next process will then try again.
+	 */
+	private CatalogIndex<?> availableIndex() throws IOException {
+		if (catalogSnapshot == null) {
+			return catalogForList();
+		}
+		return snapshotIndex(catalogSnapshot);
+	}
+
+	private synchronized CatalogIndex<CatalogSnapshot.Entry> snapshotIndex(CatalogSnapshot snapshot)
+			throws IOException {
+		if (snapshotIndex == null) {
+			String source = "foojay|" + jdkProvider.name() + "|" + catalogForListUrl();
+			List<CatalogSnapshot.Entry> entries = snapshot.get(source,
+					() -> toEntries(catalogForList().available()), refreshed -> {
+						synchronized (this) {
+							if (catalogSnapshot == snapshot) {
+								snapshotIndex = indexEntries(refreshed);
+							}
+						}
+					});
+			snapshotIndex = indexEntries(entries);
+		}
+		return snapshotIndex;
+	}
+
+	private CatalogIndex<CatalogSnapshot.Entry> indexEntries(List<CatalogSnapshot.Entry> entries) {
+		// The entries are already in order, so they are only indexed by id
+		return new CatalogIndex<>(entries, e -> null, e -> null, e -> 0, es -> es.stream()
+			.map(e -> new AvailableFoojayJdk(jdkProvider, e.id, e.version, e.url, e.infoUrl, e.size, e.tags)));
+	}
+
+	private static List<CatalogSnapshot.Entry> toEntries(List<Jdk.AvailableJdk> jdks) {
+		List<CatalogSnapshot.Entry> entries = new ArrayList<>(jdks.size());
+		for (Jdk.AvailableJdk jdk : jdks) {
+			AvailableFoojayJdk fjdk = (AvailableFoojayJdk) jdk;
+			entries.add(new CatalogSnapshot.Entry(fjdk.id(), fjdk.version(), fjdk.downloadUrl, fjdk.infoUrl, null,
+					fjdk.size, fjdk.tags()));
+		}
+		return entries;
 	}
 
 	@Override
@@ -127,8 +324,8 @@ public class FoojayJdkInstaller implements JdkInstaller {
 			return majorVersionSort().compare(j1, j2);
 		};
 		try {
-			VersionsResponse res = readPackagesForVersion(version, openVersion);
-			return processPackages(res.result, preferGaSort)
+			List<JdkResult> res = readPackagesForVersion(version, openVersion);
+			return processPackages(res, preferGaSort)
 				.filter(Jdk.Predicates.forVersion(version, openVersion))
 				.findFirst()
 				.orElse(null);
@@ -138,23 +335,75 @@ public class FoojayJdkInstaller implements JdkInstaller {
 		}
 	}
 
-	private VersionsResponse readPackagesForVersion(Integer minVersion, boolean openVersion) throws IOException {
-		VersionsResponse res = readVersionsFromUrl(
-				getVersionsUrl(minVersion, openVersion, OsUtils.getOS(), OsUtils.getArch(), distros, "ga"));
-		if (res.result.isEmpty()) {
-			res = readVersionsFromUrl(
-					getVersionsUrl(minVersion, openVersion, OsUtils.getOS(), OsUtils.getArch(), distros, "ea"));
+	private List<JdkResult> readPackagesForVersion(int minVersion, boolean openVersion) throws IOException {
+		CatalogIndex<JdkResult> idx = loadedCatalog(catalogForListUrl());
+		if (idx != null) {
+			// The list has the latest packages of all versions, so we can use that
+			List<JdkResult> res = idx.find("ga", null, minVersion, openVersion);
+			return res.isEmpty() ? idx.find("ea", null, minVersion, openVersion) : res;
+		}
+		List<JdkResult> res = catalog(
+				getVersionsUrl(minVersion, openVersion, OsUtils.getOS(), OsUtils.getArch(), distros, "ga"))
+			.entries();
+		if (res.isEmpty()) {
+			res = catalog(
+					getVersionsUrl(minVersion, openVersion, OsUtils.getOS(), OsUtils.getArch(), distros, "ea"))
+				.entries();
 		}
 		return res;
 	}
 
+	/**
+	 * Returns the index for the packages returned by the given URL. Each URL is
+	 * only fetched once and its result kept for <code>catalogMaxAge</code>.
+	 * Concurrent lookups of the same URL wait for the same request.
+	 */
+	private CatalogIndex<JdkResult> catalog(String url) throws IOException {
+		LoadedCatalog fresh = new LoadedCatalog();
+		LoadedCatalog loaded = catalogs.compute(url, (u, c) -> c != null && !isExpired(c) ? c : fresh);
+		if (loaded == fresh) {
+			try {
+				VersionsResponse res = readVersionsFromUrl(url);
+				fresh.index.complete(new CatalogIndex<>(res.result,
+						jdk -> jdk.release_status,
+						jdk -> jdk.distribution,
+						jdk -> jdk.major_version,
+						jdks -> processPackages(jdks, majorVersionSort()).distinct()));
+			} catch (IOException | RuntimeException e) {
+				// Failures are not kept, the next lookup will try again
+				catalogs.remove(url, fresh);
+				fresh.index.completeExceptionally(e);
+				throw e;
+			}
+		}
+		return ConcurrencyUtils.await(loaded.index);
+	}
+
+	/**
+	 * Returns the index for the given URL if it has already been loaded and can
+	 * still be used, otherwise <code>null</code>
+	 */
+	private @Nullable CatalogIndex<JdkResult> loadedCatalog(String url) {
+		LoadedCatalog loaded = catalogs.get(url);
+		if (loaded == null || isExpired(loaded) || !loaded.index.isDone()
+				|| loaded.index.isCompletedExceptionally()) {
+			return null;
+		}
+		return loaded.index.getNow(null);
+	}
+
+	private boolean isExpired(LoadedCatalog loaded) {
+		return System.nanoTime() - loaded.loadedAt > catalogMaxAge.toNanos();
+	}
+
 	private Stream<Jdk.AvailableJdk> processPackages(List<JdkResult> jdks, Comparator<JdkResult> sortFunc) {
 		return filterEA(jdks)
 			.stream()
 			.sorted(sortFunc)
 			.map(jdk -> new AvailableFoojayJdk(jdkProvider,
 					jdkId.apply(jdk), jdk.java_version,
-					jdk.links.pkg_download_redirect, determineTags(jdk)));
+					jdk.links.pkg_download_redirect, jdk.links.pkg_info_uri, jdk.size > 0 ? jdk.size : -1,
+					determineTags(jdk)));
 	}
 
 	private @NonNull String determineId(@NonNull JdkResult jdk) {
@@ -215,8 +464,8 @@ public class FoojayJdkInstaller implements JdkInstaller {
 			.collect(Collectors.toList());
 	}
 
-	private static final Comparator<JdkResult> jdkResultVersionComparator = (o1, o2) -> VersionComparator.INSTANCE
-		.compare(o1.java_version, o2.java_version);
+	private static final Comparator<JdkResult> jdkResultVersionComparator = Comparator
+		.comparing(JdkResult::javaVersion);
 
 	private Comparator<JdkResult> majorVersionSort() {
 		List<String> ds = Arrays.asList(distros.split(","));
@@ -241,12 +490,20 @@ public class FoojayJdkInstaller implements JdkInstaller {
 				version);
 		String url = foojayJdk.downloadUrl;
 
+		// The checksum is only available from the package info, so we retrieve
+		// it while the archive is being downloaded
+		ExecutorService executor = ConcurrencyUtils.newBoundedExecutor("foojay-checksum", 1);
+		Future<Checksum> checksum = executor.submit(() -> readChecksum(foojayJdk.infoUrl));
+		ArchiveDownloader downloader = new ArchiveDownloader(remoteAccessProvider(), archiveCache);
 		try {
-			LOGGER.log(Level.FINE, "Downloading {0}", url);
-			Path jdkPkg = remoteAccessProvider().downloadFromUrl(url);
-
-			LOGGER.log(Level.INFO, "Installing JDK {0}...", version);
-			JavaUtils.installJdk(jdkPkg, jdkDir);
+			try {
+				JavaUtils.installJdk(jdkDir, profile,
+						tmpDir -> downloader.downloadAndUnpack(url, foojayJdk.size, checksum, tmpDir, profile));
+			} catch (IOException e) {
+				// The cached archive might be corrupt, so we don't want to use it again
+				downloader.discard(url, checksum.isDone() ? ConcurrencyUtils.get(checksum) : null);
+				throw e;
+			}
 
 			Jdk.InstalledJdk newJdk = jdkProvider.createJdk(foojayJdk.id(), jdkDir);
 			if (newJdk == null) {
@@ -258,6 +515,26 @@ public class FoojayJdkInstaller implements JdkInstaller {
 			LOGGER.log(Level.FINE, msg);
 			throw new IllegalStateException(
 					"Unable to download or install JDK version " + version, e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private @Nullable Checksum readChecksum(@Nullable String infoUrl) {
+		if (infoUrl == null) {
+			return null;
+		}
+		try {
+			PackageInfoResponse response = RemoteAccessProvider.readJsonFromUrl(remoteAccessProvider(), infoUrl,
+					PackageInfoResponse.class);
+			if (response == null || response.result == null || response.result.isEmpty()) {
+				return null;
+			}
+			PackageInfo info = response.result.get(0);
+			return Checksum.of(info.checksum_type, info.checksum);
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Couldn't retrieve package info " + infoUrl, e);
+			return null;
 		}
 	}
 
@@ -364,11 +641,15 @@ public class FoojayJdkInstaller implements JdkInstaller {
 
 	static class AvailableFoojayJdk extends Jdk.AvailableJdk.Default {
 		public final String downloadUrl;
+		public final @Nullable String infoUrl;
+		public final long size;
 
 		AvailableFoojayJdk(@NonNull JdkProvider provider, @NonNull String id, @NonNull String version,
-				@NonNull String downloadUrl, @NonNull Set<String> tags) {
+				@NonNull String downloadUrl, @Nullable String infoUrl, long size, @NonNull Set<String> tags) {
 			super(provider, id, version, tags);
 			this.downloadUrl = downloadUrl;
+			this.infoUrl = infoUrl;
+			this.size = size;
 		}
 	}
 
@@ -381,11 +662,17 @@ public class FoojayJdkInstaller implements JdkInstaller {
 		@Override
 		public @NonNull JdkInstaller create(Config config) {
 			FoojayJdkInstaller installer = new FoojayJdkInstaller(config.jdkProvider());
-			installer.distros(config.properties().getOrDefault("distro", null));
-			HttpClientBuilder httpClientBuilder = NetUtils.createCachingHttpClientBuilder(config.cachePath());
-			RemoteAccessProvider rap = RemoteAccessProvider.createDefaultRemoteAccessProvider(httpClientBuilder);
-			installer.remoteAccessProvider(rap);
-			return installer;
+			installer.distros(config.properties().getOrDefault("distro", null))
+				.archiveCache(config.archiveCache())
+				.catalogSnapshot(config.catalogSnapshot())
+				.profile(config.profile())
+				.catalogMaxAge(config.httpCacheMaxAge());
+			HttpClientBuilder httpClientBuilder = NetUtils.createCachingHttpClientBuilder(config.httpCachePath(),
+					config.httpCacheMaxAge(), config.httpCacheStaleWhileRevalidate());
+			RemoteAccessProvider rap = RemoteAccessProvider.createDefaultRemoteAccessProvider(httpClientBuilder,
+					NetUtils.createConnectionManager(
+							RemoteAccessProvider.DefaultRemoteAccessProvider.DEFAULT_MAX_CONNECTIONS));
+			return installer.remoteAccessProvider(rap, true);
 		}
 	}
 }
@@ -1,10 +1,20 @@
 package dev.jbang.devkitman.jdkinstallers;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -14,6 +24,10 @@ import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
 import org.jspecify.annotations.NonNull;
 import org.jspecify.annotations.Nullable;
 
+import com.google.gson.Strictness;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
 import dev.jbang.devkitman.Jdk;
 import dev.jbang.devkitman.JdkInstaller;
 import dev.jbang.devkitman.JdkInstallers;
@@ -30,10 +44,35 @@ public class MetadataJdkInstaller implements JdkInstaller {
 	protected RemoteAccessProvider remoteAccessProvider;
 	protected @NonNull String distros = DEFAULT_DISTROS;
 	protected String jvmImpl = DEFAULT_JVM_IMPL;
+	protected int parallelism = DEFAULT_PARALLELISM;
+	protected @Nullable ArchiveCache archiveCache;
+	protected @Nullable CatalogSnapshot catalogSnapshot;
+	protected JdkProfile profile = JdkProfile.full;
+	protected @NonNull Duration catalogMaxAge = NetUtils.DEFAULT_CACHE_MAX_AGE;
+
+	// Set when the remote access provider was created by this installer (or its
+	// discovery), in which case closing the installer closes it as well
+	private boolean ownsRemoteAccessProvider;
+	private volatile boolean closed;
+
+	private CatalogIndex<MetadataResult> catalog;
+	private CatalogIndex<CatalogSnapshot.Entry> snapshotIndex;
+	// Whether all the metadata files for the catalog could be fetched, if not the
+	// catalog is kept until catalogRetryAt (in System.nanoTime()) instead of for
+	// catalogMaxAge after catalogLoadedAt
+	private boolean catalogComplete;
+	private long catalogLoadedAt;
+	private long catalogRetryAt;
 
 	public static final String METADATA_BASE_URL = "https://joschi.github.io/java-metadata/metadata/";
 	public static final String DEFAULT_DISTROS = "temurin,adoptopenjdk";
 	public static final String DEFAULT_JVM_IMPL = "hotspot";
+	public static final int DEFAULT_PARALLELISM = 4;
+
+	private static final String[] RELEASE_TYPES = { "ga", "ea" };
+
+	// How long an incomplete catalog is used before trying to fetch it again
+	private static final Duration CATALOG_RETRY_DELAY = Duration.ofMinutes(5);
 
 	private static final Logger LOGGER = Logger.getLogger(MetadataJdkInstaller.class.getName());
 
@@ -62,6 +101,18 @@ public class MetadataJdkInstaller implements JdkInstaller {
 		public String sha512;
 		public String sha512_file;
 		public Integer size;
+
+		private transient JavaVersion javaVersion;
+
+		/**
+		 * Returns the parsed <code>java_version</code>, it only gets parsed once
+		 */
+		public @NonNull JavaVersion javaVersion() {
+			if (javaVersion == null) {
+				javaVersion = JavaVersion.parse(java_version != null ? java_version : "");
+			}
+			return javaVersion;
+		}
 	}
 
 	public static final List<JdkDistro> JDK_DISTROS = Arrays.asList(
@@ -99,63 +150,276 @@ public class MetadataJdkInstaller implements JdkInstaller {
 	}
 
 	protected @NonNull RemoteAccessProvider remoteAccessProvider() {
+		if (closed) {
+			throw new IllegalStateException("The installer has been closed");
+		}
 		if (remoteAccessProvider == null) {
 			remoteAccessProvider = RemoteAccessProvider.createDefaultRemoteAccessProvider();
+			ownsRemoteAccessProvider = true;
 		}
 		return remoteAccessProvider;
 	}
 
 	public @NonNull MetadataJdkInstaller remoteAccessProvider(@NonNull RemoteAccessProvider remoteAccessProvider) {
+		return remoteAccessProvider(remoteAccessProvider, false);
+	}
+
+	/**
+	 * Sets the remote access provider, where <code>owned</code> determines if
+	 * this installer is responsible for closing it
+	 */
+	@NonNull
+	MetadataJdkInstaller remoteAccessProvider(@NonNull RemoteAccessProvider remoteAccessProvider, boolean owned) {
 		this.remoteAccessProvider = remoteAccessProvider;
+		this.ownsRemoteAccessProvider = owned;
+		clearCatalog();
 		return this;
 	}
 
 	public @NonNull MetadataJdkInstaller distros(@Nullable String distros) {
 		this.distros = distros != null && !distros.isEmpty() ? distros : DEFAULT_DISTROS;
+		clearCatalog();
 		return this;
 	}
 
 	public @NonNull MetadataJdkInstaller jvmImpl(@Nullable String jvmImpl) {
 		this.jvmImpl = jvmImpl;
+		clearCatalog();
+		return this;
+	}
+
+	private synchronized void clearCatalog() {
+		catalog = null;
+	}
+
+	/**
+	 * Sets the maximum number of metadata files that will be fetched concurrently
+	 *
+	 * @param parallelism The maximum number of concurrent requests, at least 1
+	 * @return This installer
+	 */
+	public @NonNull MetadataJdkInstaller parallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be at least 1");
+		}
+		this.parallelism = parallelism;
+		return this;
+	}
+
+	/**
+	 * Sets the cache that will be used to keep downloaded JDK archives around, so
+	 * reinstalling a JDK doesn't require downloading it again
+	 *
+	 * @param archiveCache The cache to use or <code>null</code> to disable it
+	 * @return This installer
+	 */
+	public @NonNull MetadataJdkInstaller archiveCache(@Nullable ArchiveCache archiveCache) {
+		this.archiveCache = archiveCache;
+		return this;
+	}
+
+	/**
+	 * Sets the store used to keep a snapshot of the catalog on disk, so listing
+	 * the available JDKs doesn't require fetching and processing the metadata
+	 * every time
+	 *
+	 * @param catalogSnapshot The store to use or <code>null</code> to disable it
+	 * @return This installer
+	 */
+	public @NonNull MetadataJdkInstaller catalogSnapshot(@Nullable CatalogSnapshot catalogSnapshot) {
+		synchronized (this) {
+			this.catalogSnapshot = catalogSnapshot;
+			this.snapshotIndex = null;
+		}
+		return this;
+	}
+
+	/**
+	 * Sets for how long the catalog is kept in memory. After that it is requested
+	 * again, which goes through the HTTP cache, so it only gets downloaded again
+	 * if it was changed. Normally this is the same as the max-age of the HTTP
+	 * cache.
+	 *
+	 * @param catalogMaxAge The time to keep the catalog in memory
+	 * @return This installer
+	 */
+	public @NonNull MetadataJdkInstaller catalogMaxAge(@NonNull Duration catalogMaxAge) {
+		this.catalogMaxAge = catalogMaxAge;
 		return this;
 	}
 
+	/**
+	 * Sets the profile that determines which parts of the JDKs get installed
+	 *
+	 * @param profile The profile to use
+	 * @return This installer
+	 */
+	public @NonNull MetadataJdkInstaller profile(@NonNull JdkProfile profile) {
+		this.profile = profile;
+		return this;
+	}
+
+	@Override
+	public @NonNull JdkProfile profile() {
+		return profile;
+	}
+
+	/**
+	 * Closes the remote access provider, but only if it was created by this
+	 * installer. Providers that were passed in are left to their owner. The
+	 * installer can't access any remote resources anymore after this.
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		RemoteAccessProvider rap = remoteAccessProvider;
+		if (ownsRemoteAccessProvider && rap != null) {
+			remoteAccessProvider = null;
+			ownsRemoteAccessProvider = false;
+			rap.close();
+		}
+	}
+
 	@NonNull
 	@Override
 	public Stream<Jdk.AvailableJdk> listAvailable() {
 		try {
-			List<MetadataResult> results = readMetadataForList();
-			return processMetadata(results, majorVersionSort()).distinct();
+			return availableIndex().available().stream();
 		} catch (IOException e) {
 			LOGGER.log(Level.FINE, "Couldn't list available JDKs", e);
 			return Stream.empty();
 		}
 	}
 
-	private List<MetadataResult> readMetadataForList() throws IOException {
-		List<MetadataResult> allResults = new ArrayList<>();
-		IOException lastException = null;
+	@Override
+	public Jdk.@Nullable AvailableJdk getAvailableByIdOrToken(String idOrToken) {
+		try {
+			return availableIndex().availableById(idOrToken);
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Couldn't get available JDK by id", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the index of all available JDKs, which is built from the catalog
+	 * snapshot if one is configured. The snapshot is only read once and then kept
+	 * for the lifetime of this installer. When it was old enough to get refreshed
+	 * in the background, the index is replaced once that refresh has finished.
+	 * The refresh runs on a daemon thread, so in a short-lived process it might
+	 * not get to finish, the next process will then try again.
+	 */
+	private CatalogIndex<?> availableIndex() throws IOException {
+		if (catalogSnapshot == null) {
+			return catalog();
+		}
+		return snapshotIndex(catalogSnapshot);
+	}
+
+	private synchronized CatalogIndex<CatalogSnapshot.Entry> snapshotIndex(CatalogSnapshot snapshot)
+			throws IOException {
+		if (snapshotIndex == null) {
+			String source = "metadata|" + jdkProvider.name() + "|" + distros + "|" + jvmImpl + "|" + OsUtils.getOS()
+					+ "|" + OsUtils.getArch();
+			List<CatalogSnapshot.Entry> entries = snapshot.get(source, this::snapshotEntries, refreshed -> {
+				synchronized (this) {
+					if (catalogSnapshot == snapshot) {
+						snapshotIndex = indexEntries(refreshed);
+					}
+				}
+			});
+			snapshotIndex = indexEntries(entries);
+		}
+		return snapshotIndex;
+	}
+
+	/**
+	 * Returns the entries for the catalog snapshot. If not all metadata files
+	 * could be fetched the entries are still used, but not stored.
+	 */
+	private synchronized List<CatalogSnapshot.Entry> snapshotEntries() throws IOException {
+		List<CatalogSnapshot.Entry> entries = toEntries(catalog().available());
+		if (!catalogComplete) {
+			throw new CatalogSnapshot.IncompleteCatalogException(entries, null);
+		}
+		return entries;
+	}
+
+	private CatalogIndex<CatalogSnapshot.Entry> indexEntries(List<CatalogSnapshot.Entry> entries) {
+		// The entries are already in order, so they are only indexed by id
+		return new CatalogIndex<>(entries, e -> null, e -> null, e -> 0, es -> es.stream()
+			.map(e -> new AvailableMetadataJdk(jdkProvider, e.id, e.version, e.url, e.checksum, e.size, e.tags)));
+	}
+
+	private static List<CatalogSnapshot.Entry> toEntries(List<Jdk.AvailableJdk> jdks) {
+		List<CatalogSnapshot.Entry> entries = new ArrayList<>(jdks.size());
+		for (Jdk.AvailableJdk jdk : jdks) {
+			AvailableMetadataJdk mjdk = (AvailableMetadataJdk) jdk;
+			entries.add(new CatalogSnapshot.Entry(mjdk.id(), mjdk.version(), mjdk.downloadUrl, null, mjdk.checksum,
+					mjdk.size, mjdk.tags()));
+		}
+		return entries;
+	}
+
+	/**
+	 * Returns the index of all GA and EA releases of the selected distros. The
+	 * metadata is only fetched once and then kept for <code>catalogMaxAge</code>.
+	 * Files that don't exist (not every distro has EA releases) simply don't add
+	 * anything. If some of the other files could not be retrieved, the incomplete
+	 * catalog is used for a little while before they are fetched again.
+	 */
+	private synchronized CatalogIndex<MetadataResult> catalog() throws IOException {
+		CatalogIndex<MetadataResult> idx = loadedCatalog();
+		if (idx != null) {
+			return idx;
+		}
 
+		List<String> urls = new ArrayList<>();
+		List<String> urlDistros = new ArrayList<>();
+		List<String> urlReleaseTypes = new ArrayList<>();
 		String[] dists = distros.split(",");
-		// Query for GA releases first
-		for (String d : dists) {
-			try {
-				List<MetadataResult> results = readJsonFromUrl(
-						getMetadataUrl("ga", OsUtils.getOS(), OsUtils.getArch(), "jdk", jvmImpl, d.trim()));
-				allResults.addAll(results);
-			} catch (IOException e) {
-				lastException = e;
+		// Query for GA releases first and for EA releases second
+		for (String releaseType : RELEASE_TYPES) {
+			for (String d : dists) {
+				urls.add(getMetadataUrl(releaseType, OsUtils.getOS(), OsUtils.getArch(), "jdk", jvmImpl, d.trim()));
+				urlDistros.add(d.trim());
+				urlReleaseTypes.add(releaseType);
 			}
 		}
-		// And for EA releases second
-		for (String d : dists) {
-			try {
-				List<MetadataResult> results = readJsonFromUrl(
-						getMetadataUrl("ea", OsUtils.getOS(), OsUtils.getArch(), "jdk", jvmImpl, d.trim()));
-				allResults.addAll(results);
-			} catch (IOException e) {
-				lastException = e;
+
+		List<MetadataResult> allResults = new ArrayList<>();
+		Map<MetadataResult, String> resultDistros = new IdentityHashMap<>();
+		IOException lastException = null;
+
+		// All requests are performed concurrently but the results are merged in the
+		// same order as they were requested
+		ExecutorService executor = ConcurrencyUtils.newBoundedExecutor("metadata-fetch",
+				Math.min(urls.size(), parallelism));
+		try {
+			List<Future<List<MetadataResult>>> futures = new ArrayList<>();
+			for (int i = 0; i < urls.size(); i++) {
+				String url = urls.get(i);
+				String releaseType = urlReleaseTypes.get(i);
+				// Each file should only contain entries of its own release type
+				MetadataFilter filter = new MetadataFilter(releaseType, "jdk", 0, true);
+				Callable<List<MetadataResult>> fetch = () -> readJsonFromUrl(url, filter);
+				futures.add(executor.submit(fetch));
 			}
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					for (MetadataResult r : ConcurrencyUtils.await(futures.get(i))) {
+						allResults.add(r);
+						resultDistros.put(r, urlDistros.get(i));
+					}
+				} catch (FileNotFoundException e) {
+					// Not every distro has metadata for every release type
+					LOGGER.log(Level.FINE, "No metadata found at {0}", urls.get(i));
+				} catch (IOException e) {
+					lastException = e;
+				}
+			}
+		} finally {
+			executor.shutdownNow();
 		}
 
 		// If we have no results at all and had at least one exception, throw the last
@@ -164,15 +428,38 @@ public class MetadataJdkInstaller implements JdkInstaller {
 			throw lastException;
 		}
 
-		return allResults;
+		idx = new CatalogIndex<>(allResults,
+				r -> r.release_type,
+				resultDistros::get,
+				r -> r.javaVersion().major(),
+				results -> processMetadata(results, majorVersionSort()).distinct());
+		catalog = idx;
+		catalogComplete = lastException == null;
+		catalogLoadedAt = System.nanoTime();
+		catalogRetryAt = catalogLoadedAt + CATALOG_RETRY_DELAY.toNanos();
+		return idx;
+	}
+
+	/**
+	 * Returns the catalog if it has already been loaded and can still be used,
+	 * otherwise <code>null</code>
+	 */
+	private synchronized @Nullable CatalogIndex<MetadataResult> loadedCatalog() {
+		if (catalog == null) {
+			return null;
+		}
+		long now = System.nanoTime();
+		boolean usable = catalogComplete ? now - catalogLoadedAt <= catalogMaxAge.toNanos()
+				: now - catalogRetryAt < 0;
+		return usable ? catalog : null;
 	}
 
 	@Override
 	public Jdk.@Nullable AvailableJdk getAvailableByVersion(int version, boolean openVersion) {
 		int djv = jdkProvider.manager().defaultJavaVersion;
 		Comparator<MetadataResult> preferGaSort = (j1, j2) -> {
-			int v1 = extractMajorVersion(j1.java_version);
-			int v2 = extractMajorVersion(j2.java_version);
+			int v1 = j1.javaVersion().major();
+			int v2 = j2.javaVersion().major();
 
 			// Prefer versions equal to the default Java version
 			if (v1 == djv && v2 != djv) {
@@ -201,17 +488,23 @@ public class MetadataJdkInstaller implements JdkInstaller {
 	}
 
 	private List<MetadataResult> readMetadataForVersion(int version, boolean openVersion) throws IOException {
+		CatalogIndex<MetadataResult> idx = loadedCatalog();
 		String[] dists = distros.split(",");
-		// Try GA first for all selected distros, return the first that has results
-		for (String d : dists) {
-			List<MetadataResult> results = readMetadataForVersionAndDistro(version, openVersion, "ga", d.trim());
-			if (!results.isEmpty()) {
-				return results;
+		// Try GA first for all selected distros, return the first that has results,
+		// and try EA if no GA found
+		for (String releaseType : RELEASE_TYPES) {
+			List<MetadataResult> results;
+			if (idx != null) {
+				results = Collections.emptyList();
+				for (String d : dists) {
+					results = idx.find(releaseType, d.trim(), version, openVersion);
+					if (!results.isEmpty()) {
+						break;
+					}
+				}
+			} else {
+				results = readFirstMatch(releaseType, dists, version, openVersion);
 			}
-		}
-		// Try EA if no GA found
-		for (String d : dists) {
-			List<MetadataResult> results = readMetadataForVersionAndDistro(version, openVersion, "ea", d.trim());
 			if (!results.isEmpty()) {
 				return results;
 			}
@@ -219,24 +512,47 @@ public class MetadataJdkInstaller implements JdkInstaller {
 		return Collections.emptyList();
 	}
 
-	private List<MetadataResult> readMetadataForVersionAndDistro(int version, boolean openVersion, String releaseType,
-			String distros) throws IOException {
-		List<MetadataResult> gaResults = readJsonFromUrl(
-				getMetadataUrl(releaseType, OsUtils.getOS(), OsUtils.getArch(), "jdk", jvmImpl, distros));
-		return filterByVersion(gaResults, version, openVersion);
-	}
-
-	private List<MetadataResult> filterByVersion(List<MetadataResult> results, int version, boolean openVersion) {
-		return results.stream()
-			.filter(r -> {
-				int majorVersion = extractMajorVersion(r.java_version);
-				if (openVersion) {
-					return majorVersion >= version;
-				} else {
-					return majorVersion == version;
+	/**
+	 * Fetches the metadata of the given release type for all distros at the same
+	 * time and returns the entries matching the version of the first distro, in
+	 * order of priority, that has any. Lower priority distros don't have to wait
+	 * for higher priority ones, but their results are only used when all of those
+	 * turned out to have nothing. Requests that are no longer needed get
+	 * cancelled.
+	 */
+	private List<MetadataResult> readFirstMatch(String releaseType, String[] dists, int version,
+			boolean openVersion) throws IOException {
+		IOException lastException = null;
+		ExecutorService executor = ConcurrencyUtils.newBoundedExecutor("metadata-fetch",
+				Math.min(dists.length, parallelism));
+		try {
+			List<Future<List<MetadataResult>>> futures = new ArrayList<>();
+			for (String d : dists) {
+				String url = getMetadataUrl(releaseType, OsUtils.getOS(), OsUtils.getArch(), "jdk", jvmImpl, d.trim());
+				MetadataFilter filter = new MetadataFilter(releaseType, "jdk", version, openVersion);
+				Callable<List<MetadataResult>> fetch = () -> readJsonFromUrl(url, filter);
+				futures.add(executor.submit(fetch));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					List<MetadataResult> results = ConcurrencyUtils.await(futures.get(i));
+					if (!results.isEmpty()) {
+						return results;
+					}
+				} catch (FileNotFoundException e) {
+					LOGGER.log(Level.FINE, "No {0} metadata found for {1}", new Object[] { releaseType, dists[i] });
+				} catch (IOException e) {
+					lastException = e;
 				}
-			})
-			.collect(Collectors.toList());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		// Only fail if none of the distros could tell us anything
+		if (lastException != null) {
+			throw lastException;
+		}
+		return Collections.emptyList();
 	}
 
 	private Stream<Jdk.AvailableJdk> processMetadata(List<MetadataResult> jdks, Comparator<MetadataResult> sortFunc) {
@@ -245,7 +561,12 @@ public class MetadataJdkInstaller implements JdkInstaller {
 			.sorted(sortFunc)
 			.map(jdk -> new AvailableMetadataJdk(jdkProvider,
 					jdkId.apply(jdk), jdk.java_version,
-					jdk.url, determineTags(jdk)));
+					jdk.url, checksum(jdk), jdk.size != null ? jdk.size : -1, determineTags(jdk)));
+	}
+
+	private static @Nullable Checksum checksum(@NonNull MetadataResult jdk) {
+		Checksum checksum = Checksum.of("sha256", jdk.sha256);
+		return checksum != null ? checksum : Checksum.of("sha512", jdk.sha512);
 	}
 
 	private @NonNull String determineId(@NonNull MetadataResult jdk) {
@@ -280,23 +601,220 @@ public class MetadataJdkInstaller implements JdkInstaller {
 		return tags;
 	}
 
-	private List<MetadataResult> readJsonFromUrl(String url) throws IOException {
-		return Arrays.asList(RemoteAccessProvider.readJsonFromUrl(remoteAccessProvider(), url, MetadataResult[].class));
+	/**
+	 * Selects metadata entries by release type, image type and (major) version.
+	 * When used with <code>readMetadata()</code> the entries are checked while
+	 * they are being parsed, so the rest of a rejected entry is skipped without
+	 * being decoded.
+	 */
+	static class MetadataFilter implements Predicate<MetadataResult> {
+		private final @Nullable String releaseType;
+		private final @Nullable String imageType;
+		private final int version;
+		private final boolean openVersion;
+
+		/**
+		 * Creates a new filter
+		 *
+		 * @param releaseType The release type to accept or <code>null</code> for any
+		 * @param imageType   The image type to accept or <code>null</code> for any
+		 * @param version     The (minimum) major version to accept, 0 means any
+		 * @param openVersion If true all versions higher than the given one match too
+		 */
+		MetadataFilter(@Nullable String releaseType, @Nullable String imageType, int version,
+				boolean openVersion) {
+			this.releaseType = releaseType;
+			this.imageType = imageType;
+			this.version = version;
+			this.openVersion = openVersion;
+		}
+
+		boolean acceptsReleaseType(@Nullable String value) {
+			return releaseType == null || releaseType.equals(value);
+		}
+
+		boolean acceptsImageType(@Nullable String value) {
+			return imageType == null || imageType.equals(value);
+		}
+
+		boolean acceptsVersion(@NonNull MetadataResult r) {
+			if (version <= 0) {
+				return true;
+			}
+			int major = r.javaVersion().major();
+			return openVersion ? major >= version : major == version;
+		}
+
+		@Override
+		public boolean test(MetadataResult r) {
+			return acceptsReleaseType(r.release_type) && acceptsImageType(r.image_type) && acceptsVersion(r);
+		}
+	}
+
+	private List<MetadataResult> readJsonFromUrl(String url, Predicate<MetadataResult> filter) throws IOException {
+		return remoteAccessProvider().resultFromUrl(url, is -> {
+			try (Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8)) {
+				return readMetadata(reader, filter);
+			}
+		});
+	}
+
+	/**
+	 * Parses a metadata file, which is a JSON array of release entries. The file
+	 * is processed as a stream so entries rejected by the filter are discarded
+	 * right away, and only the fields this installer actually uses are retained
+	 * (the md5 and sha1 checksums are skipped). When the filter is a
+	 * <code>MetadataFilter</code> an entry is rejected as soon as one of its
+	 * release type, image type or version doesn't match, and the rest of it is
+	 * skipped.
+	 *
+	 * @param reader The reader to read the JSON from
+	 * @param filter Only entries accepted by this filter are returned
+	 * @return A list of metadata entries in the same order as in the file
+	 * @throws IOException If the JSON could not be read or is invalid
+	 */
+	static List<MetadataResult> readMetadata(Reader reader, Predicate<MetadataResult> filter) throws IOException {
+		List<MetadataResult> results = new ArrayList<>();
+		JsonReader json = new JsonReader(reader);
+		json.setStrictness(Strictness.LENIENT);
+		try {
+			json.beginArray();
+			while (json.hasNext()) {
+				MetadataResult result = readMetadataResult(json,
+						filter instanceof MetadataFilter ? (MetadataFilter) filter : null);
+				if (result != null && filter.test(result)) {
+					results.add(result);
+				}
+			}
+			json.endArray();
+		} catch (IllegalStateException | NumberFormatException e) {
+			throw new IOException("Invalid metadata: " + e.getMessage(), e);
+		}
+		return results;
+	}
+
+	/**
+	 * Reads a single entry, or skips it and returns <code>null</code> as soon as
+	 * it is known to be rejected by the given filter
+	 */
+	private static @Nullable MetadataResult readMetadataResult(JsonReader json, @Nullable MetadataFilter filter)
+			throws IOException {
+		MetadataResult result = new MetadataResult();
+		json.beginObject();
+		while (json.hasNext()) {
+			switch (json.nextName()) {
+			case "vendor":
+				result.vendor = nextString(json);
+				break;
+			case "filename":
+				result.filename = nextString(json);
+				break;
+			case "file_type":
+				result.file_type = nextString(json);
+				break;
+			case "release_type":
+				result.release_type = nextString(json);
+				if (filter != null && !filter.acceptsReleaseType(result.release_type)) {
+					skipRest(json);
+					return null;
+				}
+				break;
+			case "version":
+				result.version = nextString(json);
+				break;
+			case "java_version":
+				result.java_version = nextString(json);
+				if (filter != null && !filter.acceptsVersion(result)) {
+					skipRest(json);
+					return null;
+				}
+				break;
+			case "jvm_impl":
+				result.jvm_impl = nextString(json);
+				break;
+			case "os":
+				result.os = nextString(json);
+				break;
+			case "architecture":
+				result.architecture = nextString(json);
+				break;
+			case "image_type":
+				result.image_type = nextString(json);
+				if (filter != null && !filter.acceptsImageType(result.image_type)) {
+					skipRest(json);
+					return null;
+				}
+				break;
+			case "features":
+				result.features = nextStringList(json);
+				break;
+			case "url":
+				result.url = nextString(json);
+				break;
+			case "sha256":
+				result.sha256 = nextString(json);
+				break;
+			case "sha512":
+				result.sha512 = nextString(json);
+				break;
+			case "size":
+				if (json.peek() == JsonToken.NULL) {
+					json.nextNull();
+				} else {
+					result.size = json.nextInt();
+				}
+				break;
+			default:
+				json.skipValue();
+				break;
+			}
+		}
+		json.endObject();
+		return result;
+	}
+
+	private static void skipRest(JsonReader json) throws IOException {
+		while (json.hasNext()) {
+			json.skipValue();
+		}
+		json.endObject();
+	}
+
+	private static String nextString(JsonReader json) throws IOException {
+		if (json.peek() == JsonToken.NULL) {
+			json.nextNull();
+			return null;
+		}
+		return json.nextString();
+	}
+
+	private static List<String> nextStringList(JsonReader json) throws IOException {
+		if (json.peek() == JsonToken.NULL) {
+			json.nextNull();
+			return null;
+		}
+		List<String> list = new ArrayList<>();
+		json.beginArray();
+		while (json.hasNext()) {
+			list.add(nextString(json));
+		}
+		json.endArray();
+		return list;
 	}
 
 	// Filter out any EA releases for which a GA with the same major version exists
 	private List<MetadataResult> filterEA(List<MetadataResult> jdks) {
 		Set<Integer> GAs = jdks.stream()
 			.filter(jdk -> "ga".equals(jdk.release_type))
-			.map(jdk -> extractMajorVersion(jdk.java_version))
+			.map(jdk -> jdk.javaVersion().major())
 			.collect(Collectors.toSet());
 
 		MetadataResult[] lastJdk = new MetadataResult[] { null };
 		return jdks.stream()
 			.filter(jdk -> {
-				int majorVersion = extractMajorVersion(jdk.java_version);
+				int majorVersion = jdk.javaVersion().major();
 				if (lastJdk[0] == null
-						|| extractMajorVersion(lastJdk[0].java_version) != majorVersion
+						|| lastJdk[0].javaVersion().major() != majorVersion
 								&& ("ga".equals(jdk.release_type)
 										|| !GAs.contains(majorVersion))) {
 					lastJdk[0] = jdk;
@@ -308,12 +826,12 @@ public class MetadataJdkInstaller implements JdkInstaller {
 			.collect(Collectors.toList());
 	}
 
-	private static final Comparator<MetadataResult> metadataResultVersionComparator = (o1,
-			o2) -> VersionComparator.INSTANCE.compare(o1.java_version, o2.java_version);
+	private static final Comparator<MetadataResult> metadataResultVersionComparator = Comparator
+		.comparing(MetadataResult::javaVersion);
 
 	private Comparator<MetadataResult> majorVersionSort() {
 		return Comparator
-			.comparingInt((MetadataResult jdk) -> -extractMajorVersion(jdk.java_version))
+			.comparingInt((MetadataResult jdk) -> -jdk.javaVersion().major())
 			.thenComparing(metadataResultVersionComparator.reversed());
 	}
 
@@ -331,12 +849,16 @@ public class MetadataJdkInstaller implements JdkInstaller {
 				version);
 		String url = metadataJdk.downloadUrl;
 
+		ArchiveDownloader downloader = new ArchiveDownloader(remoteAccessProvider(), archiveCache);
 		try {
-			LOGGER.log(Level.FINE, "Downloading {0}", url);
-			Path jdkPkg = remoteAccessProvider().downloadFromUrl(url);
-
-			LOGGER.log(Level.INFO, "Installing JDK {0}...", version);
-			JavaUtils.installJdk(jdkPkg, jdkDir);
+			try {
+				JavaUtils.installJdk(jdkDir, profile, tmpDir -> downloader.downloadAndUnpack(url, metadataJdk.size,
+						CompletableFuture.completedFuture(metadataJdk.checksum), tmpDir, profile));
+			} catch (IOException e) {
+				// The cached archive might be corrupt, so we don't want to use it again
+				downloader.discard(url, metadataJdk.checksum);
+				throw e;
+			}
 
 			Jdk.InstalledJdk newJdk = jdkProvider.createJdk(metadataJdk.id(), jdkDir);
 			if (newJdk == null) {
@@ -427,24 +949,21 @@ public class MetadataJdkInstaller implements JdkInstaller {
 		}
 	}
 
-	/**
-	 * Extracts the major version from a Java version string
-	 */
-	private static int extractMajorVersion(String javaVersion) {
-		return JavaUtils.parseJavaVersion(javaVersion);
-	}
-
 	private static int jdkVersion(String jdk) {
 		return JavaUtils.parseJavaVersion(jdk);
 	}
 
 	static class AvailableMetadataJdk extends Jdk.AvailableJdk.Default {
 		public final String downloadUrl;
+		public final @Nullable Checksum checksum;
+		public final long size;
 
 		AvailableMetadataJdk(@NonNull JdkProvider provider, @NonNull String id, @NonNull String version,
-				@NonNull String downloadUrl, @NonNull Set<String> tags) {
+				@NonNull String downloadUrl, @Nullable Checksum checksum, long size, @NonNull Set<String> tags) {
 			super(provider, id, version, tags);
 			this.downloadUrl = downloadUrl;
+			this.checksum = checksum;
+			this.size = size;
 		}
 	}
 
@@ -459,11 +978,17 @@ public class MetadataJdkInstaller implements JdkInstaller {
 			MetadataJdkInstaller installer = new MetadataJdkInstaller(config.jdkProvider());
 			installer
 				.distros(config.properties().getOrDefault("distro", null))
-				.jvmImpl(config.properties().getOrDefault("impl", null));
-			HttpClientBuilder httpClientBuilder = NetUtils.createCachingHttpClientBuilder(config.cachePath());
-			RemoteAccessProvider rap = RemoteAccessProvider.createDefaultRemoteAccessProvider(httpClientBuilder);
-			installer.remoteAccessProvider(rap);
-			return installer;
+				.jvmImpl(config.properties().getOrDefault("impl", null))
+				.archiveCache(config.archiveCache())
+				.catalogSnapshot(config.catalogSnapshot())
+				.profile(config.profile())
+				.catalogMaxAge(config.httpCacheMaxAge());
+			HttpClientBuilder httpClientBuilder = NetUtils.createCachingHttpClientBuilder(config.httpCachePath(),
+					config.httpCacheMaxAge(), config.httpCacheStaleWhileRevalidate());
+			RemoteAccessProvider rap = RemoteAccessProvider.createDefaultRemoteAccessProvider(httpClientBuilder,
+					NetUtils.createConnectionManager(
+							RemoteAccessProvider.DefaultRemoteAccessProvider.DEFAULT_MAX_CONNECTIONS));
+			return installer.remoteAccessProvider(rap, true);
 		}
 	}
 }
@@ -3,11 +3,13 @@ package dev.jbang.devkitman.jdkproviders;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Objects;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.jspecify.annotations.NonNull;
@@ -20,6 +22,7 @@ import dev.jbang.devkitman.util.JavaUtils;
 public abstract class BaseFoldersJdkProvider extends BaseJdkProvider {
 	protected final Path jdksRoot;
 	protected final Path realRoot;
+	protected JdkInventory inventory;
 
 	private static final Logger LOGGER = Logger.getLogger(BaseFoldersJdkProvider.class.getName());
 
@@ -28,6 +31,19 @@ public abstract class BaseFoldersJdkProvider extends BaseJdkProvider {
 		this.realRoot = FileUtils.realPath(jdksRoot);
 	}
 
+	/**
+	 * Sets the inventory that will be used to remember the JDKs that were found in
+	 * the root folder between runs, so they don't have to be searched for and
+	 * identified again as long as the folders don't change.
+	 *
+	 * @param inventory The inventory to use or <code>null</code> to disable it
+	 * @return This provider
+	 */
+	public @NonNull BaseFoldersJdkProvider inventory(@Nullable JdkInventory inventory) {
+		this.inventory = inventory;
+		return this;
+	}
+
 	@Override
 	@NonNull
 	public String name() {
@@ -65,10 +81,22 @@ public abstract class BaseFoldersJdkProvider extends BaseJdkProvider {
 	@NonNull
 	@Override
 	public Stream<Jdk.InstalledJdk> listInstalled() {
+		if (inventory != null) {
+			List<Jdk.InstalledJdk> jdks = inventory.list(this, jdksRoot);
+			if (jdks != null) {
+				return jdks.stream();
+			}
+		}
 		try {
-			return listJdkPaths()
+			Stream<Jdk.InstalledJdk> jdks = listJdkPaths()
 				.map(this::createJdk)
 				.filter(Objects::nonNull);
+			if (inventory != null) {
+				List<Jdk.InstalledJdk> list = jdks.collect(Collectors.toList());
+				inventory.update(jdksRoot, list);
+				return list.stream();
+			}
+			return jdks;
 		} catch (IOException e) {
 			LOGGER.log(Level.FINE, "Couldn't list installed JDKs", e);
 			return Stream.empty();
@@ -85,6 +113,12 @@ public abstract class BaseFoldersJdkProvider extends BaseJdkProvider {
 
 	@Override
 	public Jdk.@Nullable InstalledJdk getInstalledByPath(@NonNull Path jdkPath) {
+		if (inventory != null) {
+			Jdk.InstalledJdk jdk = inventory.get(this, jdksRoot, jdkPath);
+			if (jdk != null) {
+				return jdk;
+			}
+		}
 		if (acceptFolder(jdkPath)) {
 			return createJdk(jdkPath);
 		}
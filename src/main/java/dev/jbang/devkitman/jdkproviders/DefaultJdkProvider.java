@@ -1,7 +1,5 @@
 package dev.jbang.devkitman.jdkproviders;
 
-import static dev.jbang.devkitman.Jdk.InstalledJdk.Default.determineTagsFromJdkHome;
-
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -18,6 +16,8 @@ import dev.jbang.devkitman.JdkDiscovery;
 import dev.jbang.devkitman.JdkProvider;
 import dev.jbang.devkitman.util.FileUtils;
 import dev.jbang.devkitman.util.JavaUtils;
+import dev.jbang.devkitman.util.JdkHomeProbe;
+import dev.jbang.devkitman.util.PathLock;
 
 /**
  * This JDK provider returns the "default" JDK if it was set. This is not a JDK
@@ -68,14 +68,15 @@ public class DefaultJdkProvider extends BaseFoldersJdkProvider {
 		String[] parts = idOrToken.split("@", 2);
 		if (parts.length == 2 && isValidId(parts[0]) && FileUtils.isValidPath(parts[1])) {
 			Path jdkPath = Paths.get(parts[1]);
-			if (JavaUtils.hasJavacCmd(jdkPath)) {
-				Optional<String> version = JavaUtils.resolveJavaVersionStringFromPath(jdkPath);
+			JdkHomeProbe probe = new JdkHomeProbe(jdkPath);
+			if (probe.hasJavacCmd()) {
+				Optional<String> version = probe.javaVersion();
 				if (!version.isPresent()) {
 					throw new IllegalArgumentException(
 							"Unable to determine Java version in given path: " + jdkPath);
 				}
 				return new AvailableDefaultJdk(this, parts[0], version.get(), jdkPath,
-						determineTagsFromJdkHome(jdkPath));
+						probe.tags());
 			}
 			return null;
 		} else {
@@ -109,25 +110,30 @@ public class DefaultJdkProvider extends BaseFoldersJdkProvider {
 					"DefaultJdkInstaller can only install JDKs listed as available by itself");
 		}
 		AvailableDefaultJdk availJdk = (AvailableDefaultJdk) jdk;
-		Jdk.InstalledJdk existingJdk = getInstalledById(availJdk.id());
-		if (existingJdk != null && existingJdk.isInstalled() && !availJdk.home.equals(existingJdk.home())) {
-			uninstall(existingJdk);
-		}
 		Path linkPath = getJdkPath(availJdk.id());
-		// Remove anything that might be in the way
-		FileUtils.deletePath(linkPath);
-		// Now create the new link
-		FileUtils.createLink(linkPath, availJdk.home);
-		Jdk.LinkedJdk newJdk = (Jdk.LinkedJdk) createJdk(linkPath);
-		if (newJdk == null) {
-			throw new IllegalStateException("Failed to find JDK in: " + linkPath);
+		// Make sure other processes don't swap the link at the same time
+		try (PathLock lock = PathLock.lock(linkPath)) {
+			Jdk.InstalledJdk existingJdk = getInstalledById(availJdk.id());
+			if (existingJdk != null && existingJdk.isInstalled() && !availJdk.home.equals(existingJdk.home())) {
+				uninstall(existingJdk);
+			}
+			// Remove anything that might be in the way
+			FileUtils.deletePath(linkPath);
+			// Now create the new link
+			FileUtils.createLink(linkPath, availJdk.home);
+			Jdk.LinkedJdk newJdk = (Jdk.LinkedJdk) createJdk(linkPath);
+			if (newJdk == null) {
+				throw new IllegalStateException("Failed to find JDK in: " + linkPath);
+			}
+			return newJdk;
 		}
-		return newJdk;
 	}
 
 	@Override
 	public void uninstall(Jdk.@NonNull InstalledJdk jdk) {
-		JavaUtils.safeDeleteJdk(jdk.home());
+		try (PathLock lock = PathLock.lock(jdk.home())) {
+			JavaUtils.safeDeleteJdk(jdk.home());
+		}
 	}
 
 	@Override
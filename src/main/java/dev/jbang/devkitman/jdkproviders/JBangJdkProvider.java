@@ -1,8 +1,11 @@
 package dev.jbang.devkitman.jdkproviders;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Stream;
 
 import org.jspecify.annotations.NonNull;
@@ -17,6 +20,8 @@ import dev.jbang.devkitman.JdkProvider;
 import dev.jbang.devkitman.jdkinstallers.FoojayJdkInstaller;
 import dev.jbang.devkitman.util.FileUtils;
 import dev.jbang.devkitman.util.JavaUtils;
+import dev.jbang.devkitman.util.JdkProfile;
+import dev.jbang.devkitman.util.PathLock;
 
 /**
  * JBang's main JDK provider that (by default) can download and install the JDKs
@@ -28,6 +33,8 @@ public class JBangJdkProvider extends BaseFoldersJdkProvider implements JdkDistr
 
 	public static final String DEFAULT_INSTALLER = "foojay";
 
+	private static final Logger LOGGER = Logger.getLogger(JBangJdkProvider.class.getName());
+
 	public JBangJdkProvider() {
 		this(getJBangJdkDir());
 	}
@@ -65,12 +72,38 @@ public class JBangJdkProvider extends BaseFoldersJdkProvider implements JdkDistr
 
 	@Override
 	public Jdk.@NonNull InstalledJdk install(Jdk.@NonNull AvailableJdk jdk) {
-		return jdkInstaller.install(jdk, getJdkPath(jdk.id()));
+		Path jdkPath = getJdkPath(jdk.id());
+		// Other processes might be installing the same JDK at the same time
+		try (PathLock lock = PathLock.lock(jdkPath)) {
+			// If we had to wait, someone else might have installed the JDK meanwhile
+			Jdk.InstalledJdk installed = lock.waited() ? createJdk(jdkPath) : null;
+			if (installed != null) {
+				// But it's only of use if it has all the parts we would install
+				JdkProfile profile = JdkProfile.of(jdkPath);
+				if (profile.includes(jdkInstaller.profile())) {
+					LOGGER.log(Level.FINE, "JDK was installed concurrently: {0}", jdk.id());
+					return installed;
+				}
+				LOGGER.log(Level.FINE, "Replacing JDK {0} that was installed with profile {1}",
+						new Object[] { jdk.id(), profile });
+			}
+			return jdkInstaller.install(jdk, jdkPath);
+		} finally {
+			if (inventory != null) {
+				inventory.invalidate();
+			}
+		}
 	}
 
 	@Override
 	public void uninstall(Jdk.@NonNull InstalledJdk jdk) {
-		jdkInstaller.uninstall(jdk);
+		try (PathLock lock = PathLock.lock(jdk.home())) {
+			jdkInstaller.uninstall(jdk);
+		} finally {
+			if (inventory != null) {
+				inventory.invalidate();
+			}
+		}
 	}
 
 	@Override
@@ -78,6 +111,11 @@ public class JBangJdkProvider extends BaseFoldersJdkProvider implements JdkDistr
 		return jdkInstaller.listDistros();
 	}
 
+	@Override
+	public void close() throws IOException {
+		jdkInstaller.close();
+	}
+
 	@Override
 	public boolean canUpdate() {
 		return true;
@@ -150,6 +188,7 @@ public class JBangJdkProvider extends BaseFoldersJdkProvider implements JdkDistr
 		@Override
 		public JdkProvider create(@NonNull Config config) {
 			JBangJdkProvider prov = new JBangJdkProvider(config.installPath());
+			prov.inventory(new JdkInventory(config.cachePath().resolve("jdk-inventory-" + PROVIDER_ID + ".json")));
 
 			String instName = config.properties().getOrDefault("installer", DEFAULT_INSTALLER);
 			JdkInstallers.Discovery.Config instConfig = JdkInstallers.config(prov, config.properties(),
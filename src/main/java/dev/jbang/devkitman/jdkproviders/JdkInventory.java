@@ -0,0 +1,240 @@
+package dev.jbang.devkitman.jdkproviders;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.Strictness;
+
+import dev.jbang.devkitman.Jdk;
+import dev.jbang.devkitman.JdkProvider;
+
+/**
+ * A snapshot of the JDKs found in a provider's root folder that is persisted to
+ * disk. Finding and identifying JDKs means walking the root folder and reading
+ * (or even running) files in each of the JDK folders, while validating the
+ * snapshot only requires checking the modification times of the root folder
+ * and the JDK folders themselves.
+ */
+public class JdkInventory {
+	private final Path file;
+	private Snapshot snapshot;
+	private boolean loaded;
+
+	/**
+	 * Modification times this close to the moment the snapshot was taken are not
+	 * trusted, because the file system might not have enough resolution to show
+	 * changes that happened right after
+	 */
+	static final long MODIFICATION_MARGIN_MS = 2000;
+
+	private static final Logger LOGGER = Logger.getLogger(JdkInventory.class.getName());
+
+	static class Snapshot {
+		String root;
+		long rootModified;
+		long taken;
+		List<Entry> jdks;
+	}
+
+	static class Entry {
+		String id;
+		String home;
+		String version;
+		Set<String> tags;
+		long modified;
+	}
+
+	/**
+	 * Creates a new inventory that will be stored in the given file
+	 *
+	 * @param file The path to the inventory file
+	 */
+	public JdkInventory(@NonNull Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * Returns the JDKs that were found in the given root folder the last time it
+	 * was scanned, or <code>null</code> if there is no snapshot or if the root
+	 * folder or any of the JDK folders were changed since then.
+	 *
+	 * @param provider The provider to create the <code>Jdk</code> objects for
+	 * @param root     The root folder of the provider
+	 * @return A list of JDKs or <code>null</code>
+	 */
+	public synchronized @Nullable List<Jdk.InstalledJdk> list(@NonNull JdkProvider provider, @NonNull Path root) {
+		Snapshot s = snapshot(root);
+		if (s == null) {
+			return null;
+		}
+		List<Jdk.InstalledJdk> jdks = new ArrayList<>(s.jdks.size());
+		for (Entry e : s.jdks) {
+			if (!isValid(e, s)) {
+				return null;
+			}
+			jdks.add(createJdk(provider, e));
+		}
+		return jdks;
+	}
+
+	/**
+	 * Returns the JDK found in the given folder the last time the root folder was
+	 * scanned, or <code>null</code> if there is no snapshot, no such JDK, or if the
+	 * root folder or the JDK folder were changed since then.
+	 *
+	 * @param provider The provider to create the <code>Jdk</code> object for
+	 * @param root     The root folder of the provider
+	 * @param home     The folder of the JDK
+	 * @return A JDK or <code>null</code>
+	 */
+	public synchronized Jdk.@Nullable InstalledJdk get(@NonNull JdkProvider provider, @NonNull Path root,
+			@NonNull Path home) {
+		Snapshot s = snapshot(root);
+		if (s == null) {
+			return null;
+		}
+		String h = home.toString();
+		for (Entry e : s.jdks) {
+			if (e.home.equals(h)) {
+				return isValid(e, s) ? createJdk(provider, e) : null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Replaces the snapshot with the given list of JDKs that were just found in
+	 * the given root folder and writes it to disk.
+	 *
+	 * @param root The root folder of the provider
+	 * @param jdks The JDKs found in the root folder
+	 */
+	public synchronized void update(@NonNull Path root, @NonNull List<Jdk.InstalledJdk> jdks) {
+		Snapshot s = new Snapshot();
+		s.taken = System.currentTimeMillis();
+		s.root = root.toString();
+		s.jdks = new ArrayList<>(jdks.size());
+		try {
+			s.rootModified = modified(root);
+			for (Jdk.InstalledJdk jdk : jdks) {
+				Entry e = new Entry();
+				e.id = jdk.id();
+				e.home = jdk.home().toString();
+				e.version = jdk.version();
+				e.tags = jdk.tags();
+				e.modified = modified(jdk.home());
+				s.jdks.add(e);
+			}
+		} catch (IOException ex) {
+			LOGGER.log(Level.FINE, "Couldn't take snapshot of JDKs in " + root, ex);
+			invalidate();
+			return;
+		}
+		snapshot = s;
+		loaded = true;
+		write(s);
+	}
+
+	/**
+	 * Throws away the snapshot, both in memory and on disk
+	 */
+	public synchronized void invalidate() {
+		snapshot = null;
+		loaded = true;
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Couldn't delete JDK inventory " + file, e);
+		}
+	}
+
+	private Snapshot snapshot(Path root) {
+		if (!loaded) {
+			snapshot = read();
+			loaded = true;
+		}
+		Snapshot s = snapshot;
+		if (s == null || s.jdks == null || !root.toString().equals(s.root)) {
+			return null;
+		}
+		try {
+			if (modified(root) != s.rootModified || isRacy(s.rootModified, s)) {
+				return null;
+			}
+		} catch (IOException e) {
+			return null;
+		}
+		return s;
+	}
+
+	private static boolean isValid(Entry e, Snapshot s) {
+		try {
+			return modified(Paths.get(e.home)) == e.modified && !isRacy(e.modified, s);
+		} catch (IOException | InvalidPathException ex) {
+			return false;
+		}
+	}
+
+	private static boolean isRacy(long modified, Snapshot s) {
+		return modified >= s.taken - MODIFICATION_MARGIN_MS;
+	}
+
+	private static long modified(Path p) throws IOException {
+		return Files.getLastModifiedTime(p).toMillis();
+	}
+
+	private static Jdk.InstalledJdk createJdk(JdkProvider provider, Entry e) {
+		Set<String> tags = e.tags != null ? e.tags : Collections.emptySet();
+		return provider.createJdk(e.id, Paths.get(e.home), e.version, tags);
+	}
+
+	private Snapshot read() {
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			return gson().fromJson(reader, Snapshot.class);
+		} catch (IOException | JsonParseException e) {
+			LOGGER.log(Level.FINE, "Couldn't read JDK inventory " + file, e);
+			return null;
+		}
+	}
+
+	private void write(Snapshot s) {
+		try {
+			Path dir = file.toAbsolutePath().getParent();
+			Files.createDirectories(dir);
+			Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+			try {
+				try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+					gson().toJson(s, writer);
+				}
+				try {
+					Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+				}
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Couldn't write JDK inventory " + file, e);
+		}
+	}
+
+	private static Gson gson() {
+		return new GsonBuilder().setStrictness(Strictness.LENIENT).create();
+	}
+}
@@ -1,7 +1,5 @@
 package dev.jbang.devkitman.jdkproviders;
 
-import static dev.jbang.devkitman.Jdk.InstalledJdk.Default.determineTagsFromJdkHome;
-
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Optional;
@@ -17,6 +15,7 @@ import dev.jbang.devkitman.JdkDiscovery;
 import dev.jbang.devkitman.JdkProvider;
 import dev.jbang.devkitman.util.FileUtils;
 import dev.jbang.devkitman.util.JavaUtils;
+import dev.jbang.devkitman.util.JdkHomeProbe;
 
 /**
  * This JDK provider returns JDKs that are not managed or found by any of the
@@ -48,14 +47,15 @@ public class LinkedJdkProvider extends BaseFoldersJdkProvider {
 		String[] parts = idOrToken.split("@", 2);
 		if (parts.length == 2 && isValidId(parts[0]) && FileUtils.isValidPath(parts[1])) {
 			Path jdkPath = Paths.get(parts[1]);
-			if (JavaUtils.hasJavacCmd(jdkPath)) {
-				Optional<String> version = JavaUtils.resolveJavaVersionStringFromPath(jdkPath);
+			JdkHomeProbe probe = new JdkHomeProbe(jdkPath);
+			if (probe.hasJavacCmd()) {
+				Optional<String> version = probe.javaVersion();
 				if (!version.isPresent()) {
 					throw new IllegalArgumentException(
 							"Unable to determine Java version in given path: " + jdkPath);
 				}
 				return new AvailableLinkedJdk(this, parts[0], version.get(), jdkPath,
-						determineTagsFromJdkHome(jdkPath));
+						probe.tags());
 			}
 			return null;
 		} else {
@@ -49,7 +49,8 @@ public class MiseJdkProvider extends BaseFoldersJdkProvider {
 
 		@Override
 		public JdkProvider create(@NonNull Config config) {
-			return new MiseJdkProvider();
+			return new MiseJdkProvider()
+				.inventory(new JdkInventory(config.cachePath().resolve("jdk-inventory-" + PROVIDER_ID + ".json")));
 		}
 	}
 }
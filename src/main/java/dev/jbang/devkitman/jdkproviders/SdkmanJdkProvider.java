@@ -49,7 +49,8 @@ public class SdkmanJdkProvider extends BaseFoldersJdkProvider {
 
 		@Override
 		public JdkProvider create(@NonNull Config config) {
-			return new SdkmanJdkProvider();
+			return new SdkmanJdkProvider()
+				.inventory(new JdkInventory(config.cachePath().resolve("jdk-inventory-" + PROVIDER_ID + ".json")));
 		}
 	}
 }
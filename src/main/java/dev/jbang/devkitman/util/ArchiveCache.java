@@ -0,0 +1,276 @@
+package dev.jbang.devkitman.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A cache for downloaded JDK archives, so they don't have to be downloaded
+ * again when a JDK gets reinstalled. Archives are stored by the SHA-256 of
+ * their contents, which means that the same archive gets stored only once, even
+ * if it was downloaded from different URLs. The URLs themselves are recorded as
+ * aliases for the contents they returned. The total size of the cache is kept
+ * within a byte budget by removing the least recently used archives first.
+ *
+ * <p>
+ * The layout of the cache folder is:
+ *
+ * <pre>
+ * sha256/&lt;sha256 of contents&gt;/&lt;archive file name&gt;
+ * urls/&lt;sha256 of url&gt;  (contains the sha256 of the contents)
+ * tmp/  (archives that are being stored)
+ * </pre>
+ *
+ * All changes are made using atomic moves so several processes can safely use
+ * the same cache folder.
+ */
+public class ArchiveCache {
+	private final Path dir;
+	private final long maxBytes;
+
+	private static final Logger LOGGER = Logger.getLogger(ArchiveCache.class.getName());
+
+	/**
+	 * Creates a new archive cache
+	 *
+	 * @param dir      The folder where the archives will be stored
+	 * @param maxBytes The maximum total size of all archives in the cache
+	 */
+	public ArchiveCache(@NonNull Path dir, long maxBytes) {
+		if (maxBytes < 1) {
+			throw new IllegalArgumentException("Archive cache size must be at least 1 byte");
+		}
+		this.dir = dir;
+		this.maxBytes = maxBytes;
+	}
+
+	@NonNull
+	public Path dir() {
+		return dir;
+	}
+
+	public long maxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Returns the cached archive for the given SHA-256 or, if that is not known,
+	 * for the given URL. Entries whose size does not match the expected size are
+	 * considered corrupt and are removed.
+	 *
+	 * @param sha256 The SHA-256 of the archive, if known
+	 * @param url    The URL the archive was downloaded from
+	 * @param size   The expected size of the archive, or -1 if unknown
+	 * @return The path to the archive or <code>null</code> if it isn't cached
+	 */
+	@Nullable
+	public Path get(@Nullable String sha256, @NonNull String url, long size) {
+		String hash = sha256 != null ? sha256.toLowerCase() : readAlias(url);
+		if (hash == null) {
+			return null;
+		}
+		Path entryDir = entryDir(hash);
+		Path archive = entryFile(entryDir);
+		if (archive == null) {
+			return null;
+		}
+		try {
+			if (size >= 0 && Files.size(archive) != size) {
+				LOGGER.log(Level.FINE, "Removing cached archive with unexpected size: {0}", archive);
+				FileUtils.deletePath(entryDir);
+				return null;
+			}
+			// The modification time is used to determine which archives to evict
+			Files.setLastModifiedTime(archive, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Couldn't access cached archive " + archive, e);
+			return null;
+		}
+		LOGGER.log(Level.FINE, "Using cached archive {0}", archive);
+		return archive;
+	}
+
+	/**
+	 * Moves the given archive into the cache. If an archive with the same contents
+	 * is already cached, the given archive is deleted and the existing one is
+	 * returned. Afterwards, archives will be evicted if the cache has grown over
+	 * its budget.
+	 *
+	 * @param sha256  The SHA-256 of the archive, or <code>null</code> to have it
+	 *                calculated
+	 * @param url     The URL the archive was downloaded from
+	 * @param archive The archive to store
+	 * @return The path to the archive in the cache
+	 * @throws IOException If the archive could not be stored
+	 */
+	@NonNull
+	public Path put(@Nullable String sha256, @NonNull String url, @NonNull Path archive) throws IOException {
+		String hash = sha256 != null ? sha256.toLowerCase() : sha256(archive);
+		Path entryDir = entryDir(hash);
+		Path cached = entryFile(entryDir);
+		if (cached == null) {
+			Files.createDirectories(entryDir.getParent());
+			Path tmpRoot = Files.createDirectories(dir.resolve("tmp"));
+			Path tmpDir = Files.createTempDirectory(tmpRoot, hash + ".");
+			try {
+				Files.move(archive, tmpDir.resolve(archive.getFileName()));
+				moveAtomically(tmpDir, entryDir);
+			} catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+				// Another process stored the same archive in the meantime
+			} finally {
+				FileUtils.deletePath(tmpDir);
+			}
+			cached = entryFile(entryDir);
+			if (cached == null) {
+				throw new IOException("Failed to store archive in cache: " + entryDir);
+			}
+		} else {
+			FileUtils.deletePath(archive);
+		}
+		writeAlias(url, hash);
+		evict(hash);
+		return cached;
+	}
+
+	/**
+	 * Removes an archive from the cache, for example because it turned out to be
+	 * corrupt.
+	 *
+	 * @param sha256 The SHA-256 of the archive, if known
+	 * @param url    The URL the archive was downloaded from
+	 */
+	public void remove(@Nullable String sha256, @NonNull String url) {
+		String hash = sha256 != null ? sha256.toLowerCase() : readAlias(url);
+		if (hash != null) {
+			FileUtils.deletePath(entryDir(hash));
+		}
+		FileUtils.deletePath(aliasFile(url));
+	}
+
+	/**
+	 * Removes the least recently used archives until the total size of the cache
+	 * is within its budget. The archive with the given hash is never removed.
+	 */
+	private void evict(@NonNull String keep) {
+		Path root = dir.resolve("sha256");
+		List<Entry> entries = new ArrayList<>();
+		long total = 0;
+		try (Stream<Path> dirs = Files.list(root)) {
+			for (Path entryDir : (Iterable<Path>) dirs::iterator) {
+				Path archive = entryFile(entryDir);
+				if (archive != null) {
+					Entry e = new Entry(entryDir, Files.size(archive), Files.getLastModifiedTime(archive).toMillis());
+					entries.add(e);
+					total += e.size;
+				}
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Couldn't determine archive cache size", e);
+			return;
+		}
+		entries.sort(Comparator.comparingLong(e -> e.lastUsed));
+		for (Entry e : entries) {
+			if (total <= maxBytes) {
+				break;
+			}
+			if (!e.dir.getFileName().toString().equals(keep)) {
+				LOGGER.log(Level.FINE, "Evicting cached archive {0}", e.dir);
+				try {
+					FileUtils.deletePath(e.dir);
+				} catch (IllegalStateException ex) {
+					// Probably evicted by another process at the same time
+					LOGGER.log(Level.FINE, "Couldn't evict cached archive " + e.dir, ex);
+				}
+				total -= e.size;
+			}
+		}
+	}
+
+	private static class Entry {
+		final Path dir;
+		final long size;
+		final long lastUsed;
+
+		Entry(Path dir, long size, long lastUsed) {
+			this.dir = dir;
+			this.size = size;
+			this.lastUsed = lastUsed;
+		}
+	}
+
+	private Path entryDir(String hash) {
+		return dir.resolve("sha256").resolve(hash);
+	}
+
+	private Path aliasFile(String url) {
+		return dir.resolve("urls").resolve(sha256(url));
+	}
+
+	@Nullable
+	private static Path entryFile(Path entryDir) {
+		if (!Files.isDirectory(entryDir)) {
+			return null;
+		}
+		try (Stream<Path> files = Files.list(entryDir)) {
+			return files.filter(Files::isRegularFile).findFirst().orElse(null);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	@Nullable
+	private String readAlias(String url) {
+		Path alias = aliasFile(url);
+		if (!Files.isRegularFile(alias)) {
+			return null;
+		}
+		try {
+			return new String(Files.readAllBytes(alias), StandardCharsets.US_ASCII).trim();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private void writeAlias(String url, String hash) throws IOException {
+		Path alias = aliasFile(url);
+		Files.createDirectories(alias.getParent());
+		Path tmp = Files.createTempFile(alias.getParent(), alias.getFileName().toString(), ".tmp");
+		try {
+			Files.write(tmp, hash.getBytes(StandardCharsets.US_ASCII));
+			Files.move(tmp, alias, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	private static void moveAtomically(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target);
+		}
+	}
+
+	/**
+	 * Returns the SHA-256 of the given file as a lowercase hex string
+	 */
+	@NonNull
+	public static String sha256(@NonNull Path file) throws IOException {
+		return Checksum.digest(file, Checksum.SHA_256);
+	}
+
+	@NonNull
+	static String sha256(@NonNull String text) {
+		return Checksum.toHex(Checksum.newDigest(Checksum.SHA_256).digest(text.getBytes(StandardCharsets.UTF_8)));
+	}
+}
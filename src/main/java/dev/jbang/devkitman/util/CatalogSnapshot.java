@@ -0,0 +1,422 @@
+package dev.jbang.devkitman.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Keeps the normalised catalogs of JDK installers on disk, so listing the
+ * available JDKs doesn't require fetching, parsing and processing the catalog
+ * every time. Each catalog is identified by a source string that captures
+ * everything that determines its contents (e.g. the installer, its provider,
+ * distros, OS and architecture) and is stored in its own file, named after
+ * the SHA-256 of that string.
+ *
+ * <p>
+ * A snapshot that is older than <code>maxAge</code> is still returned, but a
+ * fresh copy of the catalog is then loaded in the background. Only when a
+ * snapshot is older than <code>maxStale</code>, or when there is none at all,
+ * the caller has to wait for the catalog to be loaded. Background refreshes run
+ * on daemon threads, so they never keep the JVM from exiting, which means that
+ * a short-lived process might not get to finish them. In that case the next
+ * process finds the same stale snapshot and simply tries again. A caller that
+ * wants to use the refreshed entries as soon as they are available can pass a
+ * listener to <code>get()</code>. Snapshots are written to a temporary file and
+ * then renamed, so that never leaves a broken snapshot. A loader that could
+ * only load part of the catalog throws an <code>IncompleteCatalogException</code>
+ * with what it got, those entries are used but never stored.
+ *
+ * <p>
+ * The snapshot files use a simple binary layout, that can be memory mapped:
+ *
+ * <pre>
+ * int     magic "DKCS"
+ * byte    version
+ * string  source
+ * int     number of entries
+ * per entry:
+ *   string  id
+ *   string  version
+ *   string  download url
+ *   string  info url ("" if none)
+ *   string  checksum algorithm ("" if none)
+ *   string  checksum value ("" if none)
+ *   long    size (-1 if unknown)
+ *   int     number of tags, followed by the tags as strings
+ * </pre>
+ *
+ * where a string is an int length followed by that many UTF-8 bytes.
+ */
+public class CatalogSnapshot {
+	private static final int MAGIC = 0x444b4353; // "DKCS"
+	private static final int VERSION = 1;
+
+	public static final Duration DEFAULT_MAX_AGE = Duration.ofHours(1);
+
+	/**
+	 * By default snapshots older than this are not used at all
+	 */
+	public static final Duration DEFAULT_MAX_STALE = Duration.ofDays(1);
+
+	private final Path dir;
+	private final Duration maxAge;
+	private final Duration maxStale;
+	private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+	private volatile ExecutorService executor;
+
+	private static final Logger LOGGER = Logger.getLogger(CatalogSnapshot.class.getName());
+
+	/**
+	 * A single available JDK as stored in a snapshot
+	 */
+	public static class Entry {
+		public final @NonNull String id;
+		public final @NonNull String version;
+		public final @NonNull String url;
+		public final @Nullable String infoUrl;
+		public final @Nullable Checksum checksum;
+		public final long size;
+		public final @NonNull Set<String> tags;
+
+		public Entry(@NonNull String id, @NonNull String version, @NonNull String url, @Nullable String infoUrl,
+				@Nullable Checksum checksum, long size, @NonNull Set<String> tags) {
+			this.id = id;
+			this.version = version;
+			this.url = url;
+			this.infoUrl = infoUrl;
+			this.checksum = checksum;
+			this.size = size;
+			this.tags = tags;
+		}
+	}
+
+	/**
+	 * Thrown by a loader that could only load part of a catalog. The entries it
+	 * did load are returned to the caller, but they don't get stored, so the next
+	 * time the catalog will be loaded again.
+	 */
+	public static class IncompleteCatalogException extends IOException {
+		private final transient List<Entry> entries;
+
+		public IncompleteCatalogException(@NonNull List<Entry> entries, @Nullable Throwable cause) {
+			super("The catalog could only be loaded partially", cause);
+			this.entries = entries;
+		}
+
+		@NonNull
+		public List<Entry> entries() {
+			return entries;
+		}
+	}
+
+	/**
+	 * Creates a new snapshot store that doesn't use snapshots older than
+	 * <code>DEFAULT_MAX_STALE</code> (or <code>maxAge</code> if that's longer)
+	 *
+	 * @param dir    The folder to store the snapshots in
+	 * @param maxAge The age after which snapshots get refreshed in the background
+	 */
+	public CatalogSnapshot(@NonNull Path dir, @NonNull Duration maxAge) {
+		this(dir, maxAge, maxAge.compareTo(DEFAULT_MAX_STALE) > 0 ? maxAge : DEFAULT_MAX_STALE);
+	}
+
+	/**
+	 * Creates a new snapshot store
+	 *
+	 * @param dir      The folder to store the snapshots in
+	 * @param maxAge   The age after which snapshots get refreshed in the
+	 *                 background
+	 * @param maxStale The age after which snapshots are not used anymore, but the
+	 *                 catalog gets loaded while the caller waits
+	 */
+	public CatalogSnapshot(@NonNull Path dir, @NonNull Duration maxAge, @NonNull Duration maxStale) {
+		if (maxAge.isNegative()) {
+			throw new IllegalArgumentException("Catalog snapshot age must not be negative");
+		}
+		if (maxStale.compareTo(maxAge) < 0) {
+			throw new IllegalArgumentException("Catalog snapshot staleness must not be shorter than its age");
+		}
+		this.dir = dir;
+		this.maxAge = maxAge;
+		this.maxStale = maxStale;
+	}
+
+	@NonNull
+	public Path dir() {
+		return dir;
+	}
+
+	@NonNull
+	public Duration maxAge() {
+		return maxAge;
+	}
+
+	@NonNull
+	public Duration maxStale() {
+		return maxStale;
+	}
+
+	/**
+	 * Returns the entries of the catalog with the given source. If there is no
+	 * snapshot, or it is older than <code>maxStale</code>, the catalog is loaded
+	 * and stored right away, if the snapshot is older than <code>maxAge</code> it
+	 * gets refreshed in the background.
+	 *
+	 * @param source The string identifying the catalog
+	 * @param loader Loads the current catalog
+	 * @return The entries of the catalog
+	 * @throws IOException If there is no usable snapshot and the catalog could
+	 *                     not be loaded
+	 */
+	@NonNull
+	public List<Entry> get(@NonNull String source, @NonNull Callable<List<Entry>> loader) throws IOException {
+		return get(source, loader, null);
+	}
+
+	/**
+	 * Returns the entries of the catalog with the given source, just like
+	 * <code>get(String, Callable)</code>, but also passes the entries of a
+	 * background refresh to the given listener once they have been stored. The
+	 * listener is called on the refresh thread, and not at all if the refresh
+	 * failed, loaded only part of the catalog or didn't finish before the JVM
+	 * exited.
+	 *
+	 * @param source    The string identifying the catalog
+	 * @param loader    Loads the current catalog
+	 * @param onRefresh Receives the entries of a background refresh
+	 * @return The entries of the catalog
+	 * @throws IOException If there is no usable snapshot and the catalog could
+	 *                     not be loaded
+	 */
+	@NonNull
+	public List<Entry> get(@NonNull String source, @NonNull Callable<List<Entry>> loader,
+			@Nullable Consumer<List<Entry>> onRefresh) throws IOException {
+		Path file = file(source);
+		long age = age(file);
+		if (age >= 0 && age <= maxStale.toMillis()) {
+			List<Entry> entries = read(source, file);
+			if (entries != null) {
+				if (age > maxAge.toMillis()) {
+					refresh(source, loader, onRefresh);
+				}
+				return entries;
+			}
+		}
+		List<Entry> entries;
+		try {
+			entries = load(loader);
+		} catch (IncompleteCatalogException e) {
+			LOGGER.log(Level.FINE, "Not storing incomplete catalog snapshot for " + source, e);
+			return e.entries();
+		}
+		put(source, entries);
+		return entries;
+	}
+
+	/**
+	 * Returns the snapshot of the catalog with the given source, no matter how
+	 * old it is
+	 *
+	 * @param source The string identifying the catalog
+	 * @return The entries or <code>null</code> if there is no snapshot
+	 */
+	@Nullable
+	public List<Entry> read(@NonNull String source) {
+		return read(source, file(source));
+	}
+
+	/**
+	 * Stores a snapshot of the catalog with the given source
+	 *
+	 * @param source  The string identifying the catalog
+	 * @param entries The entries of the catalog
+	 */
+	public void put(@NonNull String source, @NonNull List<Entry> entries) {
+		Path file = file(source);
+		try {
+			byte[] data = encode(source, entries);
+			Files.createDirectories(dir);
+			Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+			try {
+				Files.write(tmp, data);
+				try {
+					Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+				}
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+		} catch (IOException e) {
+			// Not being able to store a snapshot only means it has to be loaded again
+			LOGGER.log(Level.FINE, "Couldn't store catalog snapshot " + file, e);
+		}
+	}
+
+	private void refresh(String source, Callable<List<Entry>> loader, @Nullable Consumer<List<Entry>> onRefresh) {
+		if (!refreshing.add(source)) {
+			return;
+		}
+		try {
+			executor().execute(() -> {
+				try {
+					List<Entry> entries = load(loader);
+					put(source, entries);
+					LOGGER.log(Level.FINE, "Refreshed catalog snapshot for {0}", source);
+					if (onRefresh != null) {
+						onRefresh.accept(entries);
+					}
+				} catch (IOException | RuntimeException e) {
+					LOGGER.log(Level.FINE, "Couldn't refresh catalog snapshot for " + source, e);
+				} finally {
+					refreshing.remove(source);
+				}
+			});
+		} catch (RuntimeException e) {
+			refreshing.remove(source);
+			throw e;
+		}
+	}
+
+	private ExecutorService executor() {
+		if (executor == null) {
+			synchronized (refreshing) {
+				if (executor == null) {
+					executor = ConcurrencyUtils.newBoundedExecutor("catalog-refresh", 1);
+				}
+			}
+		}
+		return executor;
+	}
+
+	private static List<Entry> load(Callable<List<Entry>> loader) throws IOException {
+		try {
+			return loader.call();
+		} catch (IOException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+	}
+
+	private Path file(String source) {
+		return dir.resolve(ArchiveCache.sha256(source) + ".snapshot");
+	}
+
+	private static long age(Path file) {
+		try {
+			return System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis();
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+
+	@Nullable
+	private static List<Entry> read(String source, Path file) {
+		ByteBuffer buf;
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (OsUtils.isWindows()) {
+				// Mapped files can't be replaced on Windows until the mapping is
+				// garbage collected
+				buf = ByteBuffer.wrap(Files.readAllBytes(file));
+			} else {
+				buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			}
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Couldn't read catalog snapshot " + file, e);
+			return null;
+		}
+		try {
+			if (buf.getInt() != MAGIC || buf.get() != VERSION || !source.equals(readString(buf))) {
+				return null;
+			}
+			int count = buf.getInt();
+			List<Entry> entries = new ArrayList<>(Math.max(0, Math.min(count, 100_000)));
+			for (int i = 0; i < count; i++) {
+				String id = readString(buf);
+				String version = readString(buf);
+				String url = readString(buf);
+				String infoUrl = readString(buf);
+				String algorithm = readString(buf);
+				String value = readString(buf);
+				long size = buf.getLong();
+				int tagCount = buf.getInt();
+				Set<String> tags = new HashSet<>();
+				for (int t = 0; t < tagCount; t++) {
+					tags.add(readString(buf));
+				}
+				entries.add(new Entry(id, version, url, infoUrl.isEmpty() ? null : infoUrl,
+						algorithm.isEmpty() ? null : new Checksum(algorithm, value), size, tags));
+			}
+			return entries;
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			LOGGER.log(Level.FINE, "Ignoring corrupt catalog snapshot " + file, e);
+			return null;
+		}
+	}
+
+	private static byte[] encode(String source, List<Entry> entries) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + entries.size() * 256);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		writeString(out, source);
+		out.writeInt(entries.size());
+		for (Entry e : entries) {
+			writeString(out, e.id);
+			writeString(out, e.version);
+			writeString(out, e.url);
+			writeString(out, e.infoUrl != null ? e.infoUrl : "");
+			writeString(out, e.checksum != null ? e.checksum.algorithm() : "");
+			writeString(out, e.checksum != null ? e.checksum.value() : "");
+			out.writeLong(e.size);
+			out.writeInt(e.tags.size());
+			for (String tag : e.tags) {
+				writeString(out, tag);
+			}
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(b.length);
+		out.write(b);
+	}
+
+	private static String readString(ByteBuffer buf) {
+		int len = buf.getInt();
+		if (len < 0 || len > buf.remaining()) {
+			throw new IllegalArgumentException("Invalid string length " + len);
+		}
+		String s;
+		if (buf.hasArray()) {
+			s = new String(buf.array(), buf.arrayOffset() + buf.position(), len, StandardCharsets.UTF_8);
+			buf.position(buf.position() + len);
+		} else {
+			byte[] b = new byte[len];
+			buf.get(b);
+			s = new String(b, StandardCharsets.UTF_8);
+		}
+		return s;
+	}
+}
@@ -0,0 +1,137 @@
+package dev.jbang.devkitman.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * The expected checksum of a file, consisting of the name of the digest
+ * algorithm (as used by <code>MessageDigest</code>) and the value as a lowercase
+ * hex string.
+ */
+public class Checksum {
+	private final String algorithm;
+	private final String value;
+
+	public static final String SHA_256 = "SHA-256";
+	public static final String SHA_512 = "SHA-512";
+
+	public Checksum(@NonNull String algorithm, @NonNull String value) {
+		this.algorithm = algorithm;
+		this.value = value.trim().toLowerCase();
+	}
+
+	/**
+	 * Returns a checksum for the given type and value, where the type is a name
+	 * like "sha256" as commonly used by download sites. Returns <code>null</code>
+	 * if either the type or the value is missing or if the type is not supported.
+	 *
+	 * @param type  The type of checksum, e.g. "sha256" or "sha512"
+	 * @param value The checksum as a hex string
+	 * @return A checksum or <code>null</code>
+	 */
+	public static @Nullable Checksum of(@Nullable String type, @Nullable String value) {
+		if (type == null || value == null || value.trim().isEmpty()) {
+			return null;
+		}
+		switch (type.toLowerCase().replace("-", "")) {
+		case "sha256":
+			return new Checksum(SHA_256, value);
+		case "sha512":
+			return new Checksum(SHA_512, value);
+		case "sha1":
+			return new Checksum("SHA-1", value);
+		case "md5":
+			return new Checksum("MD5", value);
+		default:
+			return null;
+		}
+	}
+
+	@NonNull
+	public String algorithm() {
+		return algorithm;
+	}
+
+	@NonNull
+	public String value() {
+		return value;
+	}
+
+	public boolean isSha256() {
+		return SHA_256.equals(algorithm);
+	}
+
+	/**
+	 * Checks that the given digest, which must use the same algorithm as this
+	 * checksum, matches this checksum.
+	 *
+	 * @param digest The digest that was calculated for the file
+	 * @param file   The file the digest was calculated for, used for reporting
+	 * @throws IOException If the digest does not match
+	 */
+	public void verify(@NonNull String digest, @NonNull Path file) throws IOException {
+		if (!value.equalsIgnoreCase(digest)) {
+			throw new IOException("Checksum mismatch for " + file.getFileName() + ", expected " + algorithm + " "
+					+ value + " but got " + digest);
+		}
+	}
+
+	/**
+	 * Reads the given file to calculate its digest and checks that it matches this
+	 * checksum.
+	 *
+	 * @param file The file to check
+	 * @throws IOException If the file could not be read or the digest does not
+	 *                     match
+	 */
+	public void verify(@NonNull Path file) throws IOException {
+		verify(digest(file, algorithm), file);
+	}
+
+	@Override
+	public String toString() {
+		return algorithm + ":" + value;
+	}
+
+	/**
+	 * Reads the given file and returns its digest as a lowercase hex string
+	 */
+	@NonNull
+	public static String digest(@NonNull Path file, @NonNull String algorithm) throws IOException {
+		MessageDigest md = newDigest(algorithm);
+		byte[] buf = new byte[64 * 1024];
+		try (InputStream is = Files.newInputStream(file)) {
+			int n;
+			while ((n = is.read(buf)) != -1) {
+				md.update(buf, 0, n);
+			}
+		}
+		return toHex(md.digest());
+	}
+
+	@NonNull
+	public static MessageDigest newDigest(@NonNull String algorithm) {
+		try {
+			return MessageDigest.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@NonNull
+	public static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+			sb.append(Character.forDigit(b & 0xf, 16));
+		}
+		return sb.toString();
+	}
+}
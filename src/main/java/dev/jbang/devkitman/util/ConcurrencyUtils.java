@@ -0,0 +1,156 @@
+package dev.jbang.devkitman.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.jspecify.annotations.Nullable;
+
+public class ConcurrencyUtils {
+
+	/**
+	 * Creates an executor with at most <code>maxThreads</code> threads. The
+	 * threads are daemon threads, so a forgotten executor will never keep the JVM
+	 * from exiting, but callers should still shut it down when done. Idle threads
+	 * are stopped after a while, so long-lived executors don't keep threads around
+	 * that aren't being used.
+	 *
+	 * @param name       The prefix to use for the thread names
+	 * @param maxThreads The maximum number of threads
+	 * @return An executor service
+	 */
+	public static ExecutorService newBoundedExecutor(String name, int maxThreads) {
+		int n = Math.max(1, maxThreads);
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(n, n, 30, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), daemonThreadFactory(name));
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	public static ThreadFactory daemonThreadFactory(String name) {
+		AtomicInteger count = new AtomicInteger();
+		return r -> {
+			Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+	}
+
+	/**
+	 * Waits for the given future to complete and returns its result. Any
+	 * <code>IOException</code> or <code>RuntimeException</code> thrown by the
+	 * task is rethrown as-is.
+	 *
+	 * @param future The future to wait for
+	 * @return The result of the future
+	 * @throws IOException If the task threw an IOException or if the current
+	 *                     thread was interrupted while waiting
+	 */
+	public static <T> T await(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for task to complete");
+		}
+	}
+
+	/**
+	 * Runs all the given tasks concurrently and returns the result of the first
+	 * task, in list order, that returns a non-null value. This means the result is
+	 * exactly the same as when running the tasks one after the other and stopping
+	 * at the first non-null result. As soon as that result is known all tasks
+	 * later in the list are cancelled. If a task throws an exception before an
+	 * earlier task returned a result, that exception is rethrown.
+	 *
+	 * @param executor The executor to run the tasks on
+	 * @param tasks    The tasks to run, in order of priority
+	 * @return The first non-null result or <code>null</code>
+	 */
+	public static <T> @Nullable T firstNonNull(ExecutorService executor, List<? extends Supplier<T>> tasks) {
+		List<Future<T>> futures = new ArrayList<>(tasks.size());
+		try {
+			for (Supplier<T> task : tasks) {
+				futures.add(executor.submit(task::get));
+			}
+			for (Future<T> future : futures) {
+				T result = get(future);
+				if (result != null) {
+					return result;
+				}
+			}
+			return null;
+		} finally {
+			for (Future<T> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Runs all the given tasks concurrently and returns their results in the same
+	 * order as the tasks. If any of the tasks throws an exception the remaining
+	 * tasks are cancelled and the exception is rethrown.
+	 *
+	 * @param executor The executor to run the tasks on
+	 * @param tasks    The tasks to run
+	 * @return The list of results
+	 */
+	public static <T> List<T> all(ExecutorService executor, List<? extends Supplier<T>> tasks) {
+		List<Future<T>> futures = new ArrayList<>(tasks.size());
+		try {
+			for (Supplier<T> task : tasks) {
+				futures.add(executor.submit(task::get));
+			}
+			List<T> results = new ArrayList<>(futures.size());
+			for (Future<T> future : futures) {
+				results.add(get(future));
+			}
+			return results;
+		} finally {
+			for (Future<T> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Waits for the given future to complete and returns its result. Any
+	 * <code>RuntimeException</code> or <code>Error</code> thrown by the task is
+	 * rethrown as-is, other exceptions are wrapped in an
+	 * <code>IllegalStateException</code>.
+	 *
+	 * @param future The future to wait for
+	 * @return The result of the future
+	 */
+	public static <T> T get(Future<T> future) {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for task to complete", e);
+		}
+	}
+}
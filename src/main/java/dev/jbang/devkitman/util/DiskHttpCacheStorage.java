@@ -0,0 +1,715 @@
+package dev.jbang.devkitman.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import org.apache.hc.client5.http.cache.HttpCacheCASOperation;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheStorage;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.apache.hc.core5.http.message.HeaderGroup;
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * An <code>HttpCacheStorage</code> that keeps its entries on disk, in a form
+ * that is cheap to read and safe to share between threads and processes.
+ *
+ * <p>
+ * Each entry consists of two files, named after the SHA-256 of the cache key:
+ *
+ * <pre>
+ * &lt;sha256&gt;.entry         (the request/response metadata, see below)
+ * &lt;sha256&gt;.&lt;id&gt;.body     (the raw response body)
+ * </pre>
+ *
+ * The entry file is a small binary header map: a magic number and version, the
+ * full cache key, request and response dates, method, URI, status, the request
+ * and response headers, the variant keys and finally the name and length of the
+ * body file. The body is stored as-is so it can be read without any decoding.
+ * Both files are written to a temporary file first and then renamed, and a
+ * body never gets overwritten (a new body gets a new id), so readers never see
+ * partially written entries, not even from other processes. A replaced body is
+ * kept until compaction finds the entry that replaced it older than a grace
+ * period, so readers that still hold the previous entry can finish reading it.
+ *
+ * <p>
+ * Reads don't take any locks. Writes to the same key are serialized within the
+ * JVM using a fixed set of striped locks, so writes to different keys can
+ * happen concurrently.
+ *
+ * <p>
+ * The size of the cache is bounded by a maximum number of bytes and entries.
+ * The size and last access time of each entry are kept in a persistent index
+ * (see <code>HttpCacheIndex</code>) and whenever the cache was changed a
+ * compaction runs in the background that evicts the least recently used
+ * entries until the cache is within its budget again. Compaction also removes
+ * files left behind by interrupted writes and by older versions of the cache,
+ * which is why the cache needs a folder of its own.
+ */
+public class DiskHttpCacheStorage implements HttpCacheStorage {
+	private static final int MAGIC = 0x444b4843; // "DKHC"
+	private static final int VERSION = 1;
+	private static final int LOCK_STRIPES = 64;
+	static final String ENTRY_SUFFIX = ".entry";
+	static final String BODY_SUFFIX = ".body";
+	private static final String TMP_SUFFIX = ".tmp";
+	private static final String LEGACY_SUFFIX = ".cache";
+	// The names of the files written by FileHttpCacheStorage
+	private static final Pattern LEGACY_NAME = Pattern.compile("(https?_[a-zA-Z0-9_-]*_)?[0-9a-f]{1,8}\\.cache");
+
+	public static final long DEFAULT_MAX_BYTES = 100L * 1024 * 1024;
+	public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+	/**
+	 * When only reading, a compaction is started at most this often to save the
+	 * updated access times
+	 */
+	private static final long COMPACTION_INTERVAL_MILLIS = 60_000;
+
+	/**
+	 * Files that don't belong to any entry are only removed after this long, so
+	 * writes that are still in progress aren't affected
+	 */
+	private static final long ORPHAN_GRACE_MILLIS = 60_000;
+
+	private final Path cacheDir;
+	private final long maxBytes;
+	private final int maxEntries;
+	private final HttpCacheIndex index;
+	private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+	private final AtomicBoolean compactionPending = new AtomicBoolean();
+	private volatile long lastCompaction;
+	private volatile ExecutorService executor;
+	private volatile ExecutorService compactor;
+
+	private static final Logger LOGGER = Logger.getLogger(DiskHttpCacheStorage.class.getName());
+
+	public DiskHttpCacheStorage(@NonNull Path cacheDir) {
+		this(cacheDir, DEFAULT_MAX_BYTES, DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * Creates a new storage
+	 *
+	 * @param cacheDir   The folder to store the entries in
+	 * @param maxBytes   The maximum total size of all entries
+	 * @param maxEntries The maximum number of entries
+	 */
+	public DiskHttpCacheStorage(@NonNull Path cacheDir, long maxBytes, int maxEntries) {
+		if (maxBytes < 1 || maxEntries < 1) {
+			throw new IllegalArgumentException("HTTP cache size and number of entries must be at least 1");
+		}
+		this.cacheDir = cacheDir;
+		this.maxBytes = maxBytes;
+		this.maxEntries = maxEntries;
+		this.index = new HttpCacheIndex(cacheDir.resolve(HttpCacheIndex.FILE_NAME));
+		for (int i = 0; i < locks.length; i++) {
+			locks[i] = new ReentrantLock();
+		}
+	}
+
+	@NonNull
+	public Path cacheDir() {
+		return cacheDir;
+	}
+
+	public long maxBytes() {
+		return maxBytes;
+	}
+
+	public int maxEntries() {
+		return maxEntries;
+	}
+
+	@Override
+	public void putEntry(String key, HttpCacheEntry entry) throws ResourceIOException {
+		String name = fileName(key);
+		ReentrantLock lock = lock(name);
+		lock.lock();
+		try {
+			write(key, name, entry);
+		} finally {
+			lock.unlock();
+		}
+		scheduleCompaction();
+	}
+
+	@Override
+	public HttpCacheEntry getEntry(String key) throws ResourceIOException {
+		StoredEntry stored = read(key, fileName(key));
+		return stored != null ? stored.entry : null;
+	}
+
+	@Override
+	public void removeEntry(String key) throws ResourceIOException {
+		String name = fileName(key);
+		ReentrantLock lock = lock(name);
+		lock.lock();
+		try {
+			if (Files.deleteIfExists(entryFile(name))) {
+				try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDir, name + "*" + BODY_SUFFIX)) {
+					for (Path file : files) {
+						deleteQuietly(file);
+					}
+				}
+			}
+			index.remove(name);
+		} catch (IOException e) {
+			throw new ResourceIOException("Failed to remove cache entry", e);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void updateEntry(String key, HttpCacheCASOperation operation) throws ResourceIOException {
+		String name = fileName(key);
+		ReentrantLock lock = lock(name);
+		lock.lock();
+		try {
+			HttpCacheEntry updated = operation.execute(getEntry(key));
+			if (updated != null) {
+				write(key, name, updated);
+			}
+		} finally {
+			lock.unlock();
+		}
+		scheduleCompaction();
+	}
+
+	/**
+	 * Reads the entries for the given keys, using several threads when there is
+	 * more than one key
+	 */
+	@Override
+	public Map<String, HttpCacheEntry> getEntries(Collection<String> keys) throws ResourceIOException {
+		Map<String, HttpCacheEntry> result = new HashMap<>();
+		if (keys.size() <= 1) {
+			for (String key : keys) {
+				HttpCacheEntry entry = getEntry(key);
+				if (entry != null) {
+					result.put(key, entry);
+				}
+			}
+			return result;
+		}
+		Map<String, Future<StoredEntry>> futures = new LinkedHashMap<>();
+		try {
+			for (String key : keys) {
+				futures.put(key, executor().submit(() -> read(key, fileName(key))));
+			}
+			for (Map.Entry<String, Future<StoredEntry>> f : futures.entrySet()) {
+				StoredEntry stored = ConcurrencyUtils.await(f.getValue());
+				if (stored != null) {
+					result.put(f.getKey(), stored.entry);
+				}
+			}
+		} catch (ResourceIOException e) {
+			throw e;
+		} catch (IOException e) {
+			throw new ResourceIOException("Failed to read cache entries", e);
+		} finally {
+			for (Future<StoredEntry> f : futures.values()) {
+				f.cancel(true);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Brings the cache within its budget by evicting the least recently used
+	 * entries, removes left-over files and saves the index. This normally happens
+	 * automatically in the background.
+	 *
+	 * @throws IOException If the cache folder could not be read or the index
+	 *                     could not be saved
+	 */
+	public synchronized void compact() throws IOException {
+		lastCompaction = System.currentTimeMillis();
+		if (!Files.isDirectory(cacheDir)) {
+			return;
+		}
+		index.load();
+
+		// Find out which entries actually exist and how large they are
+		long now = System.currentTimeMillis();
+		Map<String, List<Path>> entryFiles = new HashMap<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDir)) {
+			for (Path file : files) {
+				String fileName = file.getFileName().toString();
+				if (fileName.endsWith(LEGACY_SUFFIX)) {
+					// Written by FileHttpCacheStorage
+					deleteQuietly(file);
+				} else if (fileName.endsWith(TMP_SUFFIX)) {
+					if (isOlderThan(file, now - ORPHAN_GRACE_MILLIS)) {
+						deleteQuietly(file);
+					}
+				} else if (fileName.length() > 64 && HttpCacheIndex.isName(fileName.substring(0, 64))) {
+					entryFiles.computeIfAbsent(fileName.substring(0, 64), n -> new ArrayList<>()).add(file);
+				}
+			}
+		}
+		for (HttpCacheIndex.Record r : new ArrayList<>(index.records())) {
+			if (!entryFiles.containsKey(r.name)) {
+				index.remove(r.name);
+			}
+		}
+		for (Map.Entry<String, List<Path>> e : entryFiles.entrySet()) {
+			String name = e.getKey();
+			Path entryFile = entryFile(name);
+			if (!e.getValue().contains(entryFile)) {
+				removeOrphans(name, null, now);
+				continue;
+			}
+			// Replaced bodies are only removed once the entry that replaced them is
+			// older than the grace period, so readers had time to finish with them
+			if (e.getValue().size() > 2 && isOlderThan(entryFile, now - ORPHAN_GRACE_MILLIS)) {
+				StoredEntry stored = readQuietly(null, name);
+				removeOrphans(name, stored != null ? stored.bodyName : null, now);
+			}
+			long size = 0;
+			for (Path file : e.getValue()) {
+				size += sizeOf(file);
+			}
+			index.found(name, size, lastModified(entryFile));
+		}
+
+		// Evict the least recently used entries until we're within budget
+		List<HttpCacheIndex.Record> records = new ArrayList<>(index.records());
+		records.sort(Comparator.comparingLong(r -> r.lastAccess));
+		long total = 0;
+		for (HttpCacheIndex.Record r : records) {
+			total += Math.max(0, r.size);
+		}
+		int count = records.size();
+		for (HttpCacheIndex.Record r : records) {
+			if (total <= maxBytes && count <= maxEntries) {
+				break;
+			}
+			LOGGER.log(Level.FINE, "Evicting HTTP cache entry {0}", r.name);
+			evict(r.name);
+			total -= Math.max(0, r.size);
+			count--;
+		}
+		index.save();
+	}
+
+	private void scheduleCompaction() {
+		if (compactionPending.compareAndSet(false, true)) {
+			compactor().execute(() -> {
+				compactionPending.set(false);
+				try {
+					compact();
+				} catch (IOException | RuntimeException e) {
+					LOGGER.log(Level.FINE, "Couldn't compact HTTP cache " + cacheDir, e);
+				}
+			});
+		}
+	}
+
+	private void evict(String name) throws IOException {
+		ReentrantLock lock = lock(name);
+		lock.lock();
+		try {
+			Files.deleteIfExists(entryFile(name));
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDir, name + "*")) {
+				for (Path file : files) {
+					deleteQuietly(file);
+				}
+			}
+			index.remove(name);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the body files of the given entry that aren't in use, as long as
+	 * they are older than the grace period
+	 */
+	private void removeOrphans(String name, @Nullable String bodyName, long now) throws IOException {
+		ReentrantLock lock = lock(name);
+		lock.lock();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDir, name + "*" + BODY_SUFFIX)) {
+			for (Path file : files) {
+				if (!file.getFileName().toString().equals(bodyName)
+						&& isOlderThan(file, now - ORPHAN_GRACE_MILLIS)) {
+					deleteQuietly(file);
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private ExecutorService executor() {
+		if (executor == null) {
+			synchronized (locks) {
+				if (executor == null) {
+					executor = ConcurrencyUtils.newBoundedExecutor("http-cache-read",
+							Math.min(8, Runtime.getRuntime().availableProcessors()));
+				}
+			}
+		}
+		return executor;
+	}
+
+	private ExecutorService compactor() {
+		if (compactor == null) {
+			synchronized (locks) {
+				if (compactor == null) {
+					compactor = ConcurrencyUtils.newBoundedExecutor("http-cache-compact", 1);
+				}
+			}
+		}
+		return compactor;
+	}
+
+	private ReentrantLock lock(String name) {
+		return locks[(name.hashCode() & Integer.MAX_VALUE) % locks.length];
+	}
+
+	Path entryFile(String name) {
+		return cacheDir.resolve(name + ENTRY_SUFFIX);
+	}
+
+	/**
+	 * Returns the name used for the files of the entry with the given key, which
+	 * is the SHA-256 of the key
+	 */
+	static String fileName(String key) {
+		return Checksum.toHex(
+				Checksum.newDigest(Checksum.SHA_256).digest(key.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private void write(String key, String name, HttpCacheEntry entry) throws ResourceIOException {
+		try {
+			Files.createDirectories(cacheDir);
+			String bodyName = writeBody(name, entry.getResource());
+			byte[] header = encode(key, entry, bodyName);
+			Path entryFile = entryFile(name);
+			Path tmp = Files.createTempFile(cacheDir, entryFile.getFileName().toString(), TMP_SUFFIX);
+			try {
+				Files.write(tmp, header);
+				moveAtomically(tmp, entryFile);
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+			// A replaced body is left for compaction to remove, because readers that
+			// got the previous entry (maybe in another process) might still need it
+			long bodySize = entry.getResource() != null ? entry.getResource().length() : 0;
+			index.update(name, header.length + bodySize);
+		} catch (ResourceIOException e) {
+			throw e;
+		} catch (IOException e) {
+			throw new ResourceIOException("Failed to write cache entry", e);
+		}
+	}
+
+	/**
+	 * Stores the given body in a new file and returns its name. When the body
+	 * already is one of our files, for example because an entry only got its
+	 * headers updated after revalidation, the existing file is used as-is.
+	 */
+	@Nullable
+	private String writeBody(String name, @Nullable Resource resource) throws IOException {
+		if (resource == null) {
+			return null;
+		}
+		if (resource instanceof BodyResource) {
+			Path existing = ((BodyResource) resource).path();
+			if (cacheDir.equals(existing.getParent()) && existing.getFileName().toString().startsWith(name)
+					&& Files.isRegularFile(existing)) {
+				return existing.getFileName().toString();
+			}
+		}
+		String bodyName = name + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + BODY_SUFFIX;
+		Path tmp = Files.createTempFile(cacheDir, bodyName, TMP_SUFFIX);
+		try {
+			try (InputStream in = resource.getInputStream()) {
+				Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+			}
+			moveAtomically(tmp, cacheDir.resolve(bodyName));
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+		return bodyName;
+	}
+
+	/**
+	 * Reads the entry with the given name, checking that it's for the given key
+	 * (if any)
+	 */
+	@Nullable
+	private StoredEntry read(@Nullable String key, String name) throws ResourceIOException {
+		byte[] data;
+		try {
+			data = Files.readAllBytes(entryFile(name));
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			throw new ResourceIOException("Failed to read cache entry", e);
+		}
+		StoredEntry stored;
+		try {
+			stored = decode(key, data);
+		} catch (IOException e) {
+			throw new ResourceIOException("Failed to read cache entry", e);
+		}
+		if (stored != null && key != null) {
+			index.touch(name);
+			if (System.currentTimeMillis() - lastCompaction > COMPACTION_INTERVAL_MILLIS) {
+				scheduleCompaction();
+			}
+		}
+		return stored;
+	}
+
+	@Nullable
+	private StoredEntry readQuietly(@Nullable String key, String name) {
+		try {
+			return read(key, name);
+		} catch (ResourceIOException e) {
+			LOGGER.log(Level.FINE, "Ignoring unreadable cache entry " + entryFile(name), e);
+			return null;
+		}
+	}
+
+	private static boolean isOlderThan(Path file, long millis) {
+		return lastModified(file) < millis;
+	}
+
+	private static long lastModified(Path file) {
+		try {
+			return Files.getLastModifiedTime(file).toMillis();
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	private static long sizeOf(Path file) {
+		try {
+			return Files.size(file);
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	private byte[] encode(String key, HttpCacheEntry entry, @Nullable String bodyName) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		writeString(out, key);
+		out.writeLong(entry.getRequestInstant().toEpochMilli());
+		out.writeLong(entry.getResponseInstant().toEpochMilli());
+		writeString(out, entry.getRequestMethod());
+		writeString(out, entry.getRequestURI());
+		out.writeInt(entry.getStatus());
+		List<Header> requestHeaders = new ArrayList<>();
+		entry.requestHeaderIterator().forEachRemaining(requestHeaders::add);
+		writeHeaders(out, requestHeaders);
+		writeHeaders(out, Arrays.asList(entry.getHeaders()));
+		Set<String> variants = entry.getVariants();
+		out.writeInt(variants.size());
+		for (String variant : variants) {
+			writeString(out, variant);
+		}
+		writeString(out, bodyName != null ? bodyName : "");
+		out.writeLong(entry.getResource() != null ? entry.getResource().length() : -1);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	@Nullable
+	private StoredEntry decode(@Nullable String key, byte[] data) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		if (data.length < 5 || in.readInt() != MAGIC || in.readByte() != VERSION) {
+			// Not written by us, or by an incompatible version
+			return null;
+		}
+		String storedKey = readString(in);
+		if (key != null && !key.equals(storedKey)) {
+			return null;
+		}
+		Instant requestDate = Instant.ofEpochMilli(in.readLong());
+		Instant responseDate = Instant.ofEpochMilli(in.readLong());
+		String method = readString(in);
+		String requestUri = readString(in);
+		int status = in.readInt();
+		HeaderGroup requestHeaders = readHeaders(in);
+		HeaderGroup responseHeaders = readHeaders(in);
+		int variantCount = in.readInt();
+		Set<String> variants = new HashSet<>(variantCount * 2);
+		for (int i = 0; i < variantCount; i++) {
+			variants.add(readString(in));
+		}
+		String bodyName = readString(in);
+		long bodyLength = in.readLong();
+		Resource resource = null;
+		if (!bodyName.isEmpty()) {
+			resource = new BodyResource(cacheDir.resolve(bodyName), bodyLength);
+		}
+		HttpCacheEntry entry = new HttpCacheEntry(requestDate, responseDate, method, requestUri, requestHeaders,
+				status, responseHeaders, resource, variants);
+		return new StoredEntry(entry, bodyName.isEmpty() ? null : bodyName);
+	}
+
+	private static void writeHeaders(DataOutputStream out, List<Header> headers) throws IOException {
+		out.writeInt(headers.size());
+		for (Header header : headers) {
+			writeString(out, header.getName());
+			writeString(out, header.getValue() != null ? header.getValue() : "");
+		}
+	}
+
+	private static HeaderGroup readHeaders(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		HeaderGroup headers = new HeaderGroup();
+		for (int i = 0; i < count; i++) {
+			headers.addHeader(new BasicHeader(readString(in), readString(in)));
+		}
+		return headers;
+	}
+
+	// Unlike writeUTF() this has no 64K limit
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(b.length);
+		out.write(b);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int len = in.readInt();
+		if (len < 0 || len > in.available()) {
+			throw new EOFException("Corrupt cache entry");
+		}
+		byte[] b = new byte[len];
+		in.readFully(b);
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+	private static void moveAtomically(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Removes the entries that older versions of the cache stored in the given
+	 * folder. Only files with the names those versions used are removed, other
+	 * files in the folder are left alone.
+	 *
+	 * @param dir The folder that older versions used as their cache folder
+	 */
+	public static void removeLegacyEntries(@NonNull Path dir) {
+		if (!Files.isDirectory(dir)) {
+			return;
+		}
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + LEGACY_SUFFIX)) {
+			for (Path file : files) {
+				if (LEGACY_NAME.matcher(file.getFileName().toString()).matches() && Files.isRegularFile(file)) {
+					deleteQuietly(file);
+				}
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Couldn't remove old HTTP cache files from " + dir, e);
+		}
+	}
+
+	private static void deleteQuietly(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			// Might still be in use (on Windows), it will be overwritten or removed later
+			LOGGER.log(Level.FINE, "Couldn't delete cache file " + file, e);
+		}
+	}
+
+	private static class StoredEntry {
+		final HttpCacheEntry entry;
+		final @Nullable String bodyName;
+
+		StoredEntry(HttpCacheEntry entry, @Nullable String bodyName) {
+			this.entry = entry;
+			this.bodyName = bodyName;
+		}
+	}
+
+	/**
+	 * A response body that is read from its file only when it's needed. The file
+	 * is owned by the storage, so disposing of the resource does nothing.
+	 */
+	static class BodyResource extends Resource {
+		private static final long serialVersionUID = 1L;
+
+		private final String path;
+		private final long length;
+
+		BodyResource(Path path, long length) {
+			this.path = path.toString();
+			this.length = length;
+		}
+
+		Path path() {
+			return Paths.get(path);
+		}
+
+		@Override
+		public InputStream getInputStream() throws ResourceIOException {
+			try {
+				return Files.newInputStream(path());
+			} catch (IOException e) {
+				throw new ResourceIOException("Failed to read cached body", e);
+			}
+		}
+
+		@Override
+		public byte[] get() throws ResourceIOException {
+			try (FileChannel ch = FileChannel.open(path(), StandardOpenOption.READ)) {
+				long size = ch.size();
+				if (size > Integer.MAX_VALUE) {
+					throw new ResourceIOException("Cached body too large: " + path);
+				}
+				byte[] data = new byte[(int) size];
+				ByteBuffer buf = ByteBuffer.wrap(data);
+				while (buf.hasRemaining() && ch.read(buf) >= 0) {
+					// keep reading
+				}
+				return data;
+			} catch (ResourceIOException e) {
+				throw e;
+			} catch (IOException e) {
+				throw new ResourceIOException("Failed to read cached body", e);
+			}
+		}
+
+		@Override
+		public long length() {
+			return length;
+		}
+
+		@Override
+		public void dispose() {
+		}
+	}
+}
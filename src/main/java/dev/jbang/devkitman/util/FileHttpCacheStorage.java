@@ -12,6 +12,12 @@ import org.apache.hc.client5.http.cache.HttpCacheEntry;
 import org.apache.hc.client5.http.cache.HttpCacheStorage;
 import org.apache.hc.client5.http.cache.ResourceIOException;
 
+/**
+ * @deprecated Use <code>DiskHttpCacheStorage</code> instead, which doesn't
+ *             serialize all access behind a single lock and doesn't use Java
+ *             serialization.
+ */
+@Deprecated
 public class FileHttpCacheStorage implements HttpCacheStorage {
 
 	private final Path cacheDir;
@@ -0,0 +1,191 @@
+package dev.jbang.devkitman.util;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jspecify.annotations.NonNull;
+
+/**
+ * The index of a <code>DiskHttpCacheStorage</code>, recording the size and
+ * last access time of each entry so the least recently used entries can be
+ * evicted. Entries are identified by the SHA-256 of their full cache key. The
+ * index is kept in memory and saved to a file with fixed size records:
+ *
+ * <pre>
+ * int   magic "DKHI"
+ * byte  version
+ * int   number of records
+ * per record:
+ *   32 bytes  SHA-256 of the cache key
+ *   long      total size of the entry's files in bytes
+ *   long      last access time in milliseconds
+ * </pre>
+ *
+ * When loading the file it gets merged with what's in memory, keeping the most
+ * recent access times, so processes sharing a cache folder don't lose each
+ * other's updates.
+ */
+class HttpCacheIndex {
+	static final String FILE_NAME = "index";
+	private static final int MAGIC = 0x444b4849; // "DKHI"
+	private static final int VERSION = 1;
+	private static final int DIGEST_LENGTH = 32;
+
+	private final Path file;
+	private final ConcurrentHashMap<String, Record> records = new ConcurrentHashMap<>();
+	private final AtomicLong clock = new AtomicLong();
+
+	private static final Logger LOGGER = Logger.getLogger(HttpCacheIndex.class.getName());
+
+	static class Record {
+		final String name;
+		volatile long size;
+		volatile long lastAccess;
+
+		Record(String name, long size, long lastAccess) {
+			this.name = name;
+			this.size = size;
+			this.lastAccess = lastAccess;
+		}
+	}
+
+	HttpCacheIndex(@NonNull Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * Records that the entry with the given name was just used
+	 */
+	void touch(@NonNull String name) {
+		long now = now();
+		Record r = records.get(name);
+		if (r != null) {
+			r.lastAccess = now;
+		} else {
+			records.putIfAbsent(name, new Record(name, -1, now));
+		}
+	}
+
+	/**
+	 * Records that the entry with the given name was just written
+	 */
+	void update(@NonNull String name, long size) {
+		records.put(name, new Record(name, size, now()));
+	}
+
+	/**
+	 * Records the size of an entry found on disk, using the given access time if
+	 * the entry wasn't known yet
+	 */
+	void found(@NonNull String name, long size, long lastAccess) {
+		Record r = records.computeIfAbsent(name, n -> new Record(n, size, lastAccess));
+		r.size = size;
+	}
+
+	void remove(@NonNull String name) {
+		records.remove(name);
+	}
+
+	@NonNull
+	Collection<Record> records() {
+		return records.values();
+	}
+
+	/**
+	 * Returns an ever increasing timestamp, so entries used right after one
+	 * another always have a different access time
+	 */
+	private long now() {
+		return clock.updateAndGet(prev -> Math.max(prev + 1, System.currentTimeMillis()));
+	}
+
+	/**
+	 * Merges the index file, if any, into the records in memory
+	 */
+	void load() {
+		byte[] data;
+		try {
+			data = Files.readAllBytes(file);
+		} catch (NoSuchFileException e) {
+			return;
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Couldn't read HTTP cache index " + file, e);
+			return;
+		}
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+			if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+				return;
+			}
+			int count = in.readInt();
+			byte[] digest = new byte[DIGEST_LENGTH];
+			for (int i = 0; i < count; i++) {
+				in.readFully(digest);
+				long size = in.readLong();
+				long lastAccess = in.readLong();
+				Record r = records.computeIfAbsent(Checksum.toHex(digest), n -> new Record(n, size, lastAccess));
+				if (lastAccess > r.lastAccess) {
+					r.lastAccess = lastAccess;
+				}
+				clock.accumulateAndGet(lastAccess, Math::max);
+			}
+		} catch (IOException e) {
+			// A truncated or otherwise corrupt index only means some access times are lost
+			LOGGER.log(Level.FINE, "Ignoring corrupt HTTP cache index " + file, e);
+		}
+	}
+
+	/**
+	 * Writes the records to the index file, atomically replacing the old one
+	 */
+	void save() throws IOException {
+		Record[] snapshot = records.values().toArray(new Record[0]);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(9 + snapshot.length * (DIGEST_LENGTH + 16));
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeInt(snapshot.length);
+		for (Record r : snapshot) {
+			out.write(fromHex(r.name));
+			out.writeLong(r.size);
+			out.writeLong(r.lastAccess);
+		}
+		out.flush();
+		Files.createDirectories(file.getParent());
+		Path tmp = Files.createTempFile(file.getParent(), FILE_NAME, ".tmp");
+		try {
+			Files.write(tmp, bytes.toByteArray());
+			try {
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	static boolean isName(String s) {
+		if (s.length() != DIGEST_LENGTH * 2) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			if (Character.digit(s.charAt(i), 16) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static byte[] fromHex(String hex) {
+		byte[] b = new byte[hex.length() / 2];
+		for (int i = 0; i < b.length; i++) {
+			b[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+		}
+		return b;
+	}
+}
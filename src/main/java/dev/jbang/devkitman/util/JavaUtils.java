@@ -8,6 +8,9 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Optional;
 import java.util.function.Predicate;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -22,6 +25,17 @@ public class JavaUtils {
 
 	private static final Logger LOGGER = Logger.getLogger(JavaUtils.class.getName());
 
+	/**
+	 * The maximum time in milliseconds we'll wait for <code>java -version</code>
+	 * to return the version of a JDK
+	 */
+	public static final long JAVA_VERSION_COMMAND_TIMEOUT_MS = 10000;
+
+	// The jar files, relative to the JDK's home, whose manifest contains the
+	// runtime's version: lib/jrt-fs.jar for Java 9+ and rt.jar for Java 8 and
+	// older (found in the jre folder for JDKs)
+	private static final String[] RUNTIME_JARS = { "lib/jrt-fs.jar", "jre/lib/rt.jar", "lib/rt.jar" };
+
 	public static boolean isRequestedVersion(String rv) {
 		return rv.matches("\\d+[+]?");
 	}
@@ -36,9 +50,7 @@ public class JavaUtils {
 
 	public static int parseJavaVersion(String version) {
 		if (version != null) {
-			String[] nums = version.split("[-.+]");
-			String num = nums.length > 1 && nums[0].equals("1") ? nums[1] : nums[0];
-			return parseToInt(num, 0);
+			return JavaVersion.parse(version).major();
 		}
 		return 0;
 	}
@@ -59,11 +71,7 @@ public class JavaUtils {
 	}
 
 	public static Optional<String> resolveJavaVersionStringFromPath(@NonNull Path home) {
-		Optional<String> res = readJavaVersionStringFromReleaseFile(home);
-		if (!res.isPresent()) {
-			res = readJavaVersionStringFromJavaCommand(home);
-		}
-		return res;
+		return new JdkHomeProbe(home).javaVersion();
 	}
 
 	public static Optional<String> readJavaVersionStringFromReleaseFile(@NonNull Path home) {
@@ -86,11 +94,41 @@ public class JavaUtils {
 		}
 	}
 
+	/**
+	 * Determines the Java version by looking at the <code>Implementation-Version</code>
+	 * in the manifest of one of the runtime's own jar files. This is much cheaper
+	 * than running <code>java -version</code> for JDKs that have no
+	 * <code>release</code> file, like many older Java 8 distributions.
+	 *
+	 * @param home The JDK's home folder
+	 * @return The version string or an empty <code>Optional</code>
+	 */
+	public static Optional<String> readJavaVersionStringFromRuntimeJars(@NonNull Path home) {
+		for (String jar : RUNTIME_JARS) {
+			Path jarPath = home.resolve(jar);
+			if (!Files.isRegularFile(jarPath)) {
+				continue;
+			}
+			try (JarFile jarFile = new JarFile(jarPath.toFile(), false)) {
+				Manifest manifest = jarFile.getManifest();
+				if (manifest != null) {
+					String version = manifest.getMainAttributes().getValue(Attributes.Name.IMPLEMENTATION_VERSION);
+					if (version != null && parseJavaVersion(version.trim()) > 0) {
+						return Optional.of(version.trim());
+					}
+				}
+			} catch (IOException e) {
+				LOGGER.log(Level.FINE, "Unable to read manifest of: " + jarPath, e);
+			}
+		}
+		return Optional.empty();
+	}
+
 	public static Optional<String> readJavaVersionStringFromJavaCommand(@NonNull Path home) {
 		Optional<String> res;
 		Path javaCmd = OsUtils.searchPath("java", home.resolve("bin").toString());
 		if (javaCmd != null) {
-			String output = OsUtils.runCommand(javaCmd.toString(), "-version");
+			String output = OsUtils.runCommand(JAVA_VERSION_COMMAND_TIMEOUT_MS, javaCmd.toString(), "-version");
 			res = Optional.ofNullable(parseJavaOutput(output));
 		} else {
 			res = Optional.empty();
@@ -172,6 +210,40 @@ public class JavaUtils {
 	}
 
 	public static void installJdk(Path jdkPkg, Path jdkDir) throws IOException {
+		installJdk(jdkPkg, jdkDir, JdkProfile.full);
+	}
+
+	/**
+	 * Installs a JDK, only unpacking the parts of it that belong to the given
+	 * profile. The profile gets recorded in the installed JDK.
+	 *
+	 * @param jdkPkg  The JDK archive to install
+	 * @param jdkDir  The folder to install the JDK to
+	 * @param profile The parts of the JDK to install
+	 * @throws IOException If the JDK could not be installed
+	 */
+	public static void installJdk(Path jdkPkg, Path jdkDir, JdkProfile profile) throws IOException {
+		installJdk(jdkDir, profile, tmpDir -> {
+			UnpackUtils.unpackJdk(jdkPkg, tmpDir, profile);
+			return null;
+		});
+	}
+
+	/**
+	 * Installs a JDK just like <code>installJdk(jdkPkg, jdkDir, profile)</code>,
+	 * but leaves the unpacking to the given function, which gets passed the
+	 * temporary folder to unpack the JDK to. This way the JDK can be unpacked
+	 * while it is still being downloaded. The function is responsible for only
+	 * unpacking the parts that belong to the profile. The JDK only gets moved to
+	 * its final location after the function has returned successfully.
+	 *
+	 * @param jdkDir   The folder to install the JDK to
+	 * @param profile  The profile to record in the installed JDK
+	 * @param unpacker The function that unpacks the JDK to the given folder
+	 * @throws IOException If the JDK could not be installed
+	 */
+	public static void installJdk(Path jdkDir, JdkProfile profile, FunctionWithError<Path, ?> unpacker)
+			throws IOException {
 		Path jdkTmpDir = jdkDir.getParent().resolve(jdkDir.getFileName() + ".tmp");
 		Path jdkOldDir = jdkDir.getParent().resolve(jdkDir.getFileName() + ".old");
 		FileUtils.deletePath(jdkTmpDir);
@@ -179,12 +251,13 @@ public class JavaUtils {
 		try {
 			LOGGER.log(Level.FINE, "Unpacking to {0}", jdkDir);
 			// Unpack JDK package to temp dir
-			UnpackUtils.unpackJdk(jdkPkg, jdkTmpDir);
+			unpacker.apply(jdkTmpDir);
 			// Check if the package contains a valid JDK
 			Optional<String> v = JavaUtils.resolveJavaVersionStringFromPath(jdkTmpDir);
 			if (!v.isPresent()) {
 				throw new IllegalStateException("The JDK package does not seem to contain a valid JDK");
 			}
+			profile.record(jdkTmpDir);
 			if (Files.isDirectory(jdkDir)) {
 				// Rename existing JDK dir to have an .old extension
 				Files.move(jdkDir, jdkOldDir);
@@ -0,0 +1,211 @@
+package dev.jbang.devkitman.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * An immutable, pre-parsed Java version string. Parsing happens once, when the
+ * object is created, after which comparisons only involve integer arithmetic
+ * (except for the rare case where two non-numeric parts need to be compared).
+ *
+ * <p>
+ * Versions are split into parts on '.', '-' and '+' and are ordered exactly
+ * like {@link VersionComparator} orders version strings. The accessors for the
+ * feature, interim, update and patch numbers, the pre-release identifier and
+ * the build number follow JEP 322 and also understand the legacy
+ * <code>1.8.0_392</code> style.
+ */
+public final class JavaVersion implements Comparable<JavaVersion> {
+	private final String version;
+	private final String[] parts;
+	// The numeric value of each part, -1 for parts that are not numbers
+	private final int[] numbers;
+	private final int major;
+
+	// Values for parts of the version that don't exist, so that "17" < "17.0"
+	private static final int MISSING = -2;
+	private static final int NOT_A_NUMBER = -1;
+
+	private JavaVersion(String version) {
+		this.version = version;
+		List<String> ps = new ArrayList<>();
+		int start = 0;
+		for (int i = 0; i <= version.length(); i++) {
+			if (i == version.length() || isSeparator(version.charAt(i))) {
+				ps.add(version.substring(start, i));
+				start = i + 1;
+			}
+		}
+		// Same as String.split(), trailing empty parts are dropped
+		while (ps.size() > 1 && ps.get(ps.size() - 1).isEmpty()) {
+			ps.remove(ps.size() - 1);
+		}
+		this.parts = ps.toArray(new String[0]);
+		this.numbers = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			numbers[i] = toInt(parts[i]);
+		}
+		String num = parts.length > 1 && parts[0].equals("1") ? parts[1] : parts[0];
+		this.major = Math.max(toInt(num), 0);
+	}
+
+	/**
+	 * Parses the given version string
+	 *
+	 * @param version The version string to parse
+	 * @return A <code>JavaVersion</code> object
+	 */
+	@NonNull
+	public static JavaVersion parse(@NonNull String version) {
+		return new JavaVersion(version);
+	}
+
+	/**
+	 * Returns the major version, which is the same as the feature number. For
+	 * legacy versions like <code>1.8.0_392</code> this returns 8.
+	 */
+	public int major() {
+		return major;
+	}
+
+	public int feature() {
+		return major;
+	}
+
+	public int interim() {
+		return versionNumber(1);
+	}
+
+	public int update() {
+		if (isLegacy()) {
+			// 1.8.0_392
+			String last = versionPart(2);
+			int idx = last != null ? last.indexOf('_') : -1;
+			return idx >= 0 ? Math.max(toInt(last.substring(idx + 1)), 0) : 0;
+		}
+		return versionNumber(2);
+	}
+
+	public int patch() {
+		return isLegacy() ? 0 : versionNumber(3);
+	}
+
+	/**
+	 * Returns the pre-release identifier (like "ea") or <code>null</code> if this
+	 * is not a pre-release version
+	 */
+	@Nullable
+	public String preRelease() {
+		int dash = version.indexOf('-');
+		if (dash < 0) {
+			return null;
+		}
+		int plus = version.indexOf('+', dash);
+		String pre = plus < 0 ? version.substring(dash + 1) : version.substring(dash + 1, plus);
+		return pre.isEmpty() ? null : pre;
+	}
+
+	/**
+	 * Returns the build number or 0 if it's unknown
+	 */
+	public int build() {
+		int plus = version.indexOf('+');
+		if (plus < 0) {
+			if (isLegacy()) {
+				// 1.8.0_392-b08
+				int b = version.indexOf("-b");
+				return b >= 0 ? Math.max(toInt(version.substring(b + 2)), 0) : 0;
+			}
+			return 0;
+		}
+		int end = plus + 1;
+		while (end < version.length() && Character.isDigit(version.charAt(end))) {
+			end++;
+		}
+		return Math.max(toInt(version.substring(plus + 1, end)), 0);
+	}
+
+	@Override
+	public int compareTo(@NonNull JavaVersion o) {
+		int length = Math.max(parts.length, o.parts.length);
+		for (int i = 0; i < length; i++) {
+			int p1 = i < parts.length ? numbers[i] : MISSING;
+			int p2 = i < o.parts.length ? o.numbers[i] : MISSING;
+			if (p1 == NOT_A_NUMBER && p2 == NOT_A_NUMBER) {
+				// Both are non-integers, compare as strings
+				int cmp = parts[i].compareTo(o.parts[i]);
+				if (cmp != 0) {
+					return cmp;
+				}
+			} else if (p1 != p2) {
+				return Integer.compare(p1, p2);
+			}
+		}
+		return Integer.compare(parts.length, o.parts.length);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (o == null || getClass() != o.getClass())
+			return false;
+		return version.equals(((JavaVersion) o).version);
+	}
+
+	@Override
+	public int hashCode() {
+		return version.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return version;
+	}
+
+	private boolean isLegacy() {
+		return parts.length > 1 && parts[0].equals("1");
+	}
+
+	// Returns the n-th number of the dotted version (before any '-' or '+')
+	private int versionNumber(int n) {
+		String part = versionPart(isLegacy() ? n + 1 : n);
+		return part != null ? Math.max(toInt(part), 0) : 0;
+	}
+
+	private String versionPart(int n) {
+		int end = version.length();
+		int dash = version.indexOf('-');
+		int plus = version.indexOf('+');
+		if (dash >= 0) {
+			end = dash;
+		}
+		if (plus >= 0 && plus < end) {
+			end = plus;
+		}
+		String[] nums = version.substring(0, end).split("\\.");
+		return n < nums.length ? nums[n] : null;
+	}
+
+	private static boolean isSeparator(char c) {
+		return c == '.' || c == '-' || c == '+';
+	}
+
+	private static int toInt(String s) {
+		if (s.isEmpty() || s.length() > 9) {
+			return JavaUtils.parseToInt(s, NOT_A_NUMBER);
+		}
+		int n = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9') {
+				return NOT_A_NUMBER;
+			}
+			n = n * 10 + (c - '0');
+		}
+		return n;
+	}
+}
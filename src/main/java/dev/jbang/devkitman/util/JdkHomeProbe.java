@@ -0,0 +1,210 @@
+package dev.jbang.devkitman.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import org.jspecify.annotations.NonNull;
+
+import dev.jbang.devkitman.Jdk;
+
+/**
+ * Inspects a JDK home folder and determines its version, vendor, architecture
+ * and tags. The <code>release</code> file is read only once and the
+ * <code>bin</code> folder is listed only once, no matter how many of those
+ * properties are requested. A probe is a snapshot, it should not be kept around
+ * for longer than it takes to create a <code>Jdk</code> object.
+ */
+public class JdkHomeProbe {
+	private final Path home;
+	private Map<String, String> release;
+	private Set<String> bin;
+	private Optional<String> javaVersion;
+
+	private static final Pattern eaPattern = Pattern.compile(".*\\b(ea|EA)\\b.*");
+	private static final String[] WINDOWS_EXTENSIONS = { ".exe", ".bat", ".cmd", ".ps1" };
+
+	private static final Logger LOGGER = Logger.getLogger(JdkHomeProbe.class.getName());
+
+	public JdkHomeProbe(@NonNull Path home) {
+		this.home = home;
+	}
+
+	@NonNull
+	public Path home() {
+		return home;
+	}
+
+	/**
+	 * Returns the contents of the JDK's <code>release</code> file as a map of keys
+	 * to (unquoted) values. The map is empty if the file doesn't exist.
+	 */
+	@NonNull
+	public synchronized Map<String, String> release() {
+		if (release == null) {
+			Map<String, String> props = new LinkedHashMap<>();
+			try (BufferedReader reader = Files.newBufferedReader(home.resolve("release"), StandardCharsets.UTF_8)) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					int idx = line.indexOf('=');
+					if (idx > 0) {
+						props.putIfAbsent(line.substring(0, idx).trim(), unquote(line.substring(idx + 1).trim()));
+					}
+				}
+			} catch (IOException e) {
+				LOGGER.fine("Unable to read 'release' file in path: " + home);
+			}
+			release = Collections.unmodifiableMap(props);
+		}
+		return release;
+	}
+
+	/**
+	 * Returns the Java version of the JDK. It's taken from the
+	 * <code>release</code> file if possible, otherwise from the manifests of the
+	 * runtime's jar files and as a last resort by running
+	 * <code>java -version</code>.
+	 */
+	@NonNull
+	public synchronized Optional<String> javaVersion() {
+		if (javaVersion == null) {
+			Optional<String> res = Optional.empty();
+			// Use whichever of the two keys comes first in the file
+			for (Map.Entry<String, String> e : release().entrySet()) {
+				if (e.getKey().equals("JAVA_VERSION") || e.getKey().equals("JAVA_RUNTIME_VERSION")) {
+					res = Optional.of(e.getValue());
+					break;
+				}
+			}
+			if (!res.isPresent()) {
+				res = JavaUtils.readJavaVersionStringFromRuntimeJars(home);
+			}
+			if (!res.isPresent() && hasJavaCmd()) {
+				res = JavaUtils.readJavaVersionStringFromJavaCommand(home);
+			}
+			javaVersion = res;
+		}
+		return javaVersion;
+	}
+
+	@NonNull
+	public Optional<String> graalVMVersion() {
+		return Optional.ofNullable(release().get("GRAALVM_VERSION"));
+	}
+
+	@NonNull
+	public Optional<String> vendor() {
+		return Optional.ofNullable(release().get("IMPLEMENTOR"));
+	}
+
+	@NonNull
+	public Optional<String> arch() {
+		return Optional.ofNullable(release().get("OS_ARCH"));
+	}
+
+	/**
+	 * Returns the profile the JDK was installed with, see <code>JdkProfile</code>.
+	 * The profile file is only read if the <code>release</code> file says the JDK
+	 * was installed with a profile other than <code>full</code>.
+	 */
+	@NonNull
+	public JdkProfile profile() {
+		String noted = release().get(JdkProfile.RELEASE_KEY);
+		if (noted == null || noted.equals(JdkProfile.full.name())) {
+			return JdkProfile.full;
+		}
+		return JdkProfile.of(home);
+	}
+
+	public boolean hasJavaCmd() {
+		return hasCmd("java");
+	}
+
+	public boolean hasJavacCmd() {
+		return hasCmd("javac");
+	}
+
+	public boolean hasNativeImageCmd() {
+		return hasCmd("native-image");
+	}
+
+	/**
+	 * Determines the tags for the JDK, see <code>Jdk.Default.Tags</code>
+	 */
+	@NonNull
+	public Set<String> tags() {
+		Set<String> tags = new HashSet<>();
+		if (hasJavacCmd()) {
+			tags.add(Jdk.Default.Tags.Jdk.name());
+		} else if (hasJavaCmd()) {
+			tags.add(Jdk.Default.Tags.Jre.name());
+		}
+		Optional<String> version = javaVersion();
+		if (version.isPresent()) {
+			if (eaPattern.matcher(version.get()).matches()) {
+				tags.add(Jdk.Default.Tags.Ea.name());
+			} else {
+				tags.add(Jdk.Default.Tags.Ga.name());
+			}
+		}
+		if (graalVMVersion().isPresent()) {
+			tags.add(Jdk.Default.Tags.Graalvm.name());
+			if (hasNativeImageCmd()) {
+				tags.add(Jdk.Default.Tags.Native.name());
+			}
+		}
+		if (Files.exists(home.resolve("lib").resolve("javafx.properties"))) {
+			tags.add(Jdk.Default.Tags.Javafx.name());
+		}
+		if (profile() == JdkProfile.runtime) {
+			tags.add(Jdk.Default.Tags.Runtime.name());
+		}
+		return tags;
+	}
+
+	private boolean hasCmd(String name) {
+		Set<String> names = bin();
+		if (OsUtils.isWindows()) {
+			// Any file with one of the extensions is executable
+			for (String ext : WINDOWS_EXTENSIONS) {
+				if (names.contains(name + ext)) {
+					return true;
+				}
+			}
+			return false;
+		} else {
+			// The listing tells us the file exists, only the permission is left to check
+			return names.contains(name) && Files.isExecutable(home.resolve("bin").resolve(name));
+		}
+	}
+
+	private synchronized Set<String> bin() {
+		if (bin == null) {
+			Set<String> names = new HashSet<>();
+			try (DirectoryStream<Path> entries = Files.newDirectoryStream(home.resolve("bin"))) {
+				for (Path entry : entries) {
+					String nm = entry.getFileName().toString();
+					names.add(OsUtils.isWindows() ? nm.toLowerCase(Locale.ROOT) : nm);
+				}
+			} catch (IOException e) {
+				LOGGER.log(Level.FINE, "Unable to list 'bin' folder in path: " + home);
+			}
+			bin = names;
+		}
+		return bin;
+	}
+
+	private static String unquote(String value) {
+		if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+			return value.substring(1, value.length() - 1);
+		}
+		return value;
+	}
+}
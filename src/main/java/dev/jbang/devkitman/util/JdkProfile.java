@@ -0,0 +1,136 @@
+package dev.jbang.devkitman.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Determines which parts of a JDK get installed. The <code>full</code> profile
+ * installs everything, while the <code>runtime</code> profile skips the parts
+ * that aren't needed to compile and run code: the sources
+ * (<code>lib/src.zip</code>), the <code>jmods</code> used for creating custom
+ * runtimes, the man pages, demos, samples and legal notices. The profile a JDK
+ * was installed with is recorded in its home folder, except for
+ * <code>full</code>, which is what any JDK without such a record has. It's also
+ * noted in the JDK's <code>release</code> file, so code that reads that file
+ * anyway knows whether the profile file needs to be looked at at all.
+ */
+public enum JdkProfile {
+	full(Collections.emptySet(), Collections.emptySet()),
+	runtime(new HashSet<>(Arrays.asList("jmods", "man", "demo", "sample", "legal")),
+			Collections.singleton(Paths.get("lib", "src.zip")));
+
+	/**
+	 * The file in the JDK's home folder that records its profile
+	 */
+	public static final String PROFILE_FILE = ".devkitman-profile";
+
+	/**
+	 * The key in the JDK's <code>release</code> file that notes its profile
+	 */
+	public static final String RELEASE_KEY = "DEVKITMAN_PROFILE";
+
+	private final Set<String> excludedFolders;
+	private final Set<Path> excludedFiles;
+
+	JdkProfile(Set<String> excludedFolders, Set<Path> excludedFiles) {
+		this.excludedFolders = excludedFolders;
+		this.excludedFiles = excludedFiles;
+	}
+
+	/**
+	 * Returns whether the given file or folder should be installed
+	 *
+	 * @param path The path relative to the JDK's home folder
+	 * @return Whether the path is part of this profile
+	 */
+	public boolean includes(@NonNull Path path) {
+		if (this == full || path.getNameCount() == 0) {
+			return true;
+		}
+		return !excludedFolders.contains(path.getName(0).toString()) && !excludedFiles.contains(path);
+	}
+
+	/**
+	 * Returns whether a JDK installed with this profile contains everything that
+	 * the given profile would install
+	 *
+	 * @param profile The profile to compare with
+	 * @return Whether this profile includes the other one
+	 */
+	public boolean includes(@NonNull JdkProfile profile) {
+		return this == full || this == profile;
+	}
+
+	/**
+	 * Returns the profile with the given name, where <code>null</code> or an empty
+	 * name means <code>full</code>
+	 *
+	 * @param name The name of the profile
+	 * @return A profile
+	 * @throws IllegalArgumentException If there is no profile with that name
+	 */
+	@NonNull
+	public static JdkProfile parse(@Nullable String name) {
+		if (name == null || name.trim().isEmpty()) {
+			return full;
+		}
+		try {
+			return valueOf(name.trim().toLowerCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown JDK profile: " + name);
+		}
+	}
+
+	/**
+	 * Returns the profile that the JDK in the given home folder was installed with
+	 *
+	 * @param home The JDK's home folder
+	 * @return A profile
+	 */
+	@NonNull
+	public static JdkProfile of(@NonNull Path home) {
+		Path file = home.resolve(PROFILE_FILE);
+		if (!Files.isRegularFile(file)) {
+			return full;
+		}
+		try {
+			return parse(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+		} catch (IOException | IllegalArgumentException e) {
+			return full;
+		}
+	}
+
+	/**
+	 * Records this profile in the given JDK home folder, and notes it in the JDK's
+	 * <code>release</code> file if it has one
+	 *
+	 * @param home The JDK's home folder
+	 * @throws IOException If the profile could not be recorded
+	 */
+	public void record(@NonNull Path home) throws IOException {
+		if (this != full) {
+			Files.write(home.resolve(PROFILE_FILE), name().getBytes(StandardCharsets.UTF_8));
+			Path release = home.resolve("release");
+			if (Files.isRegularFile(release)) {
+				byte[] content = Files.readAllBytes(release);
+				String line = RELEASE_KEY + "=\"" + name() + "\"\n";
+				if (content.length > 0 && content[content.length - 1] != '\n') {
+					line = "\n" + line;
+				}
+				Files.write(release, line.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+			}
+		}
+	}
+}
@@ -0,0 +1,329 @@
+package dev.jbang.devkitman.util;
+
+import java.util.*;
+
+import org.apache.hc.client5.http.cache.HttpCacheCASOperation;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheStorage;
+import org.apache.hc.client5.http.cache.Resource;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.message.HeaderGroup;
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * An in-memory cache in front of another <code>HttpCacheStorage</code>, so
+ * entries that are used often can be served without any file I/O or decoding.
+ * All changes are written through to the other storage, which remains the
+ * source of truth: entries only get into memory after they've been read from
+ * or written to it. Entries changed by other processes are seen once the entry
+ * has been evicted from memory or this process updates it itself.
+ *
+ * <p>
+ * The memory used is bounded by an (estimated) number of bytes. When room has
+ * to be made, the least recently used entries are evicted, but only those that
+ * haven't been requested more often recently than the new entry, as estimated
+ * using a small frequency sketch (similar to TinyLFU). If that doesn't free up
+ * enough room the new entry isn't kept in memory. This keeps entries that are
+ * only used once from pushing out the ones that are used all the time.
+ */
+public class MemoryHttpCacheStorage implements HttpCacheStorage {
+	public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+	private static final int ENTRY_OVERHEAD = 256;
+	private static final int HEADER_OVERHEAD = 48;
+
+	private final HttpCacheStorage delegate;
+	private final long maxBytes;
+	private final FrequencySketch sketch = new FrequencySketch();
+
+	// Guarded by "this"
+	private final LinkedHashMap<String, Node> entries = new LinkedHashMap<>(64, 0.75f, true);
+	private long bytes;
+	// Incremented on every change, so entries that were read from the other
+	// storage before a change don't end up in memory after it
+	private long changes;
+
+	/**
+	 * Creates a new memory cache
+	 *
+	 * @param delegate The storage to read from and write through to
+	 * @param maxBytes The maximum number of bytes the cached entries may use
+	 */
+	public MemoryHttpCacheStorage(@NonNull HttpCacheStorage delegate, long maxBytes) {
+		if (maxBytes < 1) {
+			throw new IllegalArgumentException("Memory cache size must be at least 1 byte");
+		}
+		this.delegate = delegate;
+		this.maxBytes = maxBytes;
+	}
+
+	@NonNull
+	public HttpCacheStorage delegate() {
+		return delegate;
+	}
+
+	public long maxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Returns the estimated number of bytes used by the entries in memory
+	 */
+	public synchronized long bytes() {
+		return bytes;
+	}
+
+	@Override
+	public void putEntry(String key, HttpCacheEntry entry) throws ResourceIOException {
+		invalidate(key);
+		delegate.putEntry(key, entry);
+		admit(key, entry, -1);
+	}
+
+	@Override
+	public HttpCacheEntry getEntry(String key) throws ResourceIOException {
+		long stamp;
+		synchronized (this) {
+			HttpCacheEntry entry = cached(key);
+			if (entry != null) {
+				return entry;
+			}
+			stamp = changes;
+		}
+		HttpCacheEntry entry = delegate.getEntry(key);
+		if (entry == null) {
+			return null;
+		}
+		HttpCacheEntry admitted = admit(key, entry, stamp);
+		return admitted != null ? admitted : entry;
+	}
+
+	@Override
+	public void removeEntry(String key) throws ResourceIOException {
+		invalidate(key);
+		delegate.removeEntry(key);
+	}
+
+	@Override
+	public void updateEntry(String key, HttpCacheCASOperation operation) throws ResourceIOException {
+		invalidate(key);
+		HttpCacheEntry[] updated = new HttpCacheEntry[1];
+		delegate.updateEntry(key, existing -> updated[0] = operation.execute(existing));
+		if (updated[0] != null) {
+			admit(key, updated[0], -1);
+		}
+	}
+
+	@Override
+	public Map<String, HttpCacheEntry> getEntries(Collection<String> keys) throws ResourceIOException {
+		Map<String, HttpCacheEntry> result = new HashMap<>();
+		List<String> missing = new ArrayList<>();
+		long stamp;
+		synchronized (this) {
+			for (String key : keys) {
+				HttpCacheEntry entry = cached(key);
+				if (entry != null) {
+					result.put(key, entry);
+				} else {
+					missing.add(key);
+				}
+			}
+			stamp = changes;
+		}
+		if (!missing.isEmpty()) {
+			for (Map.Entry<String, HttpCacheEntry> e : delegate.getEntries(missing).entrySet()) {
+				HttpCacheEntry admitted = admit(e.getKey(), e.getValue(), stamp);
+				result.put(e.getKey(), admitted != null ? admitted : e.getValue());
+			}
+		}
+		return result;
+	}
+
+	// Must be called while holding the lock
+	@Nullable
+	private HttpCacheEntry cached(String key) {
+		sketch.increment(key);
+		Node node = entries.get(key);
+		return node != null ? node.entry : null;
+	}
+
+	private synchronized void invalidate(String key) {
+		changes++;
+		Node node = entries.remove(key);
+		if (node != null) {
+			bytes -= node.weight;
+		}
+	}
+
+	/**
+	 * Tries to add the given entry to the cache, returning the cached copy if it
+	 * was admitted. If a stamp other than -1 is given, the entry is only admitted
+	 * if nothing was changed since the stamp was taken.
+	 */
+	@Nullable
+	private HttpCacheEntry admit(String key, HttpCacheEntry entry, long stamp) throws ResourceIOException {
+		long weight = weigh(entry);
+		if (weight > maxBytes) {
+			return null;
+		}
+		// Loading the body into memory happens outside the lock
+		HttpCacheEntry inMemory = inMemory(entry);
+		synchronized (this) {
+			if (stamp != -1 && stamp != changes) {
+				return null;
+			}
+			Node old = entries.remove(key);
+			if (old != null) {
+				bytes -= old.weight;
+			}
+			int frequency = sketch.frequency(key);
+			Iterator<Node> lru = entries.values().iterator();
+			List<Node> victims = new ArrayList<>();
+			long freed = 0;
+			while (bytes - freed + weight > maxBytes && lru.hasNext()) {
+				Node victim = lru.next();
+				// More popular entries are skipped, even if they haven't been used lately
+				if (sketch.frequency(victim.key) <= frequency) {
+					victims.add(victim);
+					freed += victim.weight;
+				}
+			}
+			if (bytes - freed + weight > maxBytes) {
+				// Not worth pushing out more popular entries
+				return null;
+			}
+			for (Node victim : victims) {
+				entries.remove(victim.key);
+			}
+			bytes -= freed;
+			entries.put(key, new Node(key, inMemory, weight));
+			bytes += weight;
+			return inMemory;
+		}
+	}
+
+	private static HttpCacheEntry inMemory(HttpCacheEntry entry) throws ResourceIOException {
+		Resource resource = entry.getResource();
+		if (resource == null || resource instanceof MemoryResource) {
+			return entry;
+		}
+		HeaderGroup requestHeaders = new HeaderGroup();
+		entry.requestHeaderIterator().forEachRemaining(requestHeaders::addHeader);
+		HeaderGroup responseHeaders = new HeaderGroup();
+		responseHeaders.setHeaders(entry.getHeaders());
+		return new HttpCacheEntry(entry.getRequestInstant(), entry.getResponseInstant(), entry.getRequestMethod(),
+				entry.getRequestURI(), requestHeaders, entry.getStatus(), responseHeaders,
+				new MemoryResource(resource.get()), entry.getVariants());
+	}
+
+	private static long weigh(HttpCacheEntry entry) {
+		long weight = ENTRY_OVERHEAD;
+		if (entry.getResource() != null) {
+			weight += entry.getResource().length();
+		}
+		for (Header header : entry.getHeaders()) {
+			weight += HEADER_OVERHEAD + 2L * (header.getName().length()
+					+ (header.getValue() != null ? header.getValue().length() : 0));
+		}
+		return weight;
+	}
+
+	private static class Node {
+		final String key;
+		final HttpCacheEntry entry;
+		final long weight;
+
+		Node(String key, HttpCacheEntry entry, long weight) {
+			this.key = key;
+			this.entry = entry;
+			this.weight = weight;
+		}
+	}
+
+	/**
+	 * A body kept in memory that is shared by everyone using the cached entry, so
+	 * disposing of it does nothing.
+	 */
+	static class MemoryResource extends Resource {
+		private static final long serialVersionUID = 1L;
+
+		private final byte[] data;
+
+		MemoryResource(byte[] data) {
+			this.data = data;
+		}
+
+		@Override
+		public byte[] get() {
+			// Just like HeapResource, no copy is made
+			return data;
+		}
+
+		@Override
+		public long length() {
+			return data.length;
+		}
+
+		@Override
+		public void dispose() {
+		}
+	}
+
+	/**
+	 * Estimates how often keys were requested recently using a count-min sketch
+	 * of 4 bit counters, which get halved periodically so old popularity fades.
+	 * Not thread-safe.
+	 */
+	static class FrequencySketch {
+		private static final int SIZE = 4096;
+		private static final int DEPTH = 4;
+		private static final int MAX_COUNT = 15;
+		private static final int SAMPLE_SIZE = SIZE * 10;
+		private static final int[] SEEDS = { 0x9e3779b9, 0x85ebca6b, 0xc2b2ae35, 0x27d4eb2f };
+
+		private final byte[] counters = new byte[SIZE * DEPTH];
+		private int additions;
+
+		void increment(String key) {
+			int hash = spread(key.hashCode());
+			boolean added = false;
+			for (int i = 0; i < DEPTH; i++) {
+				int idx = index(hash, i);
+				if (counters[idx] < MAX_COUNT) {
+					counters[idx]++;
+					added = true;
+				}
+			}
+			if (added && ++additions >= SAMPLE_SIZE) {
+				for (int i = 0; i < counters.length; i++) {
+					counters[i] >>= 1;
+				}
+				additions /= 2;
+			}
+		}
+
+		int frequency(String key) {
+			int hash = spread(key.hashCode());
+			int min = MAX_COUNT;
+			for (int i = 0; i < DEPTH; i++) {
+				min = Math.min(min, counters[index(hash, i)]);
+			}
+			return min;
+		}
+
+		private static int index(int hash, int row) {
+			int h = (hash ^ SEEDS[row]) * SEEDS[(row + 1) % DEPTH];
+			h ^= h >>> 16;
+			return row * SIZE + (h & (SIZE - 1));
+		}
+
+		private static int spread(int h) {
+			h ^= h >>> 17;
+			h *= 0xed5ad4bb;
+			h ^= h >>> 11;
+			return h;
+		}
+	}
+}
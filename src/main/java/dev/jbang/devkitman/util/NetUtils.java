@@ -1,11 +1,28 @@
 package dev.jbang.devkitman.util;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.config.RequestConfig;
@@ -13,27 +30,163 @@ import org.apache.hc.client5.http.impl.cache.CacheConfig;
 import org.apache.hc.client5.http.impl.cache.CachingHttpClients;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.client5.http.protocol.RedirectLocations;
+import org.apache.hc.client5.http.utils.DateUtils;
 import org.apache.hc.core5.http.ClassicHttpResponse;
 import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpResponseInterceptor;
 import org.apache.hc.core5.util.Timeout;
 import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
 
 public class NetUtils {
 
+	private static final Logger LOGGER = Logger.getLogger(NetUtils.class.getName());
+
 	public static final RequestConfig DEFAULT_REQUEST_CONFIG = RequestConfig.custom()
 		.setConnectionRequestTimeout(Timeout.ofMilliseconds(10000))
 		.setConnectTimeout(Timeout.ofMilliseconds(10000))
 		.setResponseTimeout(Timeout.ofMilliseconds(30000))
 		.build();
 
+	/**
+	 * Size of the (direct) buffer used to stream downloads to disk
+	 */
+	public static final int DOWNLOAD_BUFFER_SIZE = 1024 * 1024;
+
+	/**
+	 * The number of times a download will be resumed in a row without making any
+	 * progress before giving up
+	 */
+	public static final int DOWNLOAD_MAX_RETRIES = 5;
+
+	/**
+	 * The minimum time responses are served from the cache without revalidating
+	 * them with the server
+	 */
+	public static final Duration DEFAULT_CACHE_MAX_AGE = Duration.ofHours(1);
+
+	/**
+	 * The largest response body that gets cached, big enough for the JDK catalogs
+	 * (the HTTP client's own default of 8 KB is not)
+	 */
+	public static final long CACHE_MAX_OBJECT_SIZE = 32L * 1024 * 1024;
+
+	private static final Pattern contentDispositionFilenamePattern = Pattern
+		.compile("filename\\s*=\\s*\"?([^\";]+)\"?", Pattern.CASE_INSENSITIVE);
+
+	private static final Pattern maxAgePattern = Pattern.compile("(?:^|[,\\s])max-age\\s*=\\s*\"?(\\d+)",
+			Pattern.CASE_INSENSITIVE);
+
+	private static final Pattern contentRangePattern = Pattern.compile("bytes\\s+(\\d+)-(\\d+)/(\\d+|\\*)");
+
 	public static Path downloadFromUrl(String url) throws IOException {
 		HttpClientBuilder builder = createDefaultHttpClientBuilder();
 		return downloadFromUrl(builder, url);
 	}
 
 	public static Path downloadFromUrl(HttpClientBuilder builder, String url) throws IOException {
-		return requestUrl(builder, url, NetUtils::handleDownloadResult);
+		try (CloseableHttpClient httpClient = builder.build()) {
+			return downloadFromUrl(httpClient, url);
+		}
+	}
+
+	/**
+	 * Downloads the given URL to a file in a new temporary folder. The content is
+	 * streamed straight to disk and if the connection drops halfway through the
+	 * download will be resumed using HTTP Range requests. The name of the
+	 * resulting file is taken from the server's response (or the URL) so its
+	 * extension can be used to determine the type of archive that was downloaded.
+	 *
+	 * @param httpClient The HTTP client to use
+	 * @param url        The URL to download
+	 * @return The path to the downloaded file
+	 * @throws IOException If the download failed
+	 */
+	public static Path downloadFromUrl(CloseableHttpClient httpClient, String url) throws IOException {
+		return downloadFromUrl(httpClient, url, null);
+	}
+
+	/**
+	 * Downloads the given URL just like <code>downloadFromUrl()</code> but also
+	 * feeds all the downloaded bytes to the given digest while they are being
+	 * written to disk. This way a checksum can be calculated without having to
+	 * read the file again afterwards.
+	 *
+	 * @param httpClient The HTTP client to use
+	 * @param url        The URL to download
+	 * @param digest     The digest to update or <code>null</code>
+	 * @return The path to the downloaded file
+	 * @throws IOException If the download failed
+	 */
+	public static Path downloadFromUrl(CloseableHttpClient httpClient, String url, @Nullable MessageDigest digest)
+			throws IOException {
+		return downloadFromUrl(httpClient, url, digest, null);
+	}
+
+	/**
+	 * Downloads the given URL just like <code>downloadFromUrl()</code> but also
+	 * copies all the downloaded bytes to the given stream while they are being
+	 * written to disk. That way the contents can be processed (e.g. unpacked)
+	 * while the download is still in progress. Each byte is passed to the stream
+	 * only once, even when the download gets resumed. If the server doesn't
+	 * support resuming and the download has to be restarted, no more bytes are
+	 * passed to the stream, because the content might have changed. The same
+	 * happens if writing to the stream fails, the download will simply continue
+	 * without it. So callers must check that the stream received as many bytes as
+	 * the downloaded file contains. The stream is not closed by this method.
+	 *
+	 * @param httpClient The HTTP client to use
+	 * @param url        The URL to download
+	 * @param digest     The digest to update or <code>null</code>
+	 * @param tee        The stream to copy the contents to or <code>null</code>
+	 * @return The path to the downloaded file
+	 * @throws IOException If the download failed
+	 */
+	public static Path downloadFromUrl(CloseableHttpClient httpClient, String url, @Nullable MessageDigest digest,
+			@Nullable OutputStream tee) throws IOException {
+		Download dl = new Download(url, digest, tee);
+		int retries = 0;
+		while (true) {
+			long received = dl.received;
+			try {
+				HttpGet httpGet = new HttpGet(url);
+				if (dl.received > 0) {
+					httpGet.setHeader("Range", "bytes=" + dl.received + "-");
+					if (dl.validator != null) {
+						httpGet.setHeader("If-Range", dl.validator);
+					}
+				}
+				HttpClientContext context = HttpClientContext.create();
+				httpClient.execute(httpGet, context, response -> {
+					dl.receive(response, context);
+					return null;
+				});
+				if (!dl.isComplete()) {
+					throw new IOException("Download of " + url + " ended prematurely at " + dl.received
+							+ " of " + dl.total + " bytes");
+				}
+				return dl.file;
+			} catch (IOException e) {
+				if (dl.received > received) {
+					retries = 0;
+				}
+				if (dl.file == null || ++retries > DOWNLOAD_MAX_RETRIES) {
+					dl.discard();
+					throw e;
+				}
+				LOGGER.log(Level.FINE, "Download of " + url + " interrupted at " + dl.received + " bytes, resuming",
+						e);
+			} catch (RuntimeException e) {
+				dl.discard();
+				throw e;
+			}
+		}
 	}
 
 	public static <T> T resultFromUrl(String url, FunctionWithError<InputStream, T> streamToObject)
@@ -45,8 +198,16 @@ public class NetUtils {
 	public static <T> T resultFromUrl(
 			HttpClientBuilder builder, String url, FunctionWithError<InputStream, T> streamToObject)
 			throws IOException {
+		try (CloseableHttpClient httpClient = builder.build()) {
+			return resultFromUrl(httpClient, url, streamToObject);
+		}
+	}
+
+	public static <T> T resultFromUrl(
+			CloseableHttpClient httpClient, String url, FunctionWithError<InputStream, T> streamToObject)
+			throws IOException {
 		return requestUrl(
-				builder,
+				httpClient,
 				url,
 				mimetypeChecker("application/json", "text/plain")
 					.andThen(NetUtils::responseStreamer)
@@ -58,35 +219,127 @@ public class NetUtils {
 	}
 
 	public static HttpClientBuilder createCachingHttpClientBuilder(@NonNull Path cacheDir) {
+		return createCachingHttpClientBuilder(cacheDir, DEFAULT_CACHE_MAX_AGE, Duration.ZERO);
+	}
+
+	/**
+	 * Creates a client builder that caches responses in the given folder. Every
+	 * successful response is considered fresh for at least <code>maxAge</code>
+	 * (or longer if the server says so), during which it will be served from the
+	 * cache without contacting the server. After that the response will be
+	 * revalidated using the <code>ETag</code> and/or <code>Last-Modified</code>
+	 * headers sent by the server, so if nothing changed the server only needs to
+	 * send a small <code>304 Not Modified</code> response. For an additional
+	 * <code>staleWhileRevalidate</code> the stale response will be returned
+	 * immediately while it gets revalidated in the background. Because that uses
+	 * a (non-daemon) thread owned by the client, clients created with a non-zero
+	 * <code>staleWhileRevalidate</code> should be closed when no longer needed.
+	 *
+	 * @param cacheDir             The folder to cache responses in
+	 * @param maxAge               The minimum time responses are considered fresh
+	 * @param staleWhileRevalidate How long a stale response may be served while it
+	 *                             is revalidated in the background
+	 * @return A client builder
+	 */
+	public static HttpClientBuilder createCachingHttpClientBuilder(@NonNull Path cacheDir, @NonNull Duration maxAge,
+			@NonNull Duration staleWhileRevalidate) {
+		if (maxAge.isNegative() || staleWhileRevalidate.isNegative()) {
+			throw new IllegalArgumentException("Cache durations must not be negative");
+		}
 		CacheConfig cacheConfig = CacheConfig.custom()
 			.setMaxCacheEntries(1000)
+			.setMaxObjectSize(CACHE_MAX_OBJECT_SIZE)
 			.setSharedCache(false)
+			.setAsynchronousWorkers(staleWhileRevalidate.isZero() ? 0 : 1)
 			.build();
 
-		FileHttpCacheStorage cacheStorage = new FileHttpCacheStorage(cacheDir);
+		// Keep the most used entries in memory, so they don't have to be read from
+		// disk every time
+		MemoryHttpCacheStorage cacheStorage = new MemoryHttpCacheStorage(new DiskHttpCacheStorage(cacheDir),
+				MemoryHttpCacheStorage.DEFAULT_MAX_BYTES);
 
 		return CachingHttpClients.custom()
 			.setCacheConfig(cacheConfig)
 			.setHttpCacheStorage(cacheStorage)
-			.addResponseInterceptorFirst((response, entity, context) -> {
-				// Force cache headers on all 200 OK responses to make them cacheable
-				if (response.getCode() == 200) {
-					response.setHeader("Cache-Control", "max-age=3600, public");
-					if (!response.containsHeader("Date")) {
-						response.setHeader("Date", java.time.Instant.now().toString());
+			.addResponseInterceptorFirst(cacheControlInterceptor(maxAge, staleWhileRevalidate))
+			.setDefaultRequestConfig(DEFAULT_REQUEST_CONFIG);
+	}
+
+	/**
+	 * Makes successful responses cacheable for at least <code>maxAge</code>,
+	 * whatever the server says, while leaving the validators alone so they can
+	 * be used to revalidate the response once it gets stale. This is also done
+	 * for <code>304</code> responses, because their headers replace those of
+	 * the cached response.
+	 */
+	static HttpResponseInterceptor cacheControlInterceptor(Duration maxAge, Duration staleWhileRevalidate) {
+		return (response, entity, context) -> {
+			if (response.getCode() != 200 && response.getCode() != 304) {
+				return;
+			}
+			long seconds = maxAge.getSeconds();
+			Header cacheControl = response.getFirstHeader("Cache-Control");
+			if (cacheControl != null && cacheControl.getValue() != null) {
+				Matcher m = maxAgePattern.matcher(cacheControl.getValue());
+				if (m.find()) {
+					try {
+						seconds = Math.max(seconds, Long.parseLong(m.group(1)));
+					} catch (NumberFormatException e) {
+						// Ignore invalid values
 					}
 				}
-			})
-			.setDefaultRequestConfig(DEFAULT_REQUEST_CONFIG);
+			}
+			String value = "max-age=" + seconds;
+			if (!staleWhileRevalidate.isZero()) {
+				value += ", stale-while-revalidate=" + staleWhileRevalidate.getSeconds();
+			}
+			response.setHeader("Cache-Control", value);
+			response.removeHeaders("Expires");
+			response.removeHeaders("Pragma");
+			if (!response.containsHeader("Date")) {
+				response.setHeader("Date", DateUtils.formatStandardDate(Instant.now()));
+			}
+		};
+	}
+
+	/**
+	 * Creates a pooling connection manager that allows up to
+	 * <code>maxConnections</code> connections to be kept alive and reused, both
+	 * in total and per host (most requests go to the same one or two hosts).
+	 *
+	 * @param maxConnections The maximum number of pooled connections
+	 * @return A connection manager
+	 */
+	public static PoolingHttpClientConnectionManager createConnectionManager(int maxConnections) {
+		if (maxConnections < 1) {
+			throw new IllegalArgumentException("Maximum number of connections must be at least 1");
+		}
+		return PoolingHttpClientConnectionManagerBuilder.create()
+			.setMaxConnTotal(maxConnections)
+			.setMaxConnPerRoute(maxConnections)
+			.build();
 	}
 
 	public static <T> T requestUrl(
 			HttpClientBuilder builder, String url, FunctionWithError<ClassicHttpResponse, T> responseHandler)
 			throws IOException {
 		try (CloseableHttpClient httpClient = builder.build()) {
+			return requestUrl(httpClient, url, responseHandler);
+		}
+	}
+
+	public static <T> T requestUrl(
+			CloseableHttpClient httpClient, String url, FunctionWithError<ClassicHttpResponse, T> responseHandler)
+			throws IOException {
+		try {
 			HttpGet httpGet = new HttpGet(url);
 			return httpClient.execute(httpGet, response -> {
 				int responseCode = response.getCode();
+				if (responseCode == 404) {
+					// Lets callers tell a missing resource apart from other failures
+					throw new FileNotFoundException(
+							"Failed to read from URL: " + url + ", response code: #" + responseCode);
+				}
 				if (responseCode != 200) {
 					throw new IOException(
 							"Failed to read from URL: "
@@ -128,15 +381,169 @@ public class NetUtils {
 		}
 	}
 
-	private static Path handleDownloadResult(ClassicHttpResponse response) {
-		try {
+	/**
+	 * Keeps track of the state of a (possibly resumed) download
+	 */
+	private static class Download {
+		final String url;
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(DOWNLOAD_BUFFER_SIZE);
+		// Always contains the digest of exactly the first `received` bytes
+		final MessageDigest digest;
+		OutputStream tee;
+		// The number of bytes that were passed to the tee so far
+		long teed;
+		Path file;
+		long received;
+		long total = -1;
+		String validator;
+
+		Download(String url, MessageDigest digest, OutputStream tee) {
+			this.url = url;
+			this.digest = digest;
+			this.tee = tee;
+		}
+
+		void receive(ClassicHttpResponse response, HttpClientContext context) throws IOException {
+			int responseCode = response.getCode();
 			HttpEntity entity = response.getEntity();
-			try (InputStream is = entity.getContent()) {
-				// TODO implement
+			if (responseCode == 206 && received > 0) {
+				Header range = response.getFirstHeader("Content-Range");
+				Matcher m = range != null ? contentRangePattern.matcher(range.getValue()) : null;
+				if (m == null || !m.matches() || Long.parseLong(m.group(1)) != received) {
+					throw new IOException("Failed to resume download from URL: " + url + ", unexpected range: "
+							+ (range != null ? range.getValue() : null));
+				}
+				if (!"*".equals(m.group(3))) {
+					total = Long.parseLong(m.group(3));
+				}
+			} else if (responseCode == 200) {
+				if (received > 0) {
+					LOGGER.log(Level.FINE, "Server does not support resuming, restarting download of {0}", url);
+					if (tee != null && teed > 0) {
+						// The new content might not match what the tee already got
+						LOGGER.log(Level.FINE, "No longer copying restarted download of {0}", url);
+						tee = null;
+					}
+				}
+				received = 0;
+				if (digest != null) {
+					digest.reset();
+				}
+				total = entity != null ? entity.getContentLength() : -1;
+				validator = validator(response);
+			} else {
+				throw new IOException("Failed to read from URL: " + url + ", response code: #" + responseCode);
+			}
+			if (entity == null) {
+				throw new IOException("Failed to read from URL: " + url + ", no content");
+			}
+			if (file == null) {
+				file = Files.createTempDirectory("jdk-download").resolve(fileName(response, context));
+				FileUtils.deleteOnExit(file.getParent());
+			}
+			try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+					ReadableByteChannel in = Channels.newChannel(entity.getContent())) {
+				out.truncate(received);
+				out.position(received);
+				buffer.clear();
+				while (in.read(buffer) != -1) {
+					buffer.flip();
+					while (buffer.hasRemaining()) {
+						int start = buffer.position();
+						int written = out.write(buffer);
+						if (digest != null) {
+							ByteBuffer chunk = buffer.duplicate();
+							chunk.position(start).limit(start + written);
+							digest.update(chunk);
+						}
+						received += written;
+						if (tee != null && received > teed) {
+							// After a resume we skip what the tee has already seen
+							int skip = (int) Math.max(0, teed - (received - written));
+							teeChunk(start + skip, written - skip);
+						}
+					}
+					buffer.clear();
+				}
+			}
+		}
+
+		private void teeChunk(int start, int length) {
+			byte[] bytes = new byte[length];
+			ByteBuffer chunk = buffer.duplicate();
+			chunk.position(start);
+			chunk.get(bytes);
+			try {
+				tee.write(bytes);
+				teed += length;
+			} catch (IOException e) {
+				LOGGER.log(Level.FINE, "No longer copying download of " + url + ": " + e.getMessage());
+				tee = null;
+			}
+		}
+
+		boolean isComplete() {
+			return total < 0 || received == total;
+		}
+
+		void discard() {
+			if (file != null) {
+				FileUtils.deletePath(file);
+			}
+		}
+
+		private String fileName(ClassicHttpResponse response, HttpClientContext context) {
+			// First check if the server tells us what the file is called
+			Header disposition = response.getFirstHeader("Content-Disposition");
+			if (disposition != null) {
+				Matcher m = contentDispositionFilenamePattern.matcher(disposition.getValue());
+				if (m.find()) {
+					String name = safeFileName(m.group(1));
+					if (name != null) {
+						return name;
+					}
+				}
+			}
+			// Otherwise use the last path segment of the URL we ended up at
+			String finalUrl = url;
+			RedirectLocations redirects = context.getRedirectLocations();
+			if (redirects != null) {
+				List<URI> locations = redirects.getAll();
+				if (!locations.isEmpty()) {
+					finalUrl = locations.get(locations.size() - 1).toString();
+				}
+			}
+			try {
+				String path = URI.create(finalUrl).getPath();
+				if (path != null) {
+					String name = safeFileName(path.substring(path.lastIndexOf('/') + 1));
+					if (name != null) {
+						return name;
+					}
+				}
+			} catch (IllegalArgumentException e) {
+				// Ignore
+			}
+			return "download";
+		}
+
+		private static String safeFileName(String name) {
+			name = name.trim();
+			if (name.isEmpty() || !FileUtils.isValidPath(name)) {
 				return null;
 			}
-		} catch (IOException e) {
-			throw new UncheckedIOException(e);
+			Path p = Paths.get(name).getFileName();
+			return p != null && !p.toString().equals("..") ? p.toString() : null;
+		}
+
+		private static String validator(ClassicHttpResponse response) {
+			// Only strong ETags can be used with If-Range
+			Header etag = response.getFirstHeader("ETag");
+			if (etag != null && !etag.getValue().startsWith("W/")) {
+				return etag.getValue();
+			}
+			Header lastModified = response.getFirstHeader("Last-Modified");
+			return lastModified != null ? lastModified.getValue() : null;
 		}
 	}
 }
@@ -9,6 +9,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -161,23 +162,57 @@ public class OsUtils {
 	 * @return The output of the command or null if anything went wrong
 	 */
 	public static String runCommand(String... cmd) {
+		return runCommand(Long.MAX_VALUE, cmd);
+	}
+
+	/**
+	 * Runs the given command and returns its output, just like
+	 * {@link #runCommand(String...)}, but gives up and kills the process if it
+	 * hasn't finished within the given time.
+	 *
+	 * @param timeoutMillis The maximum time in milliseconds to wait for the command
+	 * @param cmd           The command and its arguments
+	 * @return The output of the command or <code>null</code> if it failed or timed
+	 *         out
+	 */
+	public static String runCommand(long timeoutMillis, String... cmd) {
+		Process p = null;
 		try {
 			ProcessBuilder pb = new ProcessBuilder(cmd);
 			pb.redirectErrorStream(true);
-			Process p = pb.start();
-			BufferedReader br = new BufferedReader(new InputStreamReader(p.getInputStream()));
-			String cmdOutput = br.lines().collect(Collectors.joining("\n"));
-			int exitCode = p.waitFor();
+			p = pb.start();
+			Process proc = p;
+			StringBuffer output = new StringBuffer();
+			Thread reader = new Thread(() -> {
+				BufferedReader br = new BufferedReader(new InputStreamReader(proc.getInputStream()));
+				output.append(br.lines().collect(Collectors.joining("\n")));
+			}, "command-output");
+			reader.setDaemon(true);
+			reader.start();
+			if (!p.waitFor(timeoutMillis, TimeUnit.MILLISECONDS)) {
+				LOGGER.log(Level.FINE, "Command timed out after {0}ms: {1}",
+						new Object[] { timeoutMillis, String.join(" ", cmd) });
+				return null;
+			}
+			reader.join(timeoutMillis);
+			int exitCode = p.exitValue();
 			if (exitCode == 0) {
-				return cmdOutput;
+				return output.toString();
 			} else {
 				LOGGER.log(
 						Level.FINE,
 						"Command failed: #{0} - {1}",
-						new Object[] { exitCode, cmdOutput });
+						new Object[] { exitCode, output });
 			}
-		} catch (IOException | InterruptedException ex) {
+		} catch (IOException ex) {
 			LOGGER.log(Level.FINE, "Error running: " + String.join(" ", cmd), ex);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			LOGGER.log(Level.FINE, "Interrupted while running: " + String.join(" ", cmd), ex);
+		} finally {
+			if (p != null && p.isAlive()) {
+				p.destroyForcibly();
+			}
 		}
 		return null;
 	}
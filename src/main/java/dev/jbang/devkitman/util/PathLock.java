@@ -0,0 +1,166 @@
+package dev.jbang.devkitman.util;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * An exclusive lock on a path that works across threads and processes. The lock
+ * is taken on a <code>.lock</code> file in a <code>.locks</code> folder next to
+ * the path being protected, using the operating system's file locking. Those
+ * locks are released by the operating system when a process dies, so a lock
+ * can never be left behind by a crashed process. The lock files themselves are
+ * never deleted, because doing so would allow two processes to each hold a lock
+ * on a different file for the same path. Keeping them in their own folder means
+ * taking a lock doesn't change the folder that contains the locked path. The
+ * lock is reentrant for the thread that holds it.
+ */
+public class PathLock implements AutoCloseable {
+	private final ReentrantLock localLock;
+	private final @Nullable FileChannel channel;
+	private final @Nullable FileLock fileLock;
+	private final boolean waited;
+
+	// File locks are held by the whole JVM, so threads need their own locks
+	private static final Map<Path, ReentrantLock> localLocks = new ConcurrentHashMap<>();
+
+	/**
+	 * The name of the folder, next to the locked paths, that holds the lock files
+	 */
+	public static final String LOCKS_FOLDER = ".locks";
+
+	/**
+	 * How long <code>lock(Path)</code> waits for a lock before giving up
+	 */
+	public static final Duration DEFAULT_TIMEOUT = Duration.ofMinutes(30);
+
+	private static final long POLL_MILLIS = 250;
+
+	private static final Logger LOGGER = Logger.getLogger(PathLock.class.getName());
+
+	private PathLock(ReentrantLock localLock, @Nullable FileChannel channel, @Nullable FileLock fileLock,
+			boolean waited) {
+		this.localLock = localLock;
+		this.channel = channel;
+		this.fileLock = fileLock;
+		this.waited = waited;
+	}
+
+	/**
+	 * Acquires the lock for the given path, waiting for at most
+	 * <code>DEFAULT_TIMEOUT</code> if the lock is currently being held by another
+	 * thread or process.
+	 *
+	 * @param path The path to lock
+	 * @return The lock, which must be closed to release it
+	 * @throws IllegalStateException If the lock could not be acquired in time
+	 */
+	@NonNull
+	public static PathLock lock(@NonNull Path path) {
+		return lock(path, DEFAULT_TIMEOUT);
+	}
+
+	/**
+	 * Acquires the lock for the given path, waiting for at most the given amount
+	 * of time if the lock is currently being held by another thread or process.
+	 *
+	 * @param path    The path to lock
+	 * @param timeout The maximum amount of time to wait for the lock
+	 * @return The lock, which must be closed to release it
+	 * @throws IllegalStateException If the lock could not be acquired in time
+	 */
+	@NonNull
+	public static PathLock lock(@NonNull Path path, @NonNull Duration timeout) {
+		Path target = path.toAbsolutePath().normalize();
+		Path lockFile = target.resolveSibling(LOCKS_FOLDER).resolve(target.getFileName() + ".lock");
+		long deadline = System.nanoTime() + timeout.toNanos();
+		ReentrantLock localLock = localLocks.computeIfAbsent(lockFile, k -> new ReentrantLock());
+		boolean waited = false;
+		if (!localLock.tryLock()) {
+			LOGGER.log(Level.FINE, "Waiting for lock on {0}", target);
+			waited = true;
+			try {
+				if (!localLock.tryLock(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+					throw new IllegalStateException("Timed out waiting for lock on " + target);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for lock on " + target, e);
+			}
+		}
+		if (localLock.getHoldCount() > 1) {
+			// We already hold the file lock
+			return new PathLock(localLock, null, null, waited);
+		}
+		FileChannel channel = null;
+		try {
+			FileUtils.mkdirs(lockFile.getParent());
+			channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			FileLock fileLock = channel.tryLock();
+			if (fileLock == null) {
+				LOGGER.log(Level.INFO, "Waiting for another process to release the lock on {0}", target);
+				waited = true;
+				while ((fileLock = channel.tryLock()) == null) {
+					if (System.nanoTime() - deadline >= 0) {
+						throw new IllegalStateException(
+								"Timed out waiting for another process to release the lock on " + target);
+					}
+					Thread.sleep(POLL_MILLIS);
+				}
+			}
+			return new PathLock(localLock, channel, fileLock, waited);
+		} catch (IOException | RuntimeException | InterruptedException e) {
+			if (e instanceof InterruptedException) {
+				Thread.currentThread().interrupt();
+			}
+			if (channel != null) {
+				try {
+					channel.close();
+				} catch (IOException ex) {
+					// Ignore
+				}
+			}
+			localLock.unlock();
+			if (e instanceof IllegalStateException) {
+				throw (IllegalStateException) e;
+			}
+			throw new IllegalStateException("Failed to lock " + target, e);
+		}
+	}
+
+	/**
+	 * Indicates if the lock was being held by someone else when it was requested,
+	 * meaning the state of the locked path might have changed while waiting.
+	 */
+	public boolean waited() {
+		return waited;
+	}
+
+	@Override
+	public void close() {
+		try {
+			if (fileLock != null) {
+				fileLock.release();
+			}
+			if (channel != null) {
+				channel.close();
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Failed to release lock", e);
+		} finally {
+			localLock.unlock();
+		}
+	}
+}
@@ -1,21 +1,74 @@
 package dev.jbang.devkitman.util;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
 
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.io.HttpClientConnectionManager;
+import org.jspecify.annotations.Nullable;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.Strictness;
 
-public interface RemoteAccessProvider {
+public interface RemoteAccessProvider extends Closeable {
 
 	Path downloadFromUrl(String url) throws IOException;
 
+	/**
+	 * Downloads the given URL and updates the given digest with its contents.
+	 * Implementations should calculate the digest while the file is being
+	 * downloaded, by default the file is read again once the download is done.
+	 *
+	 * @param url    The URL to download
+	 * @param digest The digest to update with the downloaded bytes
+	 * @return The path to the downloaded file
+	 * @throws IOException If the download failed
+	 */
+	default Path downloadFromUrl(String url, MessageDigest digest) throws IOException {
+		Path file = downloadFromUrl(url);
+		byte[] buf = new byte[64 * 1024];
+		try (InputStream is = Files.newInputStream(file)) {
+			int n;
+			while ((n = is.read(buf)) != -1) {
+				digest.update(buf, 0, n);
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * Downloads the given URL, updates the given digest with its contents and
+	 * copies those same contents to the given stream so they can be processed
+	 * while the download is still in progress. Failing to write to the stream
+	 * should not fail the download, instead the stream stops receiving the
+	 * contents, which also happens when a download has to be restarted. Callers
+	 * must therefore check that the stream received all of the file. By default
+	 * the contents are only copied to the stream once the download is done.
+	 *
+	 * @param url    The URL to download
+	 * @param digest The digest to update with the downloaded bytes
+	 * @param tee    The stream to copy the downloaded bytes to, it won't be closed
+	 * @return The path to the downloaded file
+	 * @throws IOException If the download failed
+	 */
+	default Path downloadFromUrl(String url, MessageDigest digest, OutputStream tee) throws IOException {
+		Path file = downloadFromUrl(url, digest);
+		try {
+			Files.copy(file, tee);
+		} catch (IOException e) {
+			// Whoever was reading the stream isn't interested anymore
+		}
+		return file;
+	}
+
 	default <T> T resultFromUrl(String url, FunctionWithError<InputStream, T> streamToObject)
 			throws IOException {
 		Path file = downloadFromUrl(url);
@@ -35,6 +88,14 @@ public interface RemoteAccessProvider {
 		});
 	}
 
+	/**
+	 * Releases any resources (like pooled connections) held by this provider. By
+	 * default this does nothing.
+	 */
+	@Override
+	default void close() throws IOException {
+	}
+
 	static RemoteAccessProvider createDefaultRemoteAccessProvider() {
 		return new DefaultRemoteAccessProvider();
 	}
@@ -51,30 +112,79 @@ public interface RemoteAccessProvider {
 		}
 	}
 
+	static RemoteAccessProvider createDefaultRemoteAccessProvider(HttpClientBuilder clientBuilder,
+			HttpClientConnectionManager connectionManager) {
+		return new DefaultRemoteAccessProvider(
+				clientBuilder != null ? clientBuilder : NetUtils.createDefaultHttpClientBuilder(), connectionManager);
+	}
+
+	/**
+	 * Remote access provider that uses a single Apache HTTP client for its whole
+	 * lifetime. That way the connection pool, keep-alive connections and TLS
+	 * sessions get reused between requests. Call <code>close()</code> to release
+	 * them when the provider is no longer needed. When a client builder is passed
+	 * in it is used as-is, so any connection manager it was configured with (for
+	 * custom TLS, proxy or DNS settings) is kept.
+	 */
 	class DefaultRemoteAccessProvider implements RemoteAccessProvider {
-		private final HttpClientBuilder clientBuilder;
+		public static final int DEFAULT_MAX_CONNECTIONS = 8;
+
+		private final CloseableHttpClient httpClient;
 
 		public DefaultRemoteAccessProvider() {
-			this.clientBuilder = NetUtils.createDefaultHttpClientBuilder();
+			this(NetUtils.createDefaultHttpClientBuilder(),
+					NetUtils.createConnectionManager(DEFAULT_MAX_CONNECTIONS));
 		}
 
 		public DefaultRemoteAccessProvider(Path cacheDir) {
-			this.clientBuilder = NetUtils.createCachingHttpClientBuilder(cacheDir);
+			this(NetUtils.createCachingHttpClientBuilder(cacheDir),
+					NetUtils.createConnectionManager(DEFAULT_MAX_CONNECTIONS));
 		}
 
 		public DefaultRemoteAccessProvider(HttpClientBuilder clientBuilder) {
-			this.clientBuilder = clientBuilder;
+			this(clientBuilder, null);
+		}
+
+		/**
+		 * Creates a provider using a client built by the given builder
+		 *
+		 * @param clientBuilder     The builder to create the client with
+		 * @param connectionManager The connection manager to use or
+		 *                          <code>null</code> to use the one configured on
+		 *                          the builder (or its default)
+		 */
+		public DefaultRemoteAccessProvider(HttpClientBuilder clientBuilder,
+				@Nullable HttpClientConnectionManager connectionManager) {
+			if (connectionManager != null) {
+				clientBuilder.setConnectionManager(connectionManager);
+			}
+			this.httpClient = clientBuilder.build();
 		}
 
 		@Override
 		public Path downloadFromUrl(String url) throws IOException {
-			return NetUtils.downloadFromUrl(clientBuilder, url);
+			return NetUtils.downloadFromUrl(httpClient, url);
+		}
+
+		@Override
+		public Path downloadFromUrl(String url, MessageDigest digest) throws IOException {
+			return NetUtils.downloadFromUrl(httpClient, url, digest);
+		}
+
+		@Override
+		public Path downloadFromUrl(String url, MessageDigest digest, OutputStream tee) throws IOException {
+			return NetUtils.downloadFromUrl(httpClient, url, digest, tee);
 		}
 
 		@Override
 		public <T> T resultFromUrl(String url, FunctionWithError<InputStream, T> streamToObject)
 				throws IOException {
-			return NetUtils.resultFromUrl(clientBuilder, url, streamToObject);
+			return NetUtils.resultFromUrl(httpClient, url, streamToObject);
+		}
+
+		@Override
+		public void close() throws IOException {
+			httpClient.close();
 		}
 	}
 }
@@ -0,0 +1,185 @@
+package dev.jbang.devkitman.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.jspecify.annotations.NonNull;
+
+/**
+ * A bounded pipe that connects an <code>OutputStream</code> written to by one
+ * thread to an <code>InputStream</code> read by another. Unlike
+ * <code>PipedInputStream</code> it doesn't care which threads are used, so it
+ * can be used with thread pools. The writer blocks when the reader falls too
+ * far behind. When the reader closes its end the writer gets an
+ * <code>IOException</code> on its next write, when the writer closes its end
+ * the reader gets the end of the stream once it has read all remaining data.
+ */
+public class StreamPipe {
+	private static final byte[] EOF = new byte[0];
+	private static final long POLL_MILLIS = 100;
+
+	private final BlockingQueue<byte[]> chunks;
+	private final Input input = new Input();
+	private final Output output = new Output();
+	private volatile boolean readerClosed;
+	private volatile boolean writerClosed;
+	private volatile IOException failure;
+
+	/**
+	 * Creates a new pipe
+	 *
+	 * @param maxChunks The maximum number of written chunks that can be waiting to
+	 *                  be read before the writer blocks
+	 */
+	public StreamPipe(int maxChunks) {
+		this.chunks = new ArrayBlockingQueue<>(Math.max(1, maxChunks));
+	}
+
+	@NonNull
+	public InputStream input() {
+		return input;
+	}
+
+	@NonNull
+	public OutputStream output() {
+		return output;
+	}
+
+	/**
+	 * Closes the writing end of the pipe with an error, for when the data written
+	 * so far turns out to be incomplete or wrong. Instead of reaching the end of
+	 * the stream the reader gets an <code>IOException</code>, right away, even if
+	 * there's still data waiting to be read.
+	 *
+	 * @param cause The reason the pipe failed
+	 */
+	public void fail(@NonNull IOException cause) {
+		failure = cause;
+		writerClosed = true;
+		chunks.clear();
+	}
+
+	private class Output extends OutputStream {
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (writerClosed) {
+				throw new IOException("Pipe closed");
+			}
+			if (len > 0) {
+				offer(Arrays.copyOfRange(b, off, off + len));
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!writerClosed) {
+				writerClosed = true;
+				try {
+					offer(EOF);
+				} catch (IOException e) {
+					// The reader is gone, so nobody is waiting for the end of the stream
+				}
+			}
+		}
+
+		private void offer(byte[] chunk) throws IOException {
+			try {
+				while (!chunks.offer(chunk, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+					if (readerClosed) {
+						break;
+					}
+				}
+				if (readerClosed) {
+					chunks.clear();
+					throw new IOException("Pipe closed by reader");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while writing to pipe");
+			}
+		}
+	}
+
+	private class Input extends InputStream {
+		private byte[] chunk;
+		private int pos;
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			int n = read(b, 0, 1);
+			return n == -1 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (!fill()) {
+				return -1;
+			}
+			int n = Math.min(len, chunk.length - pos);
+			System.arraycopy(chunk, pos, b, off, n);
+			pos += n;
+			return n;
+		}
+
+		@Override
+		public int available() {
+			return chunk != null && chunk != EOF ? chunk.length - pos : 0;
+		}
+
+		@Override
+		public void close() {
+			readerClosed = true;
+			chunks.clear();
+		}
+
+		private boolean fill() throws IOException {
+			if (readerClosed) {
+				throw new IOException("Pipe closed");
+			}
+			checkFailure();
+			if (chunk == EOF) {
+				return false;
+			}
+			if (chunk != null && pos < chunk.length) {
+				return true;
+			}
+			try {
+				do {
+					chunk = chunks.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+					checkFailure();
+					if (chunk == null && writerClosed && chunks.isEmpty()) {
+						// The writer was closed without being able to signal the end
+						chunk = EOF;
+					}
+				} while (chunk == null);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while reading from pipe");
+			}
+			pos = 0;
+			return chunk != EOF;
+		}
+
+		private void checkFailure() throws IOException {
+			IOException e = failure;
+			if (e != null) {
+				throw new IOException("Pipe failed: " + e.getMessage(), e);
+			}
+		}
+	}
+}
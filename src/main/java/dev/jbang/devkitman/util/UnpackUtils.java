@@ -1,13 +1,21 @@
 package dev.jbang.devkitman.util;
 
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -20,16 +28,72 @@ import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 public class UnpackUtils {
 	private static final Logger LOGGER = Logger.getLogger(UnpackUtils.class.getName());
 
+	private static final int GZIP_MAGIC = 0x8b1f;
+
+	private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+	private static final Set<StandardOpenOption> CREATE_NEW_FILE = EnumSet.of(StandardOpenOption.CREATE_NEW,
+			StandardOpenOption.WRITE);
+
 	public static void unpackJdk(Path archive, Path outputDir) throws IOException {
+		unpackJdk(archive, outputDir, JdkProfile.full);
+	}
+
+	/**
+	 * Unpacks a JDK archive, skipping all the files and folders that are not part
+	 * of the given profile
+	 *
+	 * @param archive   The archive to unpack
+	 * @param outputDir The folder to unpack the JDK to
+	 * @param profile   The parts of the JDK to unpack
+	 * @throws IOException If the archive could not be unpacked
+	 */
+	public static void unpackJdk(Path archive, Path outputDir, JdkProfile profile) throws IOException {
 		String name = archive.toString().toLowerCase(Locale.ENGLISH);
 		Path selectFolder = OsUtils.isMac() ? Paths.get("Contents/Home") : null;
 		if (name.endsWith(".zip")) {
-			unzip(archive, outputDir, true, selectFolder, UnpackUtils::defaultZipEntryCopy);
+			unzip(archive, outputDir, true, selectFolder, UnpackUtils::defaultZipEntryCopy,
+					Runtime.getRuntime().availableProcessors(), profile::includes);
 		} else if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
-			untargz(archive, outputDir, true, selectFolder);
+			untargz(archive, outputDir, true, selectFolder, profile::includes);
 		}
 	}
 
+	/**
+	 * Unpacks a JDK archive that is read from the given stream, which means the
+	 * archive can be unpacked while it is still being downloaded. Only gzipped tar
+	 * archives can be unpacked this way, for any other format nothing is read
+	 * beyond the first few bytes and <code>false</code> is returned, so the caller
+	 * can unpack the archive from disk instead. The stream is not closed.
+	 *
+	 * @param archive   The stream to read the archive from
+	 * @param outputDir The folder to unpack the JDK to
+	 * @return Whether the archive was unpacked
+	 * @throws IOException If the archive could not be unpacked
+	 */
+	public static boolean unpackJdk(InputStream archive, Path outputDir) throws IOException {
+		return unpackJdk(archive, outputDir, JdkProfile.full);
+	}
+
+	/**
+	 * Unpacks a JDK archive that is read from the given stream just like
+	 * <code>unpackJdk(archive, outputDir)</code>, skipping all the files and
+	 * folders that are not part of the given profile
+	 */
+	public static boolean unpackJdk(InputStream archive, Path outputDir, JdkProfile profile) throws IOException {
+		BufferedInputStream in = new BufferedInputStream(archive);
+		in.mark(2);
+		int b1 = in.read();
+		int b2 = in.read();
+		in.reset();
+		if (b1 != (GZIP_MAGIC & 0xff) || b2 != (GZIP_MAGIC >> 8)) {
+			return false;
+		}
+		Path selectFolder = OsUtils.isMac() ? Paths.get("Contents/Home") : null;
+		untargz(in, outputDir, true, selectFolder, profile::includes);
+		return true;
+	}
+
 	public static void unpack(Path archive, Path outputDir) throws IOException {
 		unpack(archive, outputDir, false);
 	}
@@ -58,6 +122,11 @@ public class UnpackUtils {
 		}
 	}
 
+	/**
+	 * Unpacks a zip file one file at a time, so <code>onExisting</code> is only
+	 * ever called from the calling thread. Use the <code>unzip()</code> method
+	 * that takes a <code>parallelism</code> to inflate several files at once.
+	 */
 	public static void unzip(
 			Path zip,
 			Path outputDir,
@@ -65,7 +134,57 @@ public class UnpackUtils {
 			Path selectFolder,
 			ExistingZipFileHandler onExisting)
 			throws IOException {
+		unzip(zip, outputDir, stripRootFolder, selectFolder, onExisting, 1);
+	}
+
+	/**
+	 * Unpacks a zip file using up to <code>parallelism</code> threads. All folders
+	 * and symbolic links are created up front, after which the files are inflated
+	 * concurrently, largest first so a single big file (like
+	 * <code>lib/modules</code>) doesn't end up being the last one to start. When
+	 * <code>parallelism</code> is larger than 1 <code>onExisting</code> can be
+	 * called from several threads at the same time, so it must be thread-safe.
+	 *
+	 * @param zip             The zip file to unpack
+	 * @param outputDir       The folder to unpack to
+	 * @param stripRootFolder Whether to remove the first folder from all paths
+	 * @param selectFolder    Only unpack the contents of this folder, or
+	 *                        <code>null</code> for everything
+	 * @param onExisting      Called for files that already exist
+	 * @param parallelism     The maximum number of files to inflate at the same
+	 *                        time
+	 * @throws IOException If the zip file could not be unpacked
+	 */
+	public static void unzip(
+			Path zip,
+			Path outputDir,
+			boolean stripRootFolder,
+			Path selectFolder,
+			ExistingZipFileHandler onExisting,
+			int parallelism)
+			throws IOException {
+		unzip(zip, outputDir, stripRootFolder, selectFolder, onExisting, parallelism, p -> true);
+	}
+
+	/**
+	 * Unpacks a zip file just like the other <code>unzip()</code> methods, but
+	 * only the entries whose path (relative to <code>outputDir</code>) is
+	 * accepted by the given filter get unpacked
+	 */
+	public static void unzip(
+			Path zip,
+			Path outputDir,
+			boolean stripRootFolder,
+			Path selectFolder,
+			ExistingZipFileHandler onExisting,
+			int parallelism,
+			Predicate<Path> include)
+			throws IOException {
 		try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+			Set<Path> dirs = new LinkedHashSet<>();
+			List<ZipArchiveEntry> links = new ArrayList<>();
+			List<ZipArchiveEntry> files = new ArrayList<>();
+			Map<ZipArchiveEntry, Path> targets = new HashMap<>();
 			Enumeration<ZipArchiveEntry> entries = zipFile.getEntries();
 			while (entries.hasMoreElements()) {
 				ZipArchiveEntry zipEntry = entries.nextElement();
@@ -82,31 +201,81 @@ public class UnpackUtils {
 					}
 					entry = entry.subpath(selectFolder.getNameCount(), entry.getNameCount());
 				}
+				if (!include.test(entry.normalize())) {
+					continue;
+				}
 				entry = outputDir.resolve(entry).normalize();
 				if (!entry.startsWith(outputDir)) {
 					throw new IOException(
 							"Entry is outside of the target dir: " + zipEntry.getName());
 				}
 				if (zipEntry.isDirectory()) {
-					Files.createDirectories(entry);
+					dirs.add(entry);
 				} else if (zipEntry.isUnixSymlink()) {
-					Scanner s = new Scanner(zipFile.getInputStream(zipEntry)).useDelimiter("\\A");
-					String result = s.hasNext() ? s.next() : "";
-					Files.createSymbolicLink(entry, Paths.get(result));
+					links.add(zipEntry);
+					targets.put(zipEntry, entry);
 				} else {
-					if (!Files.isDirectory(entry.getParent())) {
-						Files.createDirectories(entry.getParent());
-					}
-					if (Files.isRegularFile(entry)) {
-						onExisting.handle(zipFile, zipEntry, entry);
-					} else {
-						defaultZipEntryCopy(zipFile, zipEntry, entry);
-					}
+					dirs.add(entry.getParent());
+					files.add(zipEntry);
+					targets.put(zipEntry, entry);
+				}
+			}
+
+			for (Path dir : dirs) {
+				Files.createDirectories(dir);
+			}
+			for (ZipArchiveEntry zipEntry : links) {
+				Scanner s = new Scanner(zipFile.getInputStream(zipEntry)).useDelimiter("\\A");
+				String result = s.hasNext() ? s.next() : "";
+				Files.createSymbolicLink(targets.get(zipEntry), Paths.get(result));
+			}
+
+			files.sort(Comparator.comparingLong(UnpackUtils::entrySize).reversed());
+			if (parallelism <= 1 || files.size() < 2) {
+				for (ZipArchiveEntry zipEntry : files) {
+					unzipFile(zipFile, zipEntry, targets.get(zipEntry), onExisting);
+				}
+				return;
+			}
+			// ZipFile uses positional reads, so entries can be read concurrently
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				List<Future<Void>> results = new ArrayList<>();
+				for (ZipArchiveEntry zipEntry : files) {
+					results.add(pool.submit(() -> {
+						unzipFile(zipFile, zipEntry, targets.get(zipEntry), onExisting);
+						return null;
+					}));
+				}
+				for (Future<Void> result : results) {
+					ConcurrencyUtils.await(result);
+				}
+			} finally {
+				// Make sure nothing is still writing files when we return
+				pool.shutdownNow();
+				try {
+					pool.awaitTermination(1, TimeUnit.MINUTES);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
 				}
 			}
 		}
 	}
 
+	private static void unzipFile(ZipFile zipFile, ZipArchiveEntry zipEntry, Path entry,
+			ExistingZipFileHandler onExisting) throws IOException {
+		if (Files.isRegularFile(entry)) {
+			onExisting.handle(zipFile, zipEntry, entry);
+		} else {
+			defaultZipEntryCopy(zipFile, zipEntry, entry);
+		}
+	}
+
+	private static long entrySize(ZipArchiveEntry zipEntry) {
+		long size = zipEntry.getSize();
+		return size >= 0 ? size : zipEntry.getCompressedSize();
+	}
+
 	public interface ExistingZipFileHandler {
 		void handle(ZipFile zipFile, ZipArchiveEntry zipEntry, Path outFile) throws IOException;
 	}
@@ -126,52 +295,151 @@ public class UnpackUtils {
 	public static void untargz(
 			Path targz, Path outputDir, boolean stripRootFolder, Path selectFolder)
 			throws IOException {
+		untargz(targz, outputDir, stripRootFolder, selectFolder, p -> true);
+	}
+
+	/**
+	 * Unpacks a gzipped tar archive, but only the entries whose path (relative to
+	 * <code>outputDir</code>) is accepted by the given filter
+	 */
+	public static void untargz(
+			Path targz, Path outputDir, boolean stripRootFolder, Path selectFolder, Predicate<Path> include)
+			throws IOException {
+		try (InputStream in = Files.newInputStream(targz)) {
+			untargz(in, outputDir, stripRootFolder, selectFolder, include);
+		}
+	}
+
+	public static void untargz(
+			InputStream targz, Path outputDir, boolean stripRootFolder, Path selectFolder)
+			throws IOException {
+		untargz(targz, outputDir, stripRootFolder, selectFolder, p -> true);
+	}
+
+	/**
+	 * Unpacks a gzipped tar archive that is read from the given stream, but only
+	 * the entries whose path (relative to <code>outputDir</code>) is accepted by
+	 * the given filter. The stream is not closed.
+	 */
+	public static void untargz(
+			InputStream targz, Path outputDir, boolean stripRootFolder, Path selectFolder,
+			Predicate<Path> include) throws IOException {
+		// Closing the tar stream releases the inflater but must leave the given
+		// stream open
+		InputStream unclosable = new FilterInputStream(targz) {
+			@Override
+			public void close() {
+			}
+		};
 		try (TarArchiveInputStream tarArchiveInputStream = new TarArchiveInputStream(
-				new GzipCompressorInputStream(Files.newInputStream(targz.toFile().toPath())))) {
-			TarArchiveEntry targzEntry;
-			while ((targzEntry = tarArchiveInputStream.getNextEntry()) != null) {
-				Path entry = Paths.get(targzEntry.getName()).normalize();
-				if (stripRootFolder) {
-					if (entry.getNameCount() == 1) {
-						continue;
-					}
-					entry = entry.subpath(1, entry.getNameCount());
+				new GzipCompressorInputStream(unclosable))) {
+			untar(tarArchiveInputStream, outputDir, stripRootFolder, selectFolder, include);
+		}
+	}
+
+	private static void untar(
+			TarArchiveInputStream tarArchiveInputStream, Path outputDir, boolean stripRootFolder,
+			Path selectFolder, Predicate<Path> include) throws IOException {
+		boolean posix = !OsUtils.isWindows();
+		// Folders we know to exist, so we don't have to check them for every file
+		Set<Path> knownDirs = new HashSet<>();
+		byte[] buffer = new byte[COPY_BUFFER_SIZE];
+		TarArchiveEntry targzEntry;
+		while ((targzEntry = tarArchiveInputStream.getNextEntry()) != null) {
+			String name = targzEntry.getName();
+			// Only names containing things like "." or ".." segments, absolute paths
+			// or drive letters need to be normalized and checked
+			boolean plain = !name.startsWith(".") && !name.contains("/.") && !name.startsWith("/")
+					&& name.indexOf('\\') < 0 && name.indexOf(':') < 0;
+			Path entry = Paths.get(name);
+			if (!plain) {
+				entry = entry.normalize();
+			}
+			if (stripRootFolder) {
+				if (entry.getNameCount() == 1) {
+					continue;
 				}
-				if (selectFolder != null) {
-					if (!entry.startsWith(selectFolder) || entry.equals(selectFolder)) {
-						continue;
-					}
-					entry = entry.subpath(selectFolder.getNameCount(), entry.getNameCount());
+				entry = entry.subpath(1, entry.getNameCount());
+			}
+			if (selectFolder != null) {
+				if (!entry.startsWith(selectFolder) || entry.equals(selectFolder)) {
+					continue;
 				}
-				entry = outputDir.resolve(entry).normalize();
+				entry = entry.subpath(selectFolder.getNameCount(), entry.getNameCount());
+			}
+			if (!include.test(entry)) {
+				continue;
+			}
+			entry = outputDir.resolve(entry);
+			if (!plain) {
+				entry = entry.normalize();
 				if (!entry.startsWith(outputDir)) {
 					throw new IOException(
 							"Entry is outside of the target dir: " + targzEntry.getName());
 				}
-				if (targzEntry.isDirectory()) {
-					Files.createDirectories(entry);
-				} else if (targzEntry.isSymbolicLink()) {
-					Path linkTarget = Paths.get(targzEntry.getLinkName());
-					Files.createDirectories(entry.getParent());
-					if (!Files.exists(entry)) {
-						try {
-							Files.createSymbolicLink(entry, linkTarget);
-						} catch (IOException e) {
-							LOGGER.log(Level.WARNING, "Could not create symbolic link " + entry + " -> "
-									+ linkTarget + " due to " + e.getMessage(), e);
-						}
-					}
-				} else {
-					Files.createDirectories(entry.getParent());
-					Files.copy(tarArchiveInputStream, entry, StandardCopyOption.REPLACE_EXISTING);
-					int mode = targzEntry.getMode();
-					if (mode != 0 && !OsUtils.isWindows()) {
-						Set<PosixFilePermission> permissions = PosixFilePermissionSupport.toPosixFilePermissions(mode);
-						Files.setPosixFilePermissions(entry, permissions);
+			}
+			if (targzEntry.isDirectory()) {
+				createDirectories(entry, knownDirs);
+			} else if (targzEntry.isSymbolicLink()) {
+				Path linkTarget = Paths.get(targzEntry.getLinkName());
+				createDirectories(entry.getParent(), knownDirs);
+				if (!Files.exists(entry)) {
+					try {
+						Files.createSymbolicLink(entry, linkTarget);
+					} catch (IOException e) {
+						LOGGER.log(Level.WARNING, "Could not create symbolic link " + entry + " -> "
+								+ linkTarget + " due to " + e.getMessage(), e);
 					}
 				}
+			} else {
+				createDirectories(entry.getParent(), knownDirs);
+				int mode = targzEntry.getMode();
+				Set<PosixFilePermission> permissions = mode != 0 && posix
+						? PosixFilePermissionSupport.toPosixFilePermissions(mode)
+						: null;
+				writeFile(tarArchiveInputStream, entry, permissions, buffer);
+			}
+		}
+	}
+
+	private static void createDirectories(Path dir, Set<Path> knownDirs) throws IOException {
+		if (knownDirs.add(dir)) {
+			Files.createDirectories(dir);
+			// All parents exist now as well
+			Path parent = dir.getParent();
+			while (parent != null && knownDirs.add(parent)) {
+				parent = parent.getParent();
+			}
+		}
+	}
+
+	/**
+	 * Writes the contents of the given stream to a new file that gets created
+	 * with the given permissions right away, replacing any existing file. The
+	 * permissions only need to be set separately if the umask would remove some
+	 * of them.
+	 */
+	private static void writeFile(InputStream in, Path file, Set<PosixFilePermission> permissions, byte[] buffer)
+			throws IOException {
+		FileAttribute<?>[] attrs = permissions != null
+				? new FileAttribute<?>[] { PosixFilePermissions.asFileAttribute(permissions) }
+				: new FileAttribute<?>[0];
+		SeekableByteChannel channel;
+		try {
+			channel = Files.newByteChannel(file, CREATE_NEW_FILE, attrs);
+		} catch (FileAlreadyExistsException e) {
+			Files.delete(file);
+			channel = Files.newByteChannel(file, CREATE_NEW_FILE, attrs);
+		}
+		try (OutputStream out = Channels.newOutputStream(channel)) {
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				out.write(buffer, 0, n);
 			}
 		}
+		if (permissions != null && !PosixFilePermissionSupport.survivesUmask(permissions)) {
+			Files.setPosixFilePermissions(file, permissions);
+		}
 	}
 }
 
@@ -189,9 +457,36 @@ class PosixFilePermissionSupport {
 	private static final int OTHERS_WRITE_FILEMODE = 0b000_000_010;
 	private static final int OTHERS_EXEC_FILEMODE = 0b000_000_001;
 
+	private static volatile Set<PosixFilePermission> umaskAllowed;
+
 	private PosixFilePermissionSupport() {
 	}
 
+	/**
+	 * Returns whether a file created with the given permissions actually ends up
+	 * having all of them, which is not the case when the process' umask removes
+	 * some. The umask is determined once by creating a temporary file.
+	 */
+	static boolean survivesUmask(Set<PosixFilePermission> permissions) {
+		Set<PosixFilePermission> allowed = umaskAllowed;
+		if (allowed == null) {
+			allowed = EnumSet.noneOf(PosixFilePermission.class);
+			try {
+				Path tmp = Files.createTempFile("umask", ".tmp", PosixFilePermissions
+					.asFileAttribute(EnumSet.allOf(PosixFilePermission.class)));
+				try {
+					allowed = Files.getPosixFilePermissions(tmp);
+				} finally {
+					Files.deleteIfExists(tmp);
+				}
+			} catch (IOException | UnsupportedOperationException e) {
+				// We'll just always set the permissions explicitly
+			}
+			umaskAllowed = allowed;
+		}
+		return allowed.containsAll(permissions);
+	}
+
 	static Set<PosixFilePermission> toPosixFilePermissions(int octalFileMode) {
 		Set<PosixFilePermission> permissions = new LinkedHashSet<>();
 		// Owner
@@ -5,11 +5,20 @@ import static org.hamcrest.Matchers.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.jspecify.annotations.NonNull;
 import org.junit.jupiter.api.Test;
 
 import dev.jbang.devkitman.jdkproviders.JBangJdkProvider;
+import dev.jbang.devkitman.jdkproviders.MockJdkProvider;
 
 public class TestJdkInstaller extends BaseTest {
 
@@ -38,4 +47,67 @@ public class TestJdkInstaller extends BaseTest {
 		assertThat(jdk.provider(), instanceOf(JBangJdkProvider.class));
 		assertThat(jdk.home().toString(), endsWith(File.separator + "21.0.6+7-temurin-jbang"));
 	}
+
+	@Test
+	void testConcurrentInstallsOfSameJdk() throws Exception {
+		AtomicInteger installs = new AtomicInteger();
+		// The install only finishes once both callers have started
+		CountDownLatch started = new CountDownLatch(2);
+		JdkManager jm = JdkManager.builder().providers(countingProvider(installs, () -> {
+			try {
+				if (!started.await(10, TimeUnit.SECONDS)) {
+					throw new IllegalStateException("Second install wasn't started");
+				}
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		})).build();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<Jdk.InstalledJdk> f1 = executor.submit(() -> {
+				started.countDown();
+				return jm.getOrInstallJdk("12");
+			});
+			Future<Jdk.InstalledJdk> f2 = executor.submit(() -> {
+				started.countDown();
+				return jm.getOrInstallJdk("12");
+			});
+			Path home1 = f1.get().home();
+			Path home2 = f2.get().home();
+			assertThat(home1, equalTo(home2));
+			assertThat(installs.get(), is(1));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void testReinstallOfInstalledJdk() {
+		AtomicInteger installs = new AtomicInteger();
+		MockJdkProvider provider = countingProvider(installs, () -> {
+		});
+		JdkManager jm = JdkManager.builder().providers(provider).build();
+		Jdk.AvailableJdk jdk = provider.getAvailableByIdOrToken("12.0.7-dummy");
+		Jdk.InstalledJdk first = jm.installJdk(jdk);
+		// Only concurrent installs are joined, asking for an install after the
+		// first one has finished installs the JDK again
+		Jdk.InstalledJdk second = jm.installJdk(jdk);
+		assertThat(second.home(), equalTo(first.home()));
+		assertThat(installs.get(), is(2));
+	}
+
+	// A provider whose installed JDKs can be found by the id they were installed
+	// with
+	private MockJdkProvider countingProvider(AtomicInteger installs, Runnable beforeInstall) {
+		return new MockJdkProvider(config.installPath(), v -> {
+			installs.incrementAndGet();
+			beforeInstall.run();
+			return createMockJdk(v + "-dummy", v);
+		}, "12.0.7") {
+			@Override
+			public boolean isValidId(@NonNull String id) {
+				return id.endsWith("-dummy");
+			}
+		};
+	}
 }
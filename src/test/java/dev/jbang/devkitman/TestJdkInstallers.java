@@ -6,9 +6,11 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.time.Duration;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,6 +18,9 @@ import org.junit.jupiter.api.io.TempDir;
 
 import dev.jbang.devkitman.jdkinstallers.FoojayJdkInstaller;
 import dev.jbang.devkitman.jdkinstallers.MetadataJdkInstaller;
+import dev.jbang.devkitman.util.CatalogSnapshot;
+import dev.jbang.devkitman.util.JdkProfile;
+import dev.jbang.devkitman.util.NetUtils;
 
 public class TestJdkInstallers extends BaseTest {
 	private JdkInstallers.Discovery.Config iconfig;
@@ -70,6 +75,62 @@ public class TestJdkInstallers extends BaseTest {
 				is(instanceOf(FoojayJdkInstaller.class)));
 	}
 
+	@Test
+	void testProfileConfig() {
+		JdkInstallers.instance()
+			.parseName(
+					iconfig,
+					"metadata;profile=runtime",
+					(prov, config) -> {
+						assertThat(config.profile(), is(JdkProfile.runtime));
+						return new MetadataJdkInstaller(createJbangProvider());
+					});
+		assertThat(iconfig.profile(), is(JdkProfile.full));
+	}
+
+	@Test
+	void testHttpCacheConfig() {
+		JdkInstallers.instance()
+			.parseName(
+					iconfig,
+					"metadata;cachemaxage=720;cachestale=1440",
+					(prov, config) -> {
+						assertThat(config.httpCacheMaxAge(), is(Duration.ofHours(12)));
+						assertThat(config.httpCacheStaleWhileRevalidate(), is(Duration.ofDays(1)));
+						return new MetadataJdkInstaller(createJbangProvider());
+					});
+		assertThat(iconfig.httpCacheMaxAge(), is(NetUtils.DEFAULT_CACHE_MAX_AGE));
+		assertThat(iconfig.httpCacheStaleWhileRevalidate(), is(Duration.ZERO));
+	}
+
+	@Test
+	void testCatalogSnapshotConfig() {
+		assertThat(iconfig.catalogSnapshot(), nullValue());
+		JdkInstallers.instance()
+			.parseName(
+					iconfig,
+					"metadata;catalogmaxage=30",
+					(prov, config) -> {
+						assertThat(config.catalogSnapshot().maxAge(), is(Duration.ofMinutes(30)));
+						assertThat(config.catalogSnapshot().maxStale(), is(CatalogSnapshot.DEFAULT_MAX_STALE));
+						return new MetadataJdkInstaller(createJbangProvider());
+					});
+		JdkInstallers.instance()
+			.parseName(
+					iconfig,
+					"metadata;catalogmaxage=30;catalogmaxstale=120",
+					(prov, config) -> {
+						assertThat(config.catalogSnapshot().maxStale(), is(Duration.ofHours(2)));
+						return new MetadataJdkInstaller(createJbangProvider());
+					});
+	}
+
+	@Test
+	void testHttpCacheHasOwnFolder() {
+		assertThat(iconfig.httpCachePath().getParent(), equalTo(iconfig.cachePath()));
+		assertThat(iconfig.httpCachePath().getFileName().toString(), equalTo("http"));
+	}
+
 	@Test
 	void testByName() {
 		assertThat(
@@ -9,10 +9,12 @@ import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Disabled;
@@ -22,6 +24,7 @@ import org.junit.jupiter.api.condition.OS;
 import org.junit.jupiter.api.io.TempDir;
 
 import dev.jbang.devkitman.jdkproviders.DefaultJdkProvider;
+import dev.jbang.devkitman.jdkproviders.JBangJdkProvider;
 import dev.jbang.devkitman.jdkproviders.JavaHomeJdkProvider;
 import dev.jbang.devkitman.jdkproviders.LinkedJdkProvider;
 import dev.jbang.devkitman.jdkproviders.MultiHomeJdkProvider;
@@ -80,6 +83,76 @@ public class TestJdkManager extends BaseTest {
 		assertThat(jdks, hasSize(greaterThanOrEqualTo(5)));
 	}
 
+	@Test
+	void testParallelLookupsKeepProviderOrder() {
+		Arrays.asList(11, 12, 13).forEach(this::createMockJdk);
+		JdkManager jm = jdkManager();
+		List<String> ids = jm.listInstalledJdks().stream().map(Jdk::id).collect(Collectors.toList());
+		String id12 = jm.getInstalledJdk("12").id();
+		String idOpen = jm.getInstalledJdk("12+").id();
+
+		JdkManager pjm = JdkManager.builder().providers(jm.providers()).parallelism(4).build();
+		assertThat(pjm.listInstalledJdks().stream().map(Jdk::id).collect(Collectors.toList()), equalTo(ids));
+		assertThat(pjm.getInstalledJdk("12").id(), equalTo(id12));
+		assertThat(pjm.getInstalledJdk("12+").id(), equalTo(idOpen));
+		assertThat(pjm.getInstalledJdk("13.0.7-distro-jbang").id(), equalTo("13.0.7-distro-jbang"));
+		assertThat(pjm.getInstalledJdk("14"), nullValue());
+	}
+
+	@Test
+	void testCloseClosesInstallers() {
+		AtomicBoolean closed = new AtomicBoolean();
+		JBangJdkProvider prov = createJbangProvider().installer(new JdkInstaller() {
+			@Override
+			public void close() {
+				closed.set(true);
+			}
+		});
+		JdkManager.builder().providers(prov).build().close();
+		assertThat(closed.get(), is(true));
+	}
+
+	@Test
+	void testCachedResolutions() {
+		Arrays.asList(11, 12).forEach(this::createMockJdk);
+		JdkManager jm = JdkManager.builder().providers(jdkManager().providers()).cacheResolutions().build();
+		Jdk.InstalledJdk jdk12 = jm.getInstalledJdk("12");
+		assertThat(jm.getInstalledJdk("12"), sameInstance(jdk12));
+		assertThat(jm.getInstalledJdk("12", JdkProvider.Predicates.name("jbang")),
+				sameInstance(jm.getInstalledJdk("12", JdkProvider.Predicates.name("JBang"))));
+
+		// Lookups that find nothing are not cached without a TTL
+		assertThat(jm.getInstalledJdk("13"), nullValue());
+		createMockJdk(13);
+		assertThat(jm.getInstalledJdk("13"), not(nullValue()));
+
+		// Other changes made behind the manager's back are not noticed...
+		FileUtils.deletePath(jdk12.home());
+		assertThat(jm.getInstalledJdk("12"), sameInstance(jdk12));
+		// ...until the cache gets cleared
+		jm.clearResolutionCache();
+		assertThat(jm.getInstalledJdk("12"), nullValue());
+		createMockJdk(12);
+
+		// Changes made through the manager clear the cache automatically
+		jm.getInstalledJdk("12", JdkProvider.Predicates.canInstall).uninstall();
+		assertThat(jm.getInstalledJdk("12"), nullValue());
+	}
+
+	@Test
+	void testCachedResolutionsWithTtl() {
+		JdkManager jm = JdkManager.builder()
+			.providers(jdkManager().providers())
+			.cacheResolutions(Duration.ofHours(1))
+			.build();
+		// With a TTL even lookups that find nothing are cached
+		assertThat(jm.getInstalledJdk("13"), nullValue());
+		createMockJdk(13);
+		assertThat(jm.getInstalledJdk("13"), nullValue());
+		jm.clearResolutionCache();
+		assertThat(jm.getInstalledJdk("13"), not(nullValue()));
+	}
+
 	@Test
 	void testDefault() {
 		Arrays.asList(11, 12, 13).forEach(this::createMockJdk);
@@ -8,8 +8,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -360,4 +362,35 @@ public class FoojayJdkInstallerTest extends BaseTest {
 				"[zulu, trava, temurin, semeru_certified, semeru, sap_machine, redhat, oracle_open_jdk, oracle, openlogic, ojdk_build, microsoft, mandrel, liberica_native, liberica, kona, jetbrains, graalvm_community, graalvm_ce8, graalvm_ce19, graalvm_ce17, graalvm_ce16, graalvm_ce11, graalvm, gluon_graalvm, dragonwell, corretto, bisheng, aoj_openj9, aoj]"));
 	}
 
+	@Test
+	public void testCatalogIsKeptForMaxAge() {
+		AtomicInteger requests = new AtomicInteger();
+		RemoteAccessProvider rap = new RemoteAccessProvider() {
+			@Override
+			public Path downloadFromUrl(String url) throws IOException {
+				throw new IOException("Unexpected URL: " + url);
+			}
+
+			@Override
+			public <T> T resultFromUrl(String url, FunctionWithError<InputStream, T> streamToObject)
+					throws IOException {
+				requests.incrementAndGet();
+				return streamToObject.apply(getClass().getResourceAsStream("/testFoojayInstall.json"));
+			}
+		};
+		installer.remoteAccessProvider(rap);
+
+		List<Jdk.AvailableJdk> jdks = installer.listAvailable().collect(Collectors.toList());
+		assertThat(jdks, is(not(empty())));
+		// Version lookups are answered by the list that was already loaded
+		assertThat(installer.getAvailableByVersion(21, false), notNullValue());
+		assertThat(installer.getAvailableByIdOrToken(jdks.get(0).id()), sameInstance(jdks.get(0)));
+		assertThat(requests.get(), equalTo(1));
+
+		// Once the catalog is too old it is requested again
+		installer.catalogMaxAge(Duration.ZERO);
+		assertThat(installer.listAvailable().count(), greaterThan(0L));
+		assertThat(requests.get(), equalTo(2));
+	}
+
 }
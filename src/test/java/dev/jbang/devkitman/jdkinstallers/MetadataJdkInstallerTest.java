@@ -4,12 +4,24 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -19,8 +31,11 @@ import org.junit.jupiter.api.io.TempDir;
 import dev.jbang.devkitman.BaseTest;
 import dev.jbang.devkitman.Jdk;
 import dev.jbang.devkitman.JdkDistroQuery;
+import dev.jbang.devkitman.JdkInstallers;
 import dev.jbang.devkitman.JdkManager;
 import dev.jbang.devkitman.jdkproviders.JBangJdkProvider;
+import dev.jbang.devkitman.util.CatalogSnapshot;
+import dev.jbang.devkitman.util.FileUtils;
 import dev.jbang.devkitman.util.FunctionWithError;
 import dev.jbang.devkitman.util.RemoteAccessProvider;
 
@@ -97,6 +112,82 @@ public class MetadataJdkInstallerTest extends BaseTest {
 		assertThat(versions, hasItems(11, 17, 21, 23));
 	}
 
+	@Test
+	public void testListAvailableFromSnapshot() {
+		CatalogSnapshot snapshot = new CatalogSnapshot(config.cachePath().resolve("catalogs"), Duration.ofHours(1));
+		installer.catalogSnapshot(snapshot);
+		List<Jdk.AvailableJdk> jdks = installer.listAvailable().collect(Collectors.toList());
+		assertThat(jdks, is(not(empty())));
+
+		// A new installer that can't reach the metadata API still sees the same JDKs
+		MetadataJdkInstaller other = new MetadataJdkInstaller(provider)
+			.distros("temurin")
+			.jvmImpl("hotspot")
+			.catalogSnapshot(snapshot)
+			.remoteAccessProvider(new RemoteAccessProvider() {
+				@Override
+				public Path downloadFromUrl(String url) throws IOException {
+					throw new IOException("Offline");
+				}
+
+				@Override
+				public <T> T resultFromUrl(String url, FunctionWithError<InputStream, T> streamToObject)
+						throws IOException {
+					throw new IOException("Offline");
+				}
+			});
+		List<Jdk.AvailableJdk> cached = other.listAvailable().collect(Collectors.toList());
+		assertThat(cached.stream().map(Jdk.AvailableJdk::id).collect(Collectors.toList()),
+				contains(jdks.stream().map(Jdk.AvailableJdk::id).toArray()));
+		MetadataJdkInstaller.AvailableMetadataJdk first = (MetadataJdkInstaller.AvailableMetadataJdk) cached.get(0);
+		MetadataJdkInstaller.AvailableMetadataJdk expected = (MetadataJdkInstaller.AvailableMetadataJdk) jdks.get(0);
+		assertThat(first.downloadUrl, equalTo(expected.downloadUrl));
+		assertThat(first.size, is(expected.size));
+		assertThat(first.tags(), equalTo(expected.tags()));
+		assertThat(other.getAvailableByIdOrToken(expected.id()), notNullValue());
+	}
+
+	@Test
+	public void testIncompleteCatalogIsNotStored() {
+		Path dir = config.cachePath().resolve("catalogs");
+		MetadataJdkInstaller partial = new MetadataJdkInstaller(provider)
+			.distros("temurin")
+			.jvmImpl("hotspot")
+			.catalogSnapshot(new CatalogSnapshot(dir, Duration.ofHours(1)))
+			.remoteAccessProvider(new RemoteAccessProvider() {
+				@Override
+				public Path downloadFromUrl(String url) throws IOException {
+					throw new IOException("Offline");
+				}
+
+				@Override
+				public <T> T resultFromUrl(String url, FunctionWithError<InputStream, T> streamToObject)
+						throws IOException {
+					if (url.contains("/ea/")) {
+						throw new IOException("Offline");
+					}
+					return streamToObject.apply(getClass().getResourceAsStream("/testMetadataInstall.json"));
+				}
+			});
+		// The GA releases are still listed, but they don't end up in a snapshot
+		assertThat(partial.listAvailable().count(), greaterThan(0L));
+		assertThat(Files.exists(dir), is(false));
+	}
+
+	@Test
+	public void testSnapshotIsReadOnce() throws IOException {
+		Path dir = config.cachePath().resolve("catalogs");
+		installer.catalogSnapshot(new CatalogSnapshot(dir, Duration.ofHours(1)));
+		List<Jdk.AvailableJdk> jdks = installer.listAvailable().collect(Collectors.toList());
+		assertThat(jdks, is(not(empty())));
+
+		// The installer keeps using the entries it already has
+		FileUtils.deletePath(dir);
+		Jdk.AvailableJdk jdk = installer.getAvailableByIdOrToken(jdks.get(0).id());
+		assertThat(jdk, sameInstance(jdks.get(0)));
+		assertThat(Files.exists(dir), is(false));
+	}
+
 	@Test
 	public void testListAvailableOrderedByVersionDescending() {
 		List<Jdk.AvailableJdk> jdks = installer.listAvailable().collect(Collectors.toList());
@@ -220,6 +311,27 @@ public class MetadataJdkInstallerTest extends BaseTest {
 		assertThat(Files.isDirectory(installDir), is(true));
 	}
 
+	@Test
+	public void testInstallJdkChecksumMismatch() throws IOException {
+		// The metadata for 21 contains a checksum that doesn't match the test archive
+		Jdk.AvailableJdk jdk21 = installer.getAvailableByVersion(21, false);
+		assertThat(jdk21, is(notNullValue()));
+
+		Path installDir = config.installPath().resolve("test-jdk-21");
+		Files.createDirectories(installDir.getParent());
+
+		IllegalStateException exception = assertThrows(
+				IllegalStateException.class,
+				() -> installer.install(jdk21, installDir));
+
+		Throwable cause = exception;
+		while (cause.getCause() != null) {
+			cause = cause.getCause();
+		}
+		assertThat(cause.getMessage(), containsString("Checksum mismatch"));
+		assertThat(Files.exists(installDir), is(false));
+	}
+
 	@Test
 	public void testInstallJdkInvalidType() {
 		// Create a mock JDK from a different installer type
@@ -300,4 +412,238 @@ public class MetadataJdkInstallerTest extends BaseTest {
 		assertThat(distros.toString(), equalTo(
 				"[adoptopenjdk, bisheng, corretto, dragonwell, graalvm, graalvm-community, ibm, java-se-ri, jetbrains, kona, liberica, mandrel, microsoft, openjdk, oracle, oracle-graalvm, redhat, sapmachine, semeru, temurin, trava, zulu]"));
 	}
+
+	@Test
+	public void testListAvailableFetchesConcurrently() {
+		// Each request waits until all 4 (2 distros x GA/EA) have been issued, which
+		// can only happen if they are performed concurrently
+		CountDownLatch allStarted = new CountDownLatch(4);
+		RemoteAccessProvider rap = new RemoteAccessProvider() {
+			@Override
+			public Path downloadFromUrl(String url) throws IOException {
+				throw new IOException("Unexpected URL: " + url);
+			}
+
+			@Override
+			public <T> T resultFromUrl(String url, FunctionWithError<InputStream, T> streamToObject)
+					throws IOException {
+				allStarted.countDown();
+				try {
+					if (!allStarted.await(10, TimeUnit.SECONDS)) {
+						throw new IOException("Requests were not performed concurrently");
+					}
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				if (url.endsWith("/zulu.json")) {
+					throw new IOException("Simulated failure for: " + url);
+				}
+				return streamToObject.apply(getClass().getResourceAsStream("/testMetadataInstall.json"));
+			}
+		};
+		installer.distros("temurin,zulu").remoteAccessProvider(rap);
+
+		List<Jdk.AvailableJdk> jdks = installer.listAvailable().collect(Collectors.toList());
+
+		// The failing distro should not prevent the others from being listed
+		assertThat(jdks, is(not(empty())));
+		assertThat(jdks.get(0).id(), containsString("temurin"));
+	}
+
+	@Test
+	public void testGetAvailableByVersionRacesDistros() throws IOException {
+		String json = new String(readAllBytes(getClass().getResourceAsStream("/testMetadataInstall.json")),
+				StandardCharsets.UTF_8);
+		// The preferred distro only answers once the other one has been asked too
+		CountDownLatch temurinRequested = new CountDownLatch(1);
+		Set<String> requested = ConcurrentHashMap.newKeySet();
+		RemoteAccessProvider rap = new RemoteAccessProvider() {
+			@Override
+			public Path downloadFromUrl(String url) throws IOException {
+				throw new IOException("Unexpected URL: " + url);
+			}
+
+			@Override
+			public <T> T resultFromUrl(String url, FunctionWithError<InputStream, T> streamToObject)
+					throws IOException {
+				requested.add(url);
+				if (url.endsWith("/temurin.json")) {
+					temurinRequested.countDown();
+					return streamToObject.apply(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+				}
+				try {
+					if (!temurinRequested.await(10, TimeUnit.SECONDS)) {
+						throw new IOException("Requests were not performed concurrently");
+					}
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				String zulu = json.replace("\"temurin\"", "\"zulu\"");
+				return streamToObject.apply(new ByteArrayInputStream(zulu.getBytes(StandardCharsets.UTF_8)));
+			}
+		};
+		installer.distros("zulu,temurin").remoteAccessProvider(rap);
+
+		Jdk.AvailableJdk jdk = installer.getAvailableByVersion(21, false);
+		assertThat(jdk, notNullValue());
+		// The distro with the highest priority wins, even though it answered last
+		assertThat(jdk.id(), containsString("zulu"));
+		// EA releases are not needed when a GA release was found
+		assertThat(requested.stream().anyMatch(url -> url.contains("/ea/")), is(false));
+	}
+
+	private static byte[] readAllBytes(InputStream in) throws IOException {
+		try (InputStream is = in) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buf = new byte[8192];
+			int n;
+			while ((n = is.read(buf)) > 0) {
+				out.write(buf, 0, n);
+			}
+			return out.toByteArray();
+		}
+	}
+
+	@Test
+	public void testCatalogIsOnlyFetchedOnce() {
+		AtomicInteger requests = new AtomicInteger();
+		RemoteAccessProvider rap = new RemoteAccessProvider() {
+			@Override
+			public Path downloadFromUrl(String url) throws IOException {
+				throw new IOException("Unexpected URL: " + url);
+			}
+
+			@Override
+			public <T> T resultFromUrl(String url, FunctionWithError<InputStream, T> streamToObject)
+					throws IOException {
+				requests.incrementAndGet();
+				return streamToObject.apply(getClass().getResourceAsStream("/testMetadataInstall.json"));
+			}
+		};
+		installer.remoteAccessProvider(rap);
+
+		List<Jdk.AvailableJdk> jdks = installer.listAvailable().collect(Collectors.toList());
+		assertThat(requests.get(), equalTo(2));
+
+		Jdk.AvailableJdk jdk21 = installer.getAvailableByVersion(21, false);
+		assertThat(jdk21, notNullValue());
+		assertThat(installer.getAvailableByVersion(17, true), notNullValue());
+		assertThat(installer.getAvailableByIdOrToken(jdks.get(0).id()), sameInstance(jdks.get(0)));
+		assertThat(installer.getAvailableByIdOrToken("1.2.3-nonexistent"), nullValue());
+		assertThat(requests.get(), equalTo(2));
+
+		// Once the catalog is too old it is requested again
+		installer.catalogMaxAge(Duration.ZERO);
+		assertThat(installer.listAvailable().count(), greaterThan(0L));
+		assertThat(requests.get(), equalTo(4));
+	}
+
+	@Test
+	public void testIncompleteCatalogIsKept() {
+		AtomicInteger requests = new AtomicInteger();
+		RemoteAccessProvider rap = new RemoteAccessProvider() {
+			@Override
+			public Path downloadFromUrl(String url) throws IOException {
+				throw new IOException("Unexpected URL: " + url);
+			}
+
+			@Override
+			public <T> T resultFromUrl(String url, FunctionWithError<InputStream, T> streamToObject)
+					throws IOException {
+				requests.incrementAndGet();
+				if (url.contains("/ea/") && url.endsWith("/temurin.json")) {
+					throw new FileNotFoundException("No EA releases: " + url);
+				}
+				if (url.endsWith("/zulu.json")) {
+					throw new IOException("Simulated failure for: " + url);
+				}
+				return streamToObject.apply(getClass().getResourceAsStream("/testMetadataInstall.json"));
+			}
+		};
+		installer.distros("temurin,zulu").remoteAccessProvider(rap);
+
+		assertThat(installer.listAvailable().count(), greaterThan(0L));
+		assertThat(requests.get(), equalTo(4));
+		// Neither the missing file nor the failing distro cause everything to be
+		// fetched again right away
+		assertThat(installer.getAvailableByVersion(21, false), notNullValue());
+		assertThat(installer.listAvailable().count(), greaterThan(0L));
+		assertThat(requests.get(), equalTo(4));
+	}
+
+	@Test
+	public void testReadMetadataFiltersWhileParsing() throws IOException {
+		List<MetadataJdkInstaller.MetadataResult> results;
+		try (Reader reader = new InputStreamReader(
+				getClass().getResourceAsStream("/testMetadataInstall.json"), StandardCharsets.UTF_8)) {
+			results = MetadataJdkInstaller.readMetadata(reader, r -> "ga".equals(r.release_type));
+		}
+
+		assertThat(results.stream().map(r -> r.java_version).collect(Collectors.toList()),
+				contains("23.0.2+7", "21.0.5+11", "17.0.13+11", "11.0.25+9"));
+		MetadataJdkInstaller.MetadataResult first = results.get(0);
+		assertThat(first.vendor, equalTo("temurin"));
+		assertThat(first.image_type, equalTo("jdk"));
+		assertThat(first.url, not(emptyOrNullString()));
+		assertThat(first.sha256, not(emptyOrNullString()));
+		assertThat(first.size, notNullValue());
+		assertThat(first.features, empty());
+		// Checksums we don't use are not retained
+		assertThat(first.md5, nullValue());
+	}
+
+	@Test
+	public void testReadMetadataRejectsEarly() throws IOException {
+		// The invalid sizes prove the rest of a rejected entry never gets decoded
+		String json = "["
+				+ "{\"release_type\": \"ga\", \"image_type\": \"jre\", \"size\": \"x\"},"
+				+ "{\"release_type\": \"ga\", \"image_type\": \"jdk\", \"java_version\": \"17.0.1\", \"size\": \"x\"},"
+				+ "{\"release_type\": \"ea\", \"size\": \"x\"},"
+				+ "{\"release_type\": \"ga\", \"image_type\": \"jdk\", \"java_version\": \"21.0.5+11\", \"size\": 42}"
+				+ "]";
+		List<MetadataJdkInstaller.MetadataResult> results = MetadataJdkInstaller.readMetadata(new StringReader(json),
+				new MetadataJdkInstaller.MetadataFilter("ga", "jdk", 21, false));
+		assertThat(results.stream().map(r -> r.java_version).collect(Collectors.toList()), contains("21.0.5+11"));
+		assertThat(results.get(0).size, equalTo(42));
+
+		results = MetadataJdkInstaller.readMetadata(new StringReader(json.replace("\"x\"", "1")),
+				new MetadataJdkInstaller.MetadataFilter("ga", "jdk", 17, true));
+		assertThat(results.stream().map(r -> r.java_version).collect(Collectors.toList()),
+				contains("17.0.1", "21.0.5+11"));
+	}
+
+	@Test
+	public void testCloseOnlyClosesOwnRemoteAccessProvider() throws IOException {
+		AtomicInteger closed = new AtomicInteger();
+		RemoteAccessProvider rap = new RemoteAccessProvider() {
+			@Override
+			public Path downloadFromUrl(String url) throws IOException {
+				throw new IOException("Offline");
+			}
+
+			@Override
+			public void close() {
+				closed.incrementAndGet();
+			}
+		};
+		MetadataJdkInstaller inst = new MetadataJdkInstaller(provider).remoteAccessProvider(rap);
+		inst.close();
+		// The provider was passed in, so it's up to the caller to close it
+		assertThat(closed.get(), is(0));
+
+		JdkInstallers.Discovery.Config cfg = JdkInstallers.config(provider, java.util.Collections.emptyMap(),
+				config.cachePath());
+		MetadataJdkInstaller discovered = (MetadataJdkInstaller) new MetadataJdkInstaller.Discovery().create(cfg);
+		discovered.remoteAccessProvider();
+		discovered.close();
+		// A closed installer doesn't silently create a new, unconfigured provider
+		assertThrows(IllegalStateException.class, discovered::remoteAccessProvider);
+		discovered.close();
+	}
+
+	@Test
+	public void testReadMetadataInvalid() {
+		assertThrows(IOException.class,
+				() -> MetadataJdkInstaller.readMetadata(new StringReader("{\"foo\": 1}"), r -> true));
+	}
 }
@@ -2,17 +2,31 @@ package dev.jbang.devkitman.jdkproviders;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import org.hamcrest.Matchers;
+import org.jspecify.annotations.NonNull;
 import org.junit.jupiter.api.Test;
 
 import dev.jbang.devkitman.BaseTest;
 import dev.jbang.devkitman.Jdk;
+import dev.jbang.devkitman.JdkInstaller;
 import dev.jbang.devkitman.util.FileUtils;
+import dev.jbang.devkitman.util.JdkHomeProbe;
+import dev.jbang.devkitman.util.JdkProfile;
+import dev.jbang.devkitman.util.PathLock;
 
 public class JBangJdkProviderTest extends BaseTest {
 
@@ -74,4 +88,119 @@ public class JBangJdkProviderTest extends BaseTest {
 		// name
 		assertThat("Numeric folder without javac should not be accepted", jdk, Matchers.nullValue());
 	}
+
+	@Test
+	void testJBangProviderUsesInventory() throws IOException {
+		Path jdkHome = config.installPath().resolve("17.0.7-distro-jbang");
+		initMockJdkDir(jdkHome, "17.0.7");
+		// Make sure the folders are old enough for their timestamps to be trusted
+		FileTime past = FileTime.fromMillis(System.currentTimeMillis() - 60_000);
+		Files.setLastModifiedTime(jdkHome, past);
+		Files.setLastModifiedTime(config.installPath(), past);
+
+		JdkInventory inventory = new JdkInventory(config.cachePath().resolve("inventory.json"));
+		JBangJdkProvider provider = createJbangProvider();
+		provider.inventory(inventory);
+		List<Jdk.InstalledJdk> jdks = provider.listInstalled().collect(Collectors.toList());
+		assertThat(jdks, Matchers.hasSize(1));
+		assertThat(jdks.get(0).version(), Matchers.is("17.0.7"));
+
+		// Change the JDK's version without touching the folder timestamps, the
+		// inventory (even a freshly loaded one) should not notice
+		initMockJdkDir(jdkHome, "17.0.8");
+		Files.setLastModifiedTime(jdkHome, past);
+		Files.setLastModifiedTime(config.installPath(), past);
+		provider.inventory(new JdkInventory(config.cachePath().resolve("inventory.json")));
+		jdks = provider.listInstalled().collect(Collectors.toList());
+		assertThat(jdks, Matchers.hasSize(1));
+		assertThat(jdks.get(0).version(), Matchers.is("17.0.7"));
+		assertThat(provider.getInstalledByPath(jdkHome).version(), Matchers.is("17.0.7"));
+
+		// Once the JDK folder's timestamp changes the JDK gets identified again
+		Files.setLastModifiedTime(jdkHome, FileTime.fromMillis(past.toMillis() + 1000));
+		jdks = provider.listInstalled().collect(Collectors.toList());
+		assertThat(jdks, Matchers.hasSize(1));
+		assertThat(jdks.get(0).version(), Matchers.is("17.0.8"));
+	}
+
+	@Test
+	void testInstallReturnsExistingInstall() throws Exception {
+		Path jdkHome = config.installPath().resolve("17.0.7-distro-jbang");
+		AtomicInteger installs = new AtomicInteger();
+		JBangJdkProvider provider = createJbangProvider();
+		provider.installer(new JdkInstaller() {
+			@Override
+			public Jdk.@NonNull InstalledJdk install(Jdk.@NonNull AvailableJdk jdk, Path installDir) {
+				installs.incrementAndGet();
+				throw new IllegalStateException("Should not be called");
+			}
+		});
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Jdk.InstalledJdk> install;
+			// Someone else is installing the JDK while the caller waits for the lock
+			try (PathLock lock = PathLock.lock(jdkHome)) {
+				install = executor.submit(() -> provider
+					.install(new Jdk.AvailableJdk.Default(provider, "17.0.7-distro-jbang", "17.0.7", null)));
+				Thread.sleep(100);
+				initMockJdkDir(jdkHome, "17.0.7");
+			}
+			assertThat(install.get().home(), Matchers.equalTo(jdkHome));
+			assertThat(installs.get(), Matchers.is(0));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void testInstallReplacesExistingInstall() {
+		// Without waiting for anyone an explicit install always installs
+		Path jdkHome = config.installPath().resolve("17.0.7-distro-jbang");
+		initMockJdkDir(jdkHome, "17.0.7");
+
+		AtomicInteger installs = new AtomicInteger();
+		JBangJdkProvider provider = createJbangProvider();
+		provider.installer(new JdkInstaller() {
+			@Override
+			public Jdk.@NonNull InstalledJdk install(Jdk.@NonNull AvailableJdk jdk, Path installDir) {
+				installs.incrementAndGet();
+				throw new IllegalStateException("Installing");
+			}
+		});
+		Jdk.AvailableJdk jdk = new Jdk.AvailableJdk.Default(provider, "17.0.7-distro-jbang", "17.0.7", null);
+		assertThrows(IllegalStateException.class, () -> provider.install(jdk));
+		assertThat(installs.get(), Matchers.is(1));
+	}
+
+	@Test
+	void testInstallReplacesInstallWithSmallerProfile() throws Exception {
+		Path jdkHome = config.installPath().resolve("17.0.7-distro-jbang");
+		AtomicInteger installs = new AtomicInteger();
+		JBangJdkProvider provider = createJbangProvider();
+		provider.installer(new JdkInstaller() {
+			@Override
+			public Jdk.@NonNull InstalledJdk install(Jdk.@NonNull AvailableJdk jdk, Path installDir) {
+				installs.incrementAndGet();
+				throw new IllegalStateException("Installing");
+			}
+		});
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Jdk.InstalledJdk> install;
+			try (PathLock lock = PathLock.lock(jdkHome)) {
+				install = executor.submit(() -> provider
+					.install(new Jdk.AvailableJdk.Default(provider, "17.0.7-distro-jbang", "17.0.7", null)));
+				Thread.sleep(100);
+				initMockJdkDir(jdkHome, "17.0.7");
+				JdkProfile.runtime.record(jdkHome);
+				assertThat(new JdkHomeProbe(jdkHome).tags(), Matchers.hasItem(Jdk.Default.Tags.Runtime.name()));
+			}
+			// The concurrent runtime install doesn't have everything a full install has
+			ExecutionException e = assertThrows(ExecutionException.class, install::get);
+			assertThat(e.getCause(), Matchers.instanceOf(IllegalStateException.class));
+			assertThat(installs.get(), Matchers.is(1));
+		} finally {
+			executor.shutdown();
+		}
+	}
 }
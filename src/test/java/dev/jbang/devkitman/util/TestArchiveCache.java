@@ -0,0 +1,62 @@
+package dev.jbang.devkitman.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.jbang.devkitman.BaseTest;
+
+public class TestArchiveCache extends BaseTest {
+
+	@Test
+	void testPutAndGet(@TempDir Path dir) throws IOException {
+		ArchiveCache cache = new ArchiveCache(dir.resolve("cache"), 1024);
+		Path archive = createArchive(dir, "jdk.tar.gz", 100);
+		String sha = ArchiveCache.sha256(archive);
+
+		Path cached = cache.put(null, "https://example.com/jdk.tar.gz", archive);
+		assertThat(Files.exists(archive), is(false));
+		assertThat(cached.getFileName().toString(), equalTo("jdk.tar.gz"));
+		assertThat(cache.get(null, "https://example.com/jdk.tar.gz", 100), equalTo(cached));
+		// The same contents can be found by their checksum, no matter the URL
+		assertThat(cache.get(sha, "https://example.com/other.tar.gz", -1), equalTo(cached));
+		assertThat(cache.get(null, "https://example.com/other.tar.gz", -1), nullValue());
+	}
+
+	@Test
+	void testSizeMismatch(@TempDir Path dir) throws IOException {
+		ArchiveCache cache = new ArchiveCache(dir.resolve("cache"), 1024);
+		cache.put(null, "https://example.com/jdk.zip", createArchive(dir, "jdk.zip", 100));
+		assertThat(cache.get(null, "https://example.com/jdk.zip", 99), nullValue());
+		assertThat(cache.get(null, "https://example.com/jdk.zip", -1), nullValue());
+	}
+
+	@Test
+	void testEvictLeastRecentlyUsed(@TempDir Path dir) throws IOException {
+		ArchiveCache cache = new ArchiveCache(dir.resolve("cache"), 250);
+		Path a1 = cache.put(null, "https://example.com/1.zip", createArchive(dir, "1.zip", 100));
+		Path a2 = cache.put(null, "https://example.com/2.zip", createArchive(dir, "2.zip", 100));
+		Files.setLastModifiedTime(a1, FileTime.fromMillis(1000));
+		Files.setLastModifiedTime(a2, FileTime.fromMillis(2000));
+		cache.put(null, "https://example.com/3.zip", createArchive(dir, "3.zip", 100));
+		assertThat(cache.get(null, "https://example.com/1.zip", -1), nullValue());
+		assertThat(cache.get(null, "https://example.com/2.zip", -1), not(nullValue()));
+		assertThat(cache.get(null, "https://example.com/3.zip", -1), not(nullValue()));
+	}
+
+	private static Path createArchive(Path dir, String name, int size) throws IOException {
+		byte[] data = new byte[size];
+		for (int i = 0; i < size; i++) {
+			data[i] = (byte) (name.hashCode() + i);
+		}
+		Path dlDir = Files.createTempDirectory(dir, "download");
+		return Files.write(dlDir.resolve(name), data);
+	}
+}
@@ -0,0 +1,173 @@
+package dev.jbang.devkitman.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.jbang.devkitman.BaseTest;
+
+public class TestCatalogSnapshot extends BaseTest {
+
+	@Test
+	void testRoundtrip(@TempDir Path dir) throws IOException {
+		CatalogSnapshot snapshot = new CatalogSnapshot(dir.resolve("catalogs"), Duration.ofHours(1));
+		snapshot.put("source", Arrays.asList(
+				entry("21-temurin", "21.0.2"),
+				new CatalogSnapshot.Entry("22-temurin-jre", "22.0.1", "https://example.com/22.zip", null, null, -1,
+						Collections.emptySet())));
+
+		List<CatalogSnapshot.Entry> entries = snapshot.read("source");
+		assertThat(entries, hasSize(2));
+		CatalogSnapshot.Entry first = entries.get(0);
+		assertThat(first.id, equalTo("21-temurin"));
+		assertThat(first.version, equalTo("21.0.2"));
+		assertThat(first.url, equalTo("https://example.com/21.0.2.tar.gz"));
+		assertThat(first.infoUrl, equalTo("https://example.com/info"));
+		assertThat(first.checksum.algorithm(), equalTo(Checksum.SHA_256));
+		assertThat(first.checksum.value(), equalTo("abcdef"));
+		assertThat(first.size, is(1234L));
+		assertThat(first.tags, containsInAnyOrder("ga", "jdk"));
+		CatalogSnapshot.Entry second = entries.get(1);
+		assertThat(second.infoUrl, nullValue());
+		assertThat(second.checksum, nullValue());
+		assertThat(second.size, is(-1L));
+		assertThat(second.tags, empty());
+
+		// Each source has its own snapshot
+		assertThat(snapshot.read("other"), nullValue());
+	}
+
+	@Test
+	void testLoadsWhenMissing(@TempDir Path dir) throws IOException {
+		CatalogSnapshot snapshot = new CatalogSnapshot(dir.resolve("catalogs"), Duration.ofHours(1));
+		AtomicInteger loads = new AtomicInteger();
+		List<CatalogSnapshot.Entry> entries = snapshot.get("source", () -> {
+			loads.incrementAndGet();
+			return Collections.singletonList(entry("21-temurin", "21.0.2"));
+		});
+		assertThat(entries, hasSize(1));
+		assertThat(snapshot.get("source", () -> {
+			loads.incrementAndGet();
+			return Collections.emptyList();
+		}), hasSize(1));
+		assertThat(loads.get(), is(1));
+		// No temporary files were left behind
+		try (Stream<Path> files = Files.list(dir.resolve("catalogs"))) {
+			assertThat(files.collect(Collectors.toList()), hasSize(1));
+		}
+	}
+
+	@Test
+	void testRefreshesInBackground(@TempDir Path dir) throws Exception {
+		CatalogSnapshot snapshot = new CatalogSnapshot(dir.resolve("catalogs"), Duration.ofMinutes(10));
+		snapshot.put("source", Collections.singletonList(entry("21-temurin", "21.0.2")));
+		setAge(dir, Duration.ofHours(1));
+
+		CountDownLatch loaded = new CountDownLatch(1);
+		List<CatalogSnapshot.Entry> entries = snapshot.get("source", () -> {
+			loaded.countDown();
+			return Collections.singletonList(entry("21-temurin", "21.0.3"));
+		});
+		// The old snapshot is returned right away
+		assertThat(entries.get(0).version, equalTo("21.0.2"));
+		assertThat(loaded.await(10, TimeUnit.SECONDS), is(true));
+		for (int i = 0; i < 100 && "21.0.2".equals(snapshot.read("source").get(0).version); i++) {
+			Thread.sleep(50);
+		}
+		assertThat(snapshot.read("source").get(0).version, equalTo("21.0.3"));
+	}
+
+	@Test
+	void testPassesRefreshToListener(@TempDir Path dir) throws Exception {
+		CatalogSnapshot snapshot = new CatalogSnapshot(dir.resolve("catalogs"), Duration.ofMinutes(10));
+		snapshot.put("source", Collections.singletonList(entry("21-temurin", "21.0.2")));
+		setAge(dir, Duration.ofHours(1));
+
+		CompletableFuture<List<CatalogSnapshot.Entry>> refreshed = new CompletableFuture<>();
+		List<CatalogSnapshot.Entry> entries = snapshot.get("source",
+				() -> Collections.singletonList(entry("21-temurin", "21.0.3")), refreshed::complete);
+		assertThat(entries.get(0).version, equalTo("21.0.2"));
+		// The listener is only called after the refreshed snapshot was stored
+		assertThat(refreshed.get(10, TimeUnit.SECONDS).get(0).version, equalTo("21.0.3"));
+		assertThat(snapshot.read("source").get(0).version, equalTo("21.0.3"));
+	}
+
+	@Test
+	void testDoesNotStoreIncompleteCatalog(@TempDir Path dir) throws IOException {
+		CatalogSnapshot snapshot = new CatalogSnapshot(dir.resolve("catalogs"), Duration.ofHours(1));
+		List<CatalogSnapshot.Entry> entries = snapshot.get("source", () -> {
+			throw new CatalogSnapshot.IncompleteCatalogException(
+					Collections.singletonList(entry("21-temurin", "21.0.2")), new IOException("Offline"));
+		});
+		assertThat(entries, hasSize(1));
+		assertThat(snapshot.read("source"), nullValue());
+	}
+
+	@Test
+	void testIgnoresTooOldSnapshot(@TempDir Path dir) throws IOException {
+		CatalogSnapshot snapshot = new CatalogSnapshot(dir.resolve("catalogs"), Duration.ofMinutes(10),
+				Duration.ofHours(2));
+		snapshot.put("source", Collections.singletonList(entry("21-temurin", "21.0.2")));
+		setAge(dir, Duration.ofHours(3));
+
+		List<CatalogSnapshot.Entry> entries = snapshot.get("source",
+				() -> Collections.singletonList(entry("21-temurin", "21.0.3")));
+		assertThat(entries.get(0).version, equalTo("21.0.3"));
+		assertThat(snapshot.read("source").get(0).version, equalTo("21.0.3"));
+	}
+
+	@Test
+	void testMaxStale(@TempDir Path dir) {
+		assertThat(new CatalogSnapshot(dir, Duration.ofHours(1)).maxStale(), is(CatalogSnapshot.DEFAULT_MAX_STALE));
+		assertThat(new CatalogSnapshot(dir, Duration.ofDays(2)).maxStale(), is(Duration.ofDays(2)));
+		assertThrows(IllegalArgumentException.class,
+				() -> new CatalogSnapshot(dir, Duration.ofHours(2), Duration.ofHours(1)));
+	}
+
+	@Test
+	void testIgnoresCorruptSnapshot(@TempDir Path dir) throws IOException {
+		CatalogSnapshot snapshot = new CatalogSnapshot(dir.resolve("catalogs"), Duration.ofHours(1));
+		snapshot.put("source", Collections.singletonList(entry("21-temurin", "21.0.2")));
+		try (Stream<Path> files = Files.list(dir.resolve("catalogs"))) {
+			Path file = files.findFirst().get();
+			byte[] data = Files.readAllBytes(file);
+			Files.write(file, Arrays.copyOf(data, data.length - 10));
+		}
+		assertThat(snapshot.read("source"), nullValue());
+		assertThat(snapshot.get("source", () -> Collections.singletonList(entry("21-temurin", "21.0.3")))
+			.get(0).version, equalTo("21.0.3"));
+	}
+
+	private static void setAge(Path dir, Duration age) throws IOException {
+		try (Stream<Path> files = Files.list(dir.resolve("catalogs"))) {
+			for (Path file : files.collect(Collectors.toList())) {
+				Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - age.toMillis()));
+			}
+		}
+	}
+
+	private static CatalogSnapshot.Entry entry(String id, String version) {
+		return new CatalogSnapshot.Entry(id, version, "https://example.com/" + version + ".tar.gz",
+				"https://example.com/info", new Checksum(Checksum.SHA_256, "abcdef"), 1234,
+				new HashSet<>(Arrays.asList("ga", "jdk")));
+	}
+}
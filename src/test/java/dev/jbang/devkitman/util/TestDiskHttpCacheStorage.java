@@ -0,0 +1,205 @@
+package dev.jbang.devkitman.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.impl.cache.HeapResource;
+import org.apache.hc.client5.http.impl.cache.HttpCacheEntryFactory;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.apache.hc.core5.http.message.BasicHttpRequest;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.apache.hc.core5.http.message.HeaderGroup;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.jbang.devkitman.BaseTest;
+
+public class TestDiskHttpCacheStorage extends BaseTest {
+
+	@Test
+	void testPutAndGet(@TempDir Path dir) throws IOException {
+		DiskHttpCacheStorage storage = new DiskHttpCacheStorage(dir.resolve("cache"));
+		storage.putEntry("{https://example.com/a?x=1}", entry("first", "\"v1\""));
+
+		HttpCacheEntry entry = storage.getEntry("{https://example.com/a?x=1}");
+		assertThat(entry, notNullValue());
+		assertThat(entry.getStatus(), is(200));
+		assertThat(entry.getRequestMethod(), equalTo("GET"));
+		assertThat(entry.getFirstHeader("ETag").getValue(), equalTo("\"v1\""));
+		assertThat(new String(entry.getResource().get(), StandardCharsets.UTF_8), equalTo("first"));
+		assertThat(entry.getResource().length(), is(5L));
+		// Keys that only differ in their query string are different entries
+		assertThat(storage.getEntry("{https://example.com/a?x=2}"), nullValue());
+	}
+
+	@Test
+	void testReplaceAndRemove(@TempDir Path dir) throws IOException {
+		Path cacheDir = dir.resolve("cache");
+		DiskHttpCacheStorage storage = new DiskHttpCacheStorage(cacheDir);
+		String key = "{https://example.com/a}";
+		storage.putEntry(key, entry("first", "\"v1\""));
+		storage.putEntry(key, entry("second", "\"v2\""));
+		assertThat(new String(storage.getEntry(key).getResource().get(), StandardCharsets.UTF_8),
+				equalTo("second"));
+		// The old body is kept for readers of the previous entry, even by a
+		// compaction, and no temporary files were left behind
+		storage.compact();
+		assertThat(files(cacheDir), hasSize(3));
+
+		// Updating only the headers keeps using the existing body
+		storage.updateEntry(key, existing -> {
+			HeaderGroup headers = new HeaderGroup();
+			headers.setHeaders(existing.getHeaders());
+			headers.setHeader(new BasicHeader("ETag", "\"v3\""));
+			return new HttpCacheEntry(existing.getRequestInstant(), existing.getResponseInstant(),
+					existing.getRequestMethod(), existing.getRequestURI(), new HeaderGroup(), existing.getStatus(),
+					headers, existing.getResource(), existing.getVariants());
+		});
+		assertThat(files(cacheDir), hasSize(3));
+		HttpCacheEntry updated = storage.getEntry(key);
+		assertThat(updated.getFirstHeader("ETag").getValue(), equalTo("\"v3\""));
+		assertThat(new String(updated.getResource().get(), StandardCharsets.UTF_8), equalTo("second"));
+
+		storage.removeEntry(key);
+		assertThat(storage.getEntry(key), nullValue());
+		assertThat(files(cacheDir), empty());
+	}
+
+	@Test
+	void testGetEntries(@TempDir Path dir) throws IOException {
+		DiskHttpCacheStorage storage = new DiskHttpCacheStorage(dir.resolve("cache"));
+		for (int i = 0; i < 10; i++) {
+			storage.putEntry("{https://example.com/" + i + "}", entry("body" + i, "\"" + i + "\""));
+		}
+		Map<String, HttpCacheEntry> entries = storage.getEntries(Arrays.asList(
+				"{https://example.com/1}", "{https://example.com/5}", "{https://example.com/missing}"));
+		assertThat(entries.keySet(), containsInAnyOrder("{https://example.com/1}", "{https://example.com/5}"));
+		assertThat(new String(entries.get("{https://example.com/5}").getResource().get(), StandardCharsets.UTF_8),
+				equalTo("body5"));
+	}
+
+	@Test
+	void testIgnoresForeignFiles(@TempDir Path dir) throws IOException {
+		Path cacheDir = Files.createDirectories(dir.resolve("cache"));
+		DiskHttpCacheStorage storage = new DiskHttpCacheStorage(cacheDir);
+		String key = "{https://example.com/a}";
+		Files.write(storage.entryFile(DiskHttpCacheStorage.fileName(key)), new byte[] { 1, 2, 3, 4, 5, 6 });
+		assertThat(storage.getEntry(key), nullValue());
+		storage.putEntry(key, entry("first", "\"v1\""));
+		assertThat(storage.getEntry(key), notNullValue());
+	}
+
+	@Test
+	void testEvictLeastRecentlyUsed(@TempDir Path dir) throws IOException {
+		Path cacheDir = dir.resolve("cache");
+		DiskHttpCacheStorage storage = new DiskHttpCacheStorage(cacheDir, 1024 * 1024, 3);
+		storage.putEntry("{https://example.com/1}", entry("one", "\"1\""));
+		storage.putEntry("{https://example.com/2}", entry("two", "\"2\""));
+		storage.putEntry("{https://example.com/3}", entry("three", "\"3\""));
+		storage.getEntry("{https://example.com/1}");
+		storage.putEntry("{https://example.com/4}", entry("four", "\"4\""));
+		storage.compact();
+
+		assertThat(storage.getEntry("{https://example.com/2}"), nullValue());
+		assertThat(storage.getEntry("{https://example.com/1}"), notNullValue());
+		assertThat(storage.getEntry("{https://example.com/3}"), notNullValue());
+		assertThat(storage.getEntry("{https://example.com/4}"), notNullValue());
+		assertThat(Files.isRegularFile(cacheDir.resolve(HttpCacheIndex.FILE_NAME)), is(true));
+
+		// The access times survive in the index, so a new storage evicts the
+		// same way, even when it hasn't seen any of the entries being used
+		storage.getEntry("{https://example.com/3}");
+		storage.compact();
+		DiskHttpCacheStorage other = new DiskHttpCacheStorage(cacheDir, 1024 * 1024, 2);
+		other.compact();
+		assertThat(other.getEntry("{https://example.com/1}"), nullValue());
+		assertThat(other.getEntry("{https://example.com/3}"), notNullValue());
+		assertThat(other.getEntry("{https://example.com/4}"), notNullValue());
+	}
+
+	@Test
+	void testEvictBySize(@TempDir Path dir) throws IOException {
+		DiskHttpCacheStorage storage = new DiskHttpCacheStorage(dir.resolve("cache"), 2000, 100);
+		char[] body = new char[600];
+		Arrays.fill(body, 'x');
+		for (int i = 0; i < 5; i++) {
+			storage.putEntry("{https://example.com/" + i + "}", entry(new String(body), "\"" + i + "\""));
+		}
+		storage.compact();
+		assertThat(storage.getEntry("{https://example.com/0}"), nullValue());
+		assertThat(storage.getEntry("{https://example.com/4}"), notNullValue());
+		long total = 0;
+		for (Path file : files(dir.resolve("cache"))) {
+			total += Files.size(file);
+		}
+		assertThat(total, lessThanOrEqualTo(2000L));
+	}
+
+	@Test
+	void testCompactRemovesLeftovers(@TempDir Path dir) throws IOException {
+		Path cacheDir = Files.createDirectories(dir.resolve("cache"));
+		Path legacy = Files.write(cacheDir.resolve("https___example_com_a_1234.cache"), new byte[] { 1 });
+		Path tmp = Files.write(cacheDir.resolve("abc.entry123.tmp"), new byte[] { 1 });
+		Files.setLastModifiedTime(tmp, FileTime.fromMillis(1000));
+		DiskHttpCacheStorage storage = new DiskHttpCacheStorage(cacheDir);
+		storage.putEntry("{https://example.com/a}", entry("first", "\"v1\""));
+		Path orphan = Files.write(
+				cacheDir.resolve(DiskHttpCacheStorage.fileName("{https://example.com/a}") + ".1234.body"),
+				new byte[] { 1 });
+		Files.setLastModifiedTime(orphan, FileTime.fromMillis(1000));
+		Files.setLastModifiedTime(storage.entryFile(DiskHttpCacheStorage.fileName("{https://example.com/a}")),
+				FileTime.fromMillis(1000));
+		storage.compact();
+
+		assertThat(Files.exists(legacy), is(false));
+		assertThat(Files.exists(tmp), is(false));
+		assertThat(Files.exists(orphan), is(false));
+		assertThat(storage.getEntry("{https://example.com/a}"), notNullValue());
+	}
+
+	@Test
+	void testRemoveLegacyEntries(@TempDir Path dir) throws IOException {
+		Path legacy = Files.write(dir.resolve("https___example_com_a_1a2b3c4d.cache"), new byte[] { 1 });
+		Path hashOnly = Files.write(dir.resolve("7f00ab.cache"), new byte[] { 1 });
+		Path other = Files.write(dir.resolve("settings.cache"), new byte[] { 1 });
+		DiskHttpCacheStorage.removeLegacyEntries(dir);
+		assertThat(Files.exists(legacy), is(false));
+		assertThat(Files.exists(hashOnly), is(false));
+		assertThat(Files.exists(other), is(true));
+	}
+
+	private static HttpCacheEntry entry(String body, String etag) {
+		BasicHttpResponse response = new BasicHttpResponse(200, "OK");
+		response.addHeader("Content-Type", "application/json");
+		response.addHeader("ETag", etag);
+		Instant now = Instant.now();
+		return HttpCacheEntryFactory.INSTANCE.create(now, now,
+				new HttpHost("https", "example.com", 443),
+				new BasicHttpRequest("GET", "/a"),
+				response,
+				new HeapResource(body.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	// The files of the entries, without the index that gets written in the
+	// background
+	private static List<Path> files(Path dir) throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.filter(f -> !f.getFileName().toString().startsWith(HttpCacheIndex.FILE_NAME))
+				.collect(Collectors.toList());
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package dev.jbang.devkitman.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestJavaUtils {
+
+	@Test
+	void testVersionFromJrtFsJar(@TempDir Path home) throws IOException {
+		createJar(home.resolve("lib/jrt-fs.jar"), "17.0.7");
+
+		Optional<String> version = JavaUtils.resolveJavaVersionStringFromPath(home);
+		assertThat(version.orElse(null), equalTo("17.0.7"));
+	}
+
+	@Test
+	void testVersionFromRtJar(@TempDir Path home) throws IOException {
+		createJar(home.resolve("jre/lib/rt.jar"), "1.8.0_392");
+
+		Optional<String> version = JavaUtils.resolveJavaVersionStringFromPath(home);
+		assertThat(version.orElse(null), equalTo("1.8.0_392"));
+		assertThat(JavaUtils.parseJavaVersion(version.get()), equalTo(8));
+	}
+
+	@Test
+	void testReleaseFileTakesPrecedence(@TempDir Path home) throws IOException {
+		createJar(home.resolve("lib/jrt-fs.jar"), "17.0.7");
+		Files.write(home.resolve("release"), "JAVA_VERSION=\"17.0.8\"\n".getBytes());
+
+		Optional<String> version = JavaUtils.resolveJavaVersionStringFromPath(home);
+		assertThat(version.orElse(null), equalTo("17.0.8"));
+	}
+
+	@Test
+	void testNoVersion(@TempDir Path home) {
+		assertThat(JavaUtils.readJavaVersionStringFromRuntimeJars(home).isPresent(), is(false));
+	}
+
+	@Test
+	void testProbe(@TempDir Path home) throws IOException {
+		Files.write(home.resolve("release"), ("IMPLEMENTOR=\"GraalVM Community\"\n"
+				+ "JAVA_RUNTIME_VERSION=\"21.0.2+13-jvmci-23.1-b30\"\n"
+				+ "JAVA_VERSION=\"21.0.2\"\n"
+				+ "OS_ARCH=\"x86_64\"\n"
+				+ "GRAALVM_VERSION=\"23.1.2\"\n").getBytes());
+		Path bin = home.resolve("bin");
+		Files.createDirectories(bin);
+		for (String cmd : new String[] { "java", "javac", "native-image" }) {
+			Path p = bin.resolve(OsUtils.isWindows() ? cmd + ".exe" : cmd);
+			Files.write(p, "dummy".getBytes());
+			p.toFile().setExecutable(true, true);
+		}
+
+		JdkHomeProbe probe = new JdkHomeProbe(home);
+		assertThat(probe.javaVersion().orElse(null), equalTo("21.0.2+13-jvmci-23.1-b30"));
+		assertThat(probe.graalVMVersion().orElse(null), equalTo("23.1.2"));
+		assertThat(probe.vendor().orElse(null), equalTo("GraalVM Community"));
+		assertThat(probe.arch().orElse(null), equalTo("x86_64"));
+		assertThat(probe.tags(), containsInAnyOrder("Jdk", "Ga", "Graalvm", "Native"));
+	}
+
+	@Test
+	void testProbeJre(@TempDir Path home) throws IOException {
+		Files.write(home.resolve("release"), "JAVA_VERSION=\"25-ea\"\n".getBytes());
+		Path bin = home.resolve("bin");
+		Files.createDirectories(bin);
+		Path java = bin.resolve(OsUtils.isWindows() ? "java.exe" : "java");
+		Files.write(java, "dummy".getBytes());
+		java.toFile().setExecutable(true, true);
+
+		JdkHomeProbe probe = new JdkHomeProbe(home);
+		assertThat(probe.hasJavacCmd(), is(false));
+		assertThat(probe.tags(), containsInAnyOrder("Jre", "Ea"));
+	}
+
+	@Test
+	void testJavaVersionParts() {
+		JavaVersion v = JavaVersion.parse("21.0.2+13-LTS");
+		assertThat(v.major(), equalTo(21));
+		assertThat(v.interim(), equalTo(0));
+		assertThat(v.update(), equalTo(2));
+		assertThat(v.patch(), equalTo(0));
+		assertThat(v.build(), equalTo(13));
+		assertThat(v.preRelease(), nullValue());
+
+		v = JavaVersion.parse("25-ea+34");
+		assertThat(v.major(), equalTo(25));
+		assertThat(v.preRelease(), equalTo("ea"));
+		assertThat(v.build(), equalTo(34));
+
+		v = JavaVersion.parse("1.8.0_392-b08");
+		assertThat(v.major(), equalTo(8));
+		assertThat(v.update(), equalTo(392));
+		assertThat(v.build(), equalTo(8));
+	}
+
+	@Test
+	void testJavaVersionOrder() {
+		List<String> versions = Arrays.asList("17.0.2", "17", "17.0.10+7", "1.8.0_392", "21-ea", "21", "17.0.10",
+				"11.0.25+9", "21.0.1");
+		List<String> sorted = versions.stream()
+			.map(JavaVersion::parse)
+			.sorted()
+			.map(JavaVersion::toString)
+			.collect(Collectors.toList());
+		assertThat(sorted, contains("1.8.0_392", "11.0.25+9", "17", "17.0.2", "17.0.10", "17.0.10+7", "21",
+				"21-ea", "21.0.1"));
+		for (String v1 : versions) {
+			for (String v2 : versions) {
+				assertThat(Integer.signum(VersionComparator.INSTANCE.compare(v1, v2)),
+						equalTo(Integer.signum(JavaVersion.parse(v1).compareTo(JavaVersion.parse(v2)))));
+			}
+		}
+	}
+
+	private static void createJar(Path jar, String version) throws IOException {
+		Files.createDirectories(jar.getParent());
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().put(Attributes.Name.IMPLEMENTATION_VERSION, version);
+		try (OutputStream os = Files.newOutputStream(jar); JarOutputStream ignored = new JarOutputStream(os, manifest)) {
+			// Only the manifest is needed
+		}
+	}
+}
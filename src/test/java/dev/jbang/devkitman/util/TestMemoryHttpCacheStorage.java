@@ -0,0 +1,137 @@
+package dev.jbang.devkitman.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hc.client5.http.cache.HttpCacheCASOperation;
+import org.apache.hc.client5.http.cache.HttpCacheEntry;
+import org.apache.hc.client5.http.cache.HttpCacheStorage;
+import org.apache.hc.client5.http.cache.ResourceIOException;
+import org.apache.hc.client5.http.impl.cache.HeapResource;
+import org.apache.hc.client5.http.impl.cache.HttpCacheEntryFactory;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.message.BasicHttpRequest;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.jbang.devkitman.BaseTest;
+
+public class TestMemoryHttpCacheStorage extends BaseTest {
+
+	@Test
+	void testServedFromMemory(@TempDir Path dir) throws IOException {
+		CountingStorage disk = new CountingStorage(new DiskHttpCacheStorage(dir.resolve("cache")));
+		disk.putEntry("{https://example.com/a}", entry("first"));
+		MemoryHttpCacheStorage storage = new MemoryHttpCacheStorage(disk, 1024 * 1024);
+
+		assertThat(body(storage.getEntry("{https://example.com/a}")), equalTo("first"));
+		assertThat(body(storage.getEntry("{https://example.com/a}")), equalTo("first"));
+		Map<String, HttpCacheEntry> entries = storage.getEntries(Arrays.asList("{https://example.com/a}"));
+		assertThat(body(entries.get("{https://example.com/a}")), equalTo("first"));
+		assertThat(disk.reads.get(), is(1));
+		assertThat(storage.bytes(), greaterThan(0L));
+	}
+
+	@Test
+	void testWritesGoThrough(@TempDir Path dir) throws IOException {
+		DiskHttpCacheStorage disk = new DiskHttpCacheStorage(dir.resolve("cache"));
+		MemoryHttpCacheStorage storage = new MemoryHttpCacheStorage(disk, 1024 * 1024);
+		String key = "{https://example.com/a}";
+
+		storage.putEntry(key, entry("first"));
+		assertThat(body(disk.getEntry(key)), equalTo("first"));
+
+		storage.updateEntry(key, existing -> entry("second"));
+		assertThat(body(disk.getEntry(key)), equalTo("second"));
+		assertThat(body(storage.getEntry(key)), equalTo("second"));
+
+		storage.removeEntry(key);
+		assertThat(disk.getEntry(key), nullValue());
+		assertThat(storage.getEntry(key), nullValue());
+		assertThat(storage.bytes(), is(0L));
+	}
+
+	@Test
+	void testPopularEntriesStay(@TempDir Path dir) throws IOException {
+		CountingStorage disk = new CountingStorage(new DiskHttpCacheStorage(dir.resolve("cache")));
+		char[] body = new char[1000];
+		Arrays.fill(body, 'x');
+		for (int i = 0; i < 10; i++) {
+			disk.putEntry("{https://example.com/" + i + "}", entry(new String(body)));
+		}
+		// Room for about two entries
+		MemoryHttpCacheStorage storage = new MemoryHttpCacheStorage(disk, 3000);
+		for (int i = 0; i < 5; i++) {
+			storage.getEntry("{https://example.com/0}");
+		}
+		int reads = disk.reads.get();
+		for (int i = 1; i < 10; i++) {
+			storage.getEntry("{https://example.com/" + i + "}");
+		}
+		assertThat(storage.bytes(), lessThanOrEqualTo(3000L));
+		// Entries that were only requested once didn't push out the popular one
+		storage.getEntry("{https://example.com/0}");
+		assertThat(disk.reads.get(), is(reads + 9));
+	}
+
+	private static HttpCacheEntry entry(String body) {
+		BasicHttpResponse response = new BasicHttpResponse(200, "OK");
+		response.addHeader("Content-Type", "application/json");
+		Instant now = Instant.now();
+		return HttpCacheEntryFactory.INSTANCE.create(now, now,
+				new HttpHost("https", "example.com", 443),
+				new BasicHttpRequest("GET", "/a"),
+				response,
+				new HeapResource(body.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private static String body(HttpCacheEntry entry) throws ResourceIOException {
+		return new String(entry.getResource().get(), StandardCharsets.UTF_8);
+	}
+
+	private static class CountingStorage implements HttpCacheStorage {
+		final HttpCacheStorage delegate;
+		final AtomicInteger reads = new AtomicInteger();
+
+		CountingStorage(HttpCacheStorage delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public void putEntry(String key, HttpCacheEntry entry) throws ResourceIOException {
+			delegate.putEntry(key, entry);
+		}
+
+		@Override
+		public HttpCacheEntry getEntry(String key) throws ResourceIOException {
+			reads.incrementAndGet();
+			return delegate.getEntry(key);
+		}
+
+		@Override
+		public void removeEntry(String key) throws ResourceIOException {
+			delegate.removeEntry(key);
+		}
+
+		@Override
+		public void updateEntry(String key, HttpCacheCASOperation operation) throws ResourceIOException {
+			delegate.updateEntry(key, operation);
+		}
+
+		@Override
+		public Map<String, HttpCacheEntry> getEntries(Collection<String> keys) throws ResourceIOException {
+			reads.addAndGet(keys.size());
+			return delegate.getEntries(keys);
+		}
+	}
+}
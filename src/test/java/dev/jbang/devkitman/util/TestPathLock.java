@@ -0,0 +1,69 @@
+package dev.jbang.devkitman.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.jbang.devkitman.BaseTest;
+
+public class TestPathLock extends BaseTest {
+
+	@Test
+	void testReentrant(@TempDir Path dir) {
+		Path jdk = dir.resolve("11-jbang");
+		try (PathLock lock = PathLock.lock(jdk)) {
+			assertThat(lock.waited(), is(false));
+			try (PathLock lock2 = PathLock.lock(jdk)) {
+				assertThat(lock2.waited(), is(false));
+			}
+		}
+		// Lock files are kept out of the folder that holds the locked path
+		assertThat(Files.isRegularFile(dir.resolve(PathLock.LOCKS_FOLDER).resolve("11-jbang.lock")), is(true));
+		assertThat(Files.exists(dir.resolve("11-jbang.lock")), is(false));
+	}
+
+	@Test
+	void testWaitsForOtherThread(@TempDir Path dir) throws Exception {
+		Path jdk = dir.resolve("11-jbang");
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Boolean> waited;
+			try (PathLock lock = PathLock.lock(jdk)) {
+				waited = executor.submit(() -> {
+					try (PathLock lock2 = PathLock.lock(jdk)) {
+						return lock2.waited();
+					}
+				});
+				Thread.sleep(100);
+				assertThat(waited.isDone(), is(false));
+			}
+			assertThat(waited.get(), is(true));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void testGivesUpAfterTimeout(@TempDir Path dir) throws Exception {
+		Path jdk = dir.resolve("11-jbang");
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try (PathLock lock = PathLock.lock(jdk)) {
+			Future<?> other = executor.submit(() -> PathLock.lock(jdk, Duration.ofMillis(100)).close());
+			ExecutionException e = assertThrows(ExecutionException.class, other::get);
+			assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -4,15 +4,25 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import dev.jbang.devkitman.BaseTest;
 
+import com.sun.net.httpserver.HttpServer;
+
 public class TestRemoteAccessProvider extends BaseTest {
 
 	@Test
@@ -32,4 +42,135 @@ public class TestRemoteAccessProvider extends BaseTest {
 		assertThat(Files.exists(cacheDir), is(true));
 		assertThat(Files.list(cacheDir).count(), greaterThan(0L));
 	}
+
+	@Test
+	void testDownloadResumesAfterDroppedConnection(@TempDir Path cacheDir) throws IOException {
+		byte[] data = new byte[3 * NetUtils.DOWNLOAD_BUFFER_SIZE + 1234];
+		new Random(42).nextBytes(data);
+		AtomicInteger requests = new AtomicInteger();
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/jdk.tar.gz", exchange -> {
+			String range = exchange.getRequestHeaders().getFirst("Range");
+			exchange.getResponseHeaders().set("ETag", "\"test\"");
+			exchange.getResponseHeaders().set("Content-Type", "application/gzip");
+			try (OutputStream os = exchange.getResponseBody()) {
+				if (requests.incrementAndGet() == 1) {
+					// Drop the connection halfway through the first request
+					exchange.sendResponseHeaders(200, data.length);
+					os.write(data, 0, data.length / 2);
+					os.flush();
+					throw new IOException("Simulated dropped connection");
+				} else {
+					int start = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+					exchange.getResponseHeaders()
+						.set("Content-Range", "bytes " + start + "-" + (data.length - 1) + "/" + data.length);
+					exchange.sendResponseHeaders(206, data.length - start);
+					os.write(data, start, data.length - start);
+				}
+			}
+		});
+		server.start();
+		try {
+			RemoteAccessProvider rap = RemoteAccessProvider.createDefaultRemoteAccessProvider(cacheDir);
+			String url = "http://localhost:" + server.getAddress().getPort() + "/jdk.tar.gz";
+			Path file = rap.downloadFromUrl(url);
+			assertThat(file.getFileName().toString(), is("jdk.tar.gz"));
+			assertThat(Arrays.equals(Files.readAllBytes(file), data), is(true));
+			assertThat(requests.get(), is(2));
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	void testDefaultReusesConnections(@TempDir Path cacheDir) throws IOException {
+		// Larger than the HTTP client's default maximum of 8 KB for cached bodies
+		StringBuilder padding = new StringBuilder();
+		for (int i = 0; i < 16 * 1024; i++) {
+			padding.append('x');
+		}
+		byte[] json = ("{\"ok\":true,\"padding\":\"" + padding + "\"}").getBytes();
+		List<InetSocketAddress> clients = new ArrayList<>();
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", exchange -> {
+			synchronized (clients) {
+				clients.add(exchange.getRemoteAddress());
+			}
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, json.length);
+			try (OutputStream os = exchange.getResponseBody()) {
+				os.write(json);
+			}
+		});
+		server.start();
+		try (RemoteAccessProvider rap = RemoteAccessProvider.createDefaultRemoteAccessProvider(cacheDir)) {
+			String url = "http://localhost:" + server.getAddress().getPort() + "/";
+			for (int i = 0; i < 3; i++) {
+				Object res = RemoteAccessProvider.readJsonFromUrl(rap, url + "catalog" + i + ".json", Object.class);
+				assertThat(res, instanceOf(Map.class));
+			}
+		} finally {
+			server.stop(0);
+		}
+		assertThat(clients, hasSize(3));
+		assertThat(clients.get(1), is(clients.get(0)));
+		assertThat(clients.get(2), is(clients.get(0)));
+	}
+
+	@Test
+	void testCacheRevalidatesWithValidators(@TempDir Path cacheDir) throws IOException {
+		byte[] json = "{\"ok\":true}".getBytes();
+		AtomicInteger fullResponses = new AtomicInteger();
+		List<String> conditions = new ArrayList<>();
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", exchange -> {
+			String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+			synchronized (conditions) {
+				conditions.add(String.valueOf(ifNoneMatch));
+			}
+			exchange.getResponseHeaders().set("ETag", "\"v1\"");
+			// Should be overruled by the configured freshness
+			exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+			if ("\"v1\"".equals(ifNoneMatch)) {
+				exchange.sendResponseHeaders(304, -1);
+				exchange.close();
+				return;
+			}
+			fullResponses.incrementAndGet();
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, json.length);
+			try (OutputStream os = exchange.getResponseBody()) {
+				os.write(json);
+			}
+		});
+		server.start();
+		try {
+			String url = "http://localhost:" + server.getAddress().getPort() + "/catalog.json";
+			// Always stale, so every request gets revalidated
+			try (RemoteAccessProvider rap = RemoteAccessProvider.createDefaultRemoteAccessProvider(
+					NetUtils.createCachingHttpClientBuilder(cacheDir.resolve("stale"), Duration.ZERO,
+							Duration.ZERO))) {
+				for (int i = 0; i < 3; i++) {
+					Object res = RemoteAccessProvider.readJsonFromUrl(rap, url, Object.class);
+					assertThat(res, instanceOf(Map.class));
+				}
+			}
+			assertThat(fullResponses.get(), is(1));
+			assertThat(conditions, contains("null", "\"v1\"", "\"v1\""));
+
+			// Fresh for an hour, so the server isn't contacted again
+			conditions.clear();
+			try (RemoteAccessProvider rap = RemoteAccessProvider.createDefaultRemoteAccessProvider(
+					NetUtils.createCachingHttpClientBuilder(cacheDir.resolve("fresh"), Duration.ofHours(1),
+							Duration.ZERO))) {
+				for (int i = 0; i < 3; i++) {
+					Object res = RemoteAccessProvider.readJsonFromUrl(rap, url, Object.class);
+					assertThat(res, instanceOf(Map.class));
+				}
+			}
+			assertThat(conditions, hasSize(1));
+		} finally {
+			server.stop(0);
+		}
+	}
 }
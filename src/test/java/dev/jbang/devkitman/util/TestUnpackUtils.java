@@ -0,0 +1,222 @@
+package dev.jbang.devkitman.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.UnixStat;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.jbang.devkitman.BaseTest;
+
+public class TestUnpackUtils extends BaseTest {
+
+	@Test
+	void testUnpackJdkWhileStreaming(@TempDir Path dir) throws Exception {
+		String home = OsUtils.isMac() ? "jdk-17/Contents/Home/" : "jdk-17/";
+		byte[] archive = createTarGz(home + "release", "JAVA_VERSION=\"17.0.13\"\n", home + "bin/java", "java");
+		Path out = dir.resolve("out");
+		StreamPipe pipe = new StreamPipe(2);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Boolean> unpacked = executor.submit(() -> {
+				try (InputStream in = pipe.input()) {
+					return UnpackUtils.unpackJdk(in, out);
+				}
+			});
+			// Write in small pieces so the reader has to wait for the writer
+			try (OutputStream os = pipe.output()) {
+				for (int i = 0; i < archive.length; i += 100) {
+					os.write(archive, i, Math.min(100, archive.length - i));
+				}
+			}
+			assertThat(unpacked.get(), is(true));
+		} finally {
+			executor.shutdown();
+		}
+		String release = new String(Files.readAllBytes(out.resolve("release")), StandardCharsets.UTF_8);
+		assertThat(release, containsString("17.0.13"));
+		assertThat(Files.isRegularFile(out.resolve("bin/java")), is(true));
+	}
+
+	@Test
+	void testUnpackJdkStreamNotGzip(@TempDir Path dir) throws IOException {
+		Path out = dir.resolve("out");
+		try (InputStream in = getClass().getResourceAsStream("/jdk-12.zip")) {
+			assertThat(UnpackUtils.unpackJdk(in, out), is(false));
+		}
+		assertThat(Files.exists(out), is(false));
+	}
+
+	@Test
+	void testUntargzNormalizesNamesAndSetsPermissions(@TempDir Path dir) throws IOException {
+		Path targz = dir.resolve("jdk.tar.gz");
+		try (TarArchiveOutputStream tar = new TarArchiveOutputStream(
+				new GzipCompressorOutputStream(Files.newOutputStream(targz)))) {
+			for (String name : new String[] { "./jdk-17/bin/java", "./jdk-17/lib/../release" }) {
+				TarArchiveEntry entry = new TarArchiveEntry(name);
+				entry.setSize(1);
+				entry.setMode(name.endsWith("java") ? 0100755 : 0100644);
+				tar.putArchiveEntry(entry);
+				tar.write(1);
+				tar.closeArchiveEntry();
+			}
+		}
+
+		Path out = dir.resolve("out");
+		Files.createDirectories(out.resolve("bin"));
+		Files.write(out.resolve("bin/java"), new byte[] { 1, 2, 3 });
+		UnpackUtils.untargz(targz, out, true, null);
+
+		assertThat(Files.size(out.resolve("bin/java")), is(1L));
+		assertThat(Files.isRegularFile(out.resolve("release")), is(true));
+		if (!OsUtils.isWindows()) {
+			assertThat(Files.isExecutable(out.resolve("bin/java")), is(true));
+			assertThat(Files.isExecutable(out.resolve("release")), is(false));
+		}
+	}
+
+	@Test
+	void testInstallJdkWithRuntimeProfile(@TempDir Path dir) throws IOException {
+		String home = OsUtils.isMac() ? "jdk-17/Contents/Home/" : "jdk-17/";
+		Path targz = Files.write(dir.resolve("jdk.tar.gz"), createTarGz(
+				home + "release", "JAVA_VERSION=\"17.0.13\"\n",
+				home + "lib/modules", "modules",
+				home + "lib/src.zip", "sources",
+				home + "jmods/java.base.jmod", "jmod",
+				home + "legal/java.base/LICENSE", "license"));
+		Path jdkDir = dir.resolve("jdks").resolve("17");
+		Files.createDirectories(jdkDir.getParent());
+
+		JavaUtils.installJdk(targz, jdkDir, JdkProfile.runtime);
+
+		assertThat(Files.isRegularFile(jdkDir.resolve("lib/modules")), is(true));
+		assertThat(Files.exists(jdkDir.resolve("lib/src.zip")), is(false));
+		assertThat(Files.exists(jdkDir.resolve("jmods")), is(false));
+		assertThat(Files.exists(jdkDir.resolve("legal")), is(false));
+		assertThat(new JdkHomeProbe(jdkDir).profile(), is(JdkProfile.runtime));
+		assertThat(new JdkHomeProbe(jdkDir).release().get(JdkProfile.RELEASE_KEY), is("runtime"));
+
+		// Without the note in the release file the profile file isn't looked at
+		Files.write(jdkDir.resolve("release"), "JAVA_VERSION=\"17.0.13\"\n".getBytes(StandardCharsets.UTF_8));
+		assertThat(new JdkHomeProbe(jdkDir).profile(), is(JdkProfile.full));
+	}
+
+	@Test
+	void testPipeClosedByReader() throws IOException {
+		StreamPipe pipe = new StreamPipe(1);
+		pipe.output().write(new byte[] { 1, 2, 3 });
+		pipe.input().close();
+		IOException e = assertThrows(IOException.class, () -> pipe.output().write(new byte[] { 4 }));
+		assertThat(e.getMessage(), containsString("closed"));
+	}
+
+	@Test
+	void testPipeFailedByWriter() throws IOException {
+		StreamPipe pipe = new StreamPipe(2);
+		pipe.output().write(new byte[] { 1, 2, 3 });
+		pipe.fail(new IOException("restarted"));
+		IOException e = assertThrows(IOException.class, () -> pipe.input().read());
+		assertThat(e.getMessage(), containsString("restarted"));
+	}
+
+	@Test
+	void testUnzipParallel(@TempDir Path dir) throws IOException {
+		Path zip = dir.resolve("jdk.zip");
+		try (ZipArchiveOutputStream zos = new ZipArchiveOutputStream(zip.toFile())) {
+			zos.putArchiveEntry(new ZipArchiveEntry("jdk-17/bin/"));
+			zos.closeArchiveEntry();
+			for (int i = 0; i < 20; i++) {
+				ZipArchiveEntry entry = new ZipArchiveEntry("jdk-17/lib/file" + i);
+				entry.setUnixMode(i == 0 ? 0755 : 0644);
+				zos.putArchiveEntry(entry);
+				zos.write(new byte[i * 1000]);
+				zos.closeArchiveEntry();
+			}
+			if (!OsUtils.isWindows()) {
+				ZipArchiveEntry link = new ZipArchiveEntry("jdk-17/bin/link");
+				link.setUnixMode(UnixStat.LINK_FLAG | 0777);
+				zos.putArchiveEntry(link);
+				zos.write("../lib/file0".getBytes(StandardCharsets.UTF_8));
+				zos.closeArchiveEntry();
+			}
+		}
+
+		Path out = dir.resolve("out");
+		Files.createDirectories(out.resolve("lib"));
+		Files.write(out.resolve("lib/file3"), new byte[] { 42 });
+		Set<String> existing = ConcurrentHashMap.newKeySet();
+		UnpackUtils.unzip(zip, out, true, null, (zipFile, zipEntry, outFile) -> existing.add(zipEntry.getName()), 4);
+
+		assertThat(Files.isDirectory(out.resolve("bin")), is(true));
+		for (int i = 0; i < 20; i++) {
+			if (i != 3) {
+				assertThat(Files.size(out.resolve("lib/file" + i)), is(i * 1000L));
+			}
+		}
+		assertThat(existing, contains("jdk-17/lib/file3"));
+		assertThat(Files.size(out.resolve("lib/file3")), is(1L));
+		if (!OsUtils.isWindows()) {
+			assertThat(Files.isSymbolicLink(out.resolve("bin/link")), is(true));
+			assertThat(Files.isExecutable(out.resolve("lib/file0")), is(true));
+			assertThat(Files.isExecutable(out.resolve("lib/file1")), is(false));
+		}
+	}
+
+	@Test
+	void testUnzipSerialByDefault(@TempDir Path dir) throws IOException {
+		Path zip = dir.resolve("archive.zip");
+		try (ZipArchiveOutputStream zos = new ZipArchiveOutputStream(zip.toFile())) {
+			for (int i = 0; i < 10; i++) {
+				zos.putArchiveEntry(new ZipArchiveEntry("root/file" + i));
+				zos.write(new byte[] { (byte) i });
+				zos.closeArchiveEntry();
+			}
+		}
+
+		Path out = dir.resolve("out");
+		Files.createDirectories(out);
+		for (int i = 0; i < 10; i++) {
+			Files.write(out.resolve("file" + i), new byte[0]);
+		}
+		Thread caller = Thread.currentThread();
+		Set<Thread> threads = new HashSet<>();
+		UnpackUtils.unzip(zip, out, true, null, (zipFile, zipEntry, outFile) -> threads.add(Thread.currentThread()));
+		assertThat(threads, contains(caller));
+	}
+
+	private static byte[] createTarGz(String... namesAndContents) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(bytes))) {
+			for (int i = 0; i < namesAndContents.length; i += 2) {
+				byte[] data = namesAndContents[i + 1].getBytes(StandardCharsets.UTF_8);
+				TarArchiveEntry entry = new TarArchiveEntry(namesAndContents[i]);
+				entry.setSize(data.length);
+				tar.putArchiveEntry(entry);
+				tar.write(data);
+				tar.closeArchiveEntry();
+			}
+		}
+		return bytes.toByteArray();
+	}
+}